@@ -34,6 +34,11 @@ public class TerraConfig {
     })
     public static HttpOpts http = new HttpOpts();
 
+    @Comment({
+            "Configure how terraplusplus stores generated terrain data."
+    })
+    public static DataOpts data = new DataOpts();
+
     @SubscribeEvent
     public static void onConfigChanged(ConfigChangedEvent.OnConfigChangedEvent event) {
         if (TerraConstants.MODID.equals(event.getModID())) {
@@ -67,6 +72,15 @@ public class TerraConfig {
                 "1: https://lz4.overpass-api.de/"
         };
 
+        @Comment({
+                "The maximum percentage of the concurrent requests to each host which may be speculative, i.e. requests for data which may turn out",
+                "not to be needed (see data.speculativeDatasets). The number of permitted speculative requests is rounded down, so hosts which only",
+                "permit a single concurrent request will never be sent speculative requests.",
+                "Default: 50"
+        })
+        @Config.RangeInt(min = 0, max = 100)
+        public int maxSpeculativeRequestPercent = 50;
+
         @Comment({
                 "Whether or not to use the persistent data cache.",
                 "This is strongly recommended for performance. Disable only for debugging, or if you have EXTREMELY limited storage."
@@ -86,4 +100,131 @@ public class TerraConfig {
         @Config.RequiresMcRestart
         public boolean useVanillaNetworkThread = true;
     }
+
+    public static class DataOpts {
+        @Comment({
+                "The maximum number of columns whose terrain data will be kept in memory for each world.",
+                "Higher values reduce the amount of data which has to be regenerated when players revisit an area, at the cost of increased memory usage.",
+                "Each column uses roughly 3 KiB."
+        })
+        @Config.RequiresWorldRestart
+        public int cacheSize = 8192;
+
+        @Comment({
+                "The approximate amount of memory (in MiB) which may be used by cached dataset tiles (e.g. elevation tiles and OpenStreetMap data).",
+                "This is shared between all datasets in all worlds. Once it is exceeded, the tiles which are the cheapest to load again relative to",
+                "their size and which haven't been used for the longest time will be discarded first.",
+                "Default: 512"
+        })
+        @Config.RangeInt(min = 1)
+        public int datasetCacheMemory = 512;
+
+        @Comment({
+                "The number of columns along each axis of the square regions in which terrain data is loaded.",
+                "When greater than 1, requesting a single column will load all of the columns in the surrounding region at once, which is significantly",
+                "more efficient than loading each column individually when large areas are being generated (e.g. while flying or pregenerating).",
+                "Recommended: 4"
+        })
+        @Config.RangeInt(min = 1, max = 16)
+        public int regionSize = 1;
+
+        @Comment({
+                "Whether or not to persist baked per-column terrain data to disk.",
+                "When enabled, revisiting an area (or restarting the server) will not require the terrain data to be downloaded and processed again.",
+                "Stored data is specific to the generator settings of the world it was generated for."
+        })
+        public boolean persistentCache = false;
+
+        @Comment({
+                "The maximum age of persisted terrain data, in minutes. Data older than this will be regenerated.",
+                "A value of 0 will cause persisted data to never expire.",
+                "Default: 10080 minutes (7 days)"
+        })
+        public int persistentCacheTTL = 10080;
+
+        @Comment({
+                "The distance (in columns) from the nearest player beyond which pending terrain data requests will be cancelled, once the",
+                "column is no longer being waited on by the server.",
+                "A value of 0 will cause requests to never be cancelled.",
+                "Default: 48"
+        })
+        @Config.RangeInt(min = 0)
+        public int cancelDistance = 48;
+
+        @Comment({
+                "The distance (in columns) ahead of fast-moving players up to which terrain data will be prefetched.",
+                "Prefetching lets terrain data be downloaded before Cubic Chunks actually needs it, which greatly reduces the time spent waiting",
+                "for terrain to appear while flying.",
+                "A value of 0 will disable prefetching.",
+                "Default: 24"
+        })
+        @Config.RangeInt(min = 0)
+        public int prefetchDistance = 24;
+
+        @Comment({
+                "The maximum number of columns which may be prefetched at the same time in each world.",
+                "Default: 128"
+        })
+        @Config.RangeInt(min = 1)
+        public int prefetchBudget = 128;
+
+        @Comment({
+                "The maximum number of columns whose terrain data may be loaded at the same time in each world.",
+                "Additional columns will be queued until enough of the columns which are currently being loaded have finished.",
+                "Default: 256"
+        })
+        @Config.RangeInt(min = 1)
+        public int maxInFlightColumns = 256;
+
+        @Comment({
+                "The number of lower-priority datasets which will be requested at the same time as a higher-priority one when it isn't yet known",
+                "whether the higher-priority dataset will have data for an area (e.g. where high-resolution elevation data may not cover the ocean).",
+                "This avoids having to wait for each dataset in turn, at the cost of sometimes downloading data which turns out not to be needed.",
+                "Such requests are cancelled if they haven't been sent by the time they become unnecessary.",
+                "A value of 0 will disable speculative requests.",
+                "Default: 1"
+        })
+        @Config.RangeInt(min = 0)
+        public int speculativeDatasets = 1;
+
+        @Comment({
+                "The approximate amount of memory (in MiB) which may be used by columns whose terrain data is being loaded in each world.",
+                "This further limits the number of columns which may be loaded at the same time, assuming that each one uses roughly 256 KiB.",
+                "Default: 128"
+        })
+        @Config.RangeInt(min = 1)
+        public int inFlightMemoryBudget = 128;
+
+        @Comment({
+                "The maximum number of columns which may be queued waiting to be loaded in each world.",
+                "Once this is exceeded, the least urgent queued columns will be discarded. They will be queued again if they are still needed.",
+                "Default: 4096"
+        })
+        @Config.RangeInt(min = 0)
+        public int maxQueuedColumns = 4096;
+
+        @Comment({
+                "The number of threads used for requesting and baking terrain data.",
+                "A value of 0 will use one thread less than the number of available CPU cores."
+        })
+        @Config.RangeInt(min = 0)
+        @Config.RequiresMcRestart
+        public int bakeThreads = 0;
+
+        @Comment({
+                "The number of threads used for decoding downloaded data.",
+                "A value of 0 will use one thread less than the number of available CPU cores."
+        })
+        @Config.RangeInt(min = 0)
+        @Config.RequiresMcRestart
+        public int decodeThreads = 0;
+
+        @Comment({
+                "The number of threads used for sampling values from datasets.",
+                "A value of 0 will use one thread less than the number of available CPU cores."
+        })
+        @Config.RangeInt(min = 0)
+        @Config.RequiresMcRestart
+        public int sampleThreads = 0;
+    }
 }
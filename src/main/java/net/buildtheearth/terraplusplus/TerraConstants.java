@@ -20,6 +20,7 @@ public class TerraConstants {
     public static final String CHAT_PREFIX = "&2&lT++ &8&l> ";
     public static final String defaultCommandNode = MODID + ".command.";
     public static final String othersCommandNode = MODID + ".others";
+    public static final String adminCommandNode = MODID + ".admin";
 
     public static final Gson GSON = new GsonBuilder()
             .registerTypeAdapter(IBlockState.class, BlockStateParser.INSTANCE)
@@ -49,4 +50,10 @@ public class TerraConstants {
     public static final double[] EMPTY_DOUBLE_ARRAY = new double[0];
 
     public static boolean IS_TEST_ENVIRONMENT = false;
+
+    /**
+     * Whether or not terra++ is running as a standalone program (e.g. the {@link net.buildtheearth.terraplusplus.generator.Pregenerator} command-line
+     * tool) rather than inside of Minecraft, in which case none of Minecraft's networking infrastructure is available.
+     */
+    public static boolean IS_STANDALONE = false;
 }
@@ -61,6 +61,7 @@ public class TerraMod {
         MinecraftForge.TERRAIN_GEN_BUS.register(GenerationEventDenier.class);
 
         PermissionAPI.registerNode(TerraConstants.othersCommandNode, DefaultPermissionLevel.OP, "Allows a player to control another player in terra commands");
+        PermissionAPI.registerNode(TerraConstants.adminCommandNode, DefaultPermissionLevel.OP, "Allows a player to use administrative terra commands, such as pregeneration");
     }
 
     @EventHandler
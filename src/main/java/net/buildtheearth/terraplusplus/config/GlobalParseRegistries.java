@@ -36,6 +36,8 @@ import net.buildtheearth.terraplusplus.config.scalarparse.i.ParseTiffISP;
 import net.buildtheearth.terraplusplus.config.scalarparse.i.RGBExtractISP;
 import net.buildtheearth.terraplusplus.config.scalarparse.i.RequireOpaqueISP;
 import net.buildtheearth.terraplusplus.config.scalarparse.i.SwapAxesISP;
+import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
+import net.buildtheearth.terraplusplus.dataset.scalar.cog.CogDataset;
 import net.buildtheearth.terraplusplus.projection.AzimuthalEquidistantProjection;
 import net.buildtheearth.terraplusplus.projection.LambertAzimuthalProjection;
 import net.buildtheearth.terraplusplus.projection.EqualEarthProjection;
@@ -101,6 +103,10 @@ public class GlobalParseRegistries {
             .put("or", OrDC.class)
             .build();
 
+    public final BiMap<String, Class<? extends IScalarDataset>> SCALAR_DATASETS = new BiMapBuilder<String, Class<? extends IScalarDataset>>()
+            .put("cloud_optimized_geotiff", CogDataset.class)
+            .build();
+
     public final BiMap<String, Class<? extends DoubleScalarParser>> SCALAR_PARSERS_DOUBLE = new BiMapBuilder<String, Class<? extends DoubleScalarParser>>()
             //arithmetic operators
             .put("add", AddDSP.class)
@@ -6,6 +6,9 @@ import net.buildtheearth.terraplusplus.control.fragments.FragmentManager;
 import net.buildtheearth.terraplusplus.control.fragments.terra.TerraConvertFragment;
 import net.buildtheearth.terraplusplus.control.fragments.terra.TerraDistortionFragment;
 import net.buildtheearth.terraplusplus.control.fragments.terra.TerraInfoFragment;
+import net.buildtheearth.terraplusplus.control.fragments.terra.TerraPregenFragment;
+import net.buildtheearth.terraplusplus.control.fragments.terra.TerraStatsFragment;
+import net.buildtheearth.terraplusplus.control.fragments.terra.TerraStatusFragment;
 import net.buildtheearth.terraplusplus.control.fragments.terra.TerraWhereFragment;
 import net.buildtheearth.terraplusplus.control.fragments.terra.TerraWorldFragment;
 import net.minecraft.command.ICommandSender;
@@ -22,6 +25,9 @@ public class TerraCommand extends FragmentManager {
         this.register(new TerraWorldFragment());
         this.register(new TerraConvertFragment());
         this.register(new TerraDistortionFragment());
+        this.register(new TerraPregenFragment());
+        this.register(new TerraStatusFragment());
+        this.register(new TerraStatsFragment());
     }
 
     @Override
@@ -0,0 +1,158 @@
+package net.buildtheearth.terraplusplus.control.fragments.terra;
+
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.core.server.CubeProviderServer;
+import net.buildtheearth.terraplusplus.TerraConfig;
+import net.buildtheearth.terraplusplus.TerraConstants;
+import net.buildtheearth.terraplusplus.TerraMod;
+import net.buildtheearth.terraplusplus.control.fragments.CommandFragment;
+import net.buildtheearth.terraplusplus.generator.EarthGenerator;
+import net.buildtheearth.terraplusplus.generator.Pregenerator;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraplusplus.util.ChatUtil;
+import net.buildtheearth.terraplusplus.util.TranslateUtil;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TextFormatting;
+import net.minecraft.world.chunk.IChunkProvider;
+
+import java.util.Locale;
+
+import static net.daporkchop.lib.common.math.PMath.*;
+
+public class TerraPregenFragment extends CommandFragment {
+    protected static final int DEFAULT_CONCURRENCY = 1024; //columns in flight
+
+    protected static Pregenerator active;
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) {
+        if (!this.hasPermission(sender)) {
+            sender.sendMessage(ChatUtil.getNoPermission());
+            return;
+        }
+
+        String action = args.length != 0 ? args[0].toLowerCase(Locale.ROOT) : "status";
+        switch (action) {
+            case "status":
+                sender.sendMessage(active != null
+                        ? this.statusMessage(active)
+                        : ChatUtil.titleAndCombine(TextFormatting.GRAY, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.notstarted")));
+                return;
+            case "stop":
+                if (active == null || active.isDone()) {
+                    sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.notrunning")));
+                } else {
+                    active.stop();
+                    sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.GRAY, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.stopping")));
+                }
+                return;
+            case "start":
+            case "geo":
+                break;
+            default:
+                this.sendUsage(sender);
+                return;
+        }
+
+        if (active != null && !active.isDone()) {
+            sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.alreadyrunning")));
+            return;
+        }
+
+        IChunkProvider cp = sender.getEntityWorld().getChunkProvider();
+        if (!(cp instanceof CubeProviderServer)) {
+            sender.sendMessage(ChatUtil.getNotCC());
+            return;
+        }
+
+        ICubeGenerator gen = ((CubeProviderServer) cp).getCubeGenerator();
+        if (!(gen instanceof EarthGenerator)) {
+            sender.sendMessage(ChatUtil.getNotTerra());
+            return;
+        }
+        EarthGenerator generator = (EarthGenerator) gen;
+
+        if (args.length < 5) {
+            this.sendUsage(sender);
+            return;
+        }
+
+        double[] coords = new double[4];
+        int concurrency;
+        try {
+            for (int i = 0; i < 4; i++) {
+                coords[i] = Double.parseDouble(args[i + 1]);
+            }
+            concurrency = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_CONCURRENCY;
+        } catch (NumberFormatException e) {
+            sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".error.numbers")));
+            return;
+        }
+
+        Pregenerator pregenerator;
+        try {
+            pregenerator = "geo".equals(action)
+                    ? Pregenerator.fromGeo(generator.settings, generator.loader, generator.admission, coords[1], coords[0], coords[3], coords[2], concurrency)
+                    : new Pregenerator(generator.settings, generator.loader, generator.admission,
+                    floorI(Math.min(coords[0], coords[2])) >> 4, floorI(Math.min(coords[1], coords[3])) >> 4,
+                    floorI(Math.max(coords[0], coords[2])) >> 4, floorI(Math.max(coords[1], coords[3])) >> 4, concurrency);
+        } catch (OutOfProjectionBoundsException e) {
+            sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.where.notproj")));
+            return;
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, e.getMessage()));
+            return;
+        }
+
+        active = pregenerator;
+        sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.GRAY, TranslateUtil.format(TerraConstants.MODID + ".fragment.terra.pregen.started", pregenerator.totalColumns())));
+        if (!TerraConfig.data.persistentCache) {
+            sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.GOLD, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.nopersistentcache")));
+        }
+
+        pregenerator.start(p -> {
+            TerraMod.LOGGER.info("pregeneration: {}", p.status());
+            server.addScheduledTask(() -> sender.sendMessage(this.statusMessage(p)));
+        });
+    }
+
+    protected ITextComponent statusMessage(Pregenerator pregenerator) {
+        long doneColumns = pregenerator.doneColumns();
+        //decimals are formatted here, as translations in singleplayer don't support precision specifiers
+        ITextComponent progress = TranslateUtil.format(TerraConstants.MODID + ".fragment.terra.pregen.progress",
+                doneColumns, pregenerator.totalColumns(), String.format("%.2f", doneColumns * 100.0d / pregenerator.totalColumns()),
+                String.format("%.1f", pregenerator.columnsPerSecond()), pregenerator.failedColumns(),
+                String.format("%.1f", pregenerator.bytesDownloaded() / (1024.0d * 1024.0d)), String.format("%.1f", pregenerator.cacheHitPercent()));
+        if (pregenerator.stopped()) {
+            progress.appendSibling(TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.stopped"));
+        }
+        return ChatUtil.titleAndCombine(TextFormatting.GRAY, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.status"), TextFormatting.BLUE, progress);
+    }
+
+    protected void sendUsage(ICommandSender sender) {
+        sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.usage")));
+        sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.usage2")));
+    }
+
+    @Override
+    public String[] getName() {
+        return new String[]{ "pregen", "pregenerate" };
+    }
+
+    @Override
+    public String getPurpose() {
+        return TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.pregen.purpose").getUnformattedComponentText();
+    }
+
+    @Override
+    public String[] getArguments() {
+        return new String[]{ "<start|geo|status|stop>", "[args...]" };
+    }
+
+    @Override
+    public String getPermission() {
+        return TerraConstants.adminCommandNode;
+    }
+}
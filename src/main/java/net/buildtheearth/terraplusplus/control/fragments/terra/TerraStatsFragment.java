@@ -0,0 +1,109 @@
+package net.buildtheearth.terraplusplus.control.fragments.terra;
+
+import net.buildtheearth.terraplusplus.TerraConstants;
+import net.buildtheearth.terraplusplus.TerraMod;
+import net.buildtheearth.terraplusplus.control.fragments.CommandFragment;
+import net.buildtheearth.terraplusplus.generator.PipelineStats;
+import net.buildtheearth.terraplusplus.util.ChatUtil;
+import net.buildtheearth.terraplusplus.util.LatencyHistogram;
+import net.buildtheearth.terraplusplus.util.TranslateUtil;
+import net.buildtheearth.terraplusplus.util.http.Disk;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TextFormatting;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+public class TerraStatsFragment extends CommandFragment {
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) {
+        String action = args.length != 0 ? args[0].toLowerCase(Locale.ROOT) : "show";
+        switch (action) {
+            case "show":
+                this.show(sender);
+                return;
+            case "dump":
+            case "reset":
+                if (!this.hasPermission(sender, TerraConstants.adminCommandNode)) {
+                    sender.sendMessage(ChatUtil.getNoPermission());
+                    return;
+                }
+
+                if ("reset".equals(action)) {
+                    PipelineStats.reset();
+                    sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.GRAY, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.stats.reset")));
+                } else {
+                    this.dump(sender);
+                }
+                return;
+            default:
+                sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.stats.usage")));
+        }
+    }
+
+    protected void show(ICommandSender sender) {
+        sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.stats.header")));
+
+        List<PipelineStats.Step> steps = PipelineStats.steps();
+        steps.sort(Comparator.comparing(PipelineStats.Step::name));
+        double uptime = PipelineStats.uptimeSeconds();
+        for (PipelineStats.Step step : steps) {
+            sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, step.name()));
+            sender.sendMessage(this.histogramComponent("request", step.request(), uptime));
+            sender.sendMessage(this.histogramComponent("bake", step.bake(), uptime));
+        }
+    }
+
+    protected void dump(ICommandSender sender) {
+        Path file = Disk.dataFile("pipeline_stats.json");
+        try {
+            Files.createDirectories(file.getParent());
+            TerraConstants.JSON_MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), PipelineStats.snapshot());
+            sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.GRAY, TranslateUtil.format(TerraConstants.MODID + ".fragment.terra.stats.dumped", file.toAbsolutePath().toString())));
+        } catch (IOException e) {
+            TerraMod.LOGGER.error("unable to write pipeline statistics", e);
+            sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.format(TerraConstants.MODID + ".fragment.terra.stats.dumpfailed", e.toString())));
+        }
+    }
+
+    private ITextComponent histogramComponent(String name, LatencyHistogram histogram, double uptime) {
+        //decimals are formatted here, as translations in singleplayer don't support precision specifiers
+        return ChatUtil.combine(TextFormatting.GRAY, "  ", TranslateUtil.format(TerraConstants.MODID + ".fragment.terra.stats.histogram",
+                TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.stats." + name).getUnformattedComponentText(),
+                histogram.count(), String.format("%.1f", histogram.count() / uptime),
+                formatNanos(histogram.meanNanos()), formatNanos(histogram.percentileNanos(0.5d)), formatNanos(histogram.percentileNanos(0.99d))));
+    }
+
+    private static String formatNanos(double nanos) {
+        if (nanos >= Long.MAX_VALUE) { //the sample is in the histogram's highest bucket, which has no upper bound
+            return TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.stats.overflow").getUnformattedComponentText();
+        }
+        return nanos >= 1_000_000.0d ? String.format("%.1fms", nanos / 1_000_000.0d) : String.format("%.1fus", nanos / 1_000.0d);
+    }
+
+    @Override
+    public String[] getName() {
+        return new String[]{ "stats" };
+    }
+
+    @Override
+    public String getPurpose() {
+        return TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.stats.purpose").getUnformattedComponentText();
+    }
+
+    @Override
+    public String[] getArguments() {
+        return new String[]{ "[show|dump|reset]" };
+    }
+
+    @Override
+    public String getPermission() {
+        return TerraConstants.MODID + ".commands.terra";
+    }
+}
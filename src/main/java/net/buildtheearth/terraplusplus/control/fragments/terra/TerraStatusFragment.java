@@ -0,0 +1,82 @@
+package net.buildtheearth.terraplusplus.control.fragments.terra;
+
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.core.server.CubeProviderServer;
+import net.buildtheearth.terraplusplus.TerraConstants;
+import net.buildtheearth.terraplusplus.control.fragments.CommandFragment;
+import net.buildtheearth.terraplusplus.dataset.DatasetCacheGovernor;
+import net.buildtheearth.terraplusplus.generator.AdmissionController;
+import net.buildtheearth.terraplusplus.generator.EarthGenerator;
+import net.buildtheearth.terraplusplus.util.ChatUtil;
+import net.buildtheearth.terraplusplus.util.TranslateUtil;
+import net.buildtheearth.terraplusplus.util.concurrent.InstrumentedExecutor;
+import net.buildtheearth.terraplusplus.util.concurrent.TerraExecutors;
+import net.buildtheearth.terraplusplus.util.http.HttpStats;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.TextFormatting;
+import net.minecraft.world.chunk.IChunkProvider;
+
+public class TerraStatusFragment extends CommandFragment {
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) {
+        sender.sendMessage(ChatUtil.titleAndCombine(TextFormatting.RED, TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.status.header")));
+
+        IChunkProvider cp = sender.getEntityWorld().getChunkProvider();
+        ICubeGenerator gen;
+        if (cp instanceof CubeProviderServer && (gen = ((CubeProviderServer) cp).getCubeGenerator()) instanceof EarthGenerator) {
+            AdmissionController admission = ((EarthGenerator) gen).admission;
+            sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "Loading Columns: ", TextFormatting.GREEN, admission.inFlight() + " / " + admission.limit(),
+                    TextFormatting.BLUE, ", Queued: ", TextFormatting.GREEN, admission.queued()));
+            sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "Admitted Columns: ", TextFormatting.GREEN, admission.admitted(),
+                    TextFormatting.BLUE, ", Shed: ", TextFormatting.GREEN, admission.shed()));
+            sender.sendMessage(ChatUtil.combine(TextFormatting.RESET));
+        }
+
+        sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "HTTP Requests: ", TextFormatting.GREEN, HttpStats.requests(),
+                TextFormatting.BLUE, ", Failed: ", TextFormatting.GREEN, HttpStats.failedRequests(),
+                TextFormatting.BLUE, ", Received: ", TextFormatting.GREEN, String.format("%.2f MiB", HttpStats.bytesReceived() / (1024.0d * 1024.0d))));
+        sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "HTTP Cache Hits: ", TextFormatting.GREEN, HttpStats.cacheHits(),
+                TextFormatting.BLUE, ", Misses: ", TextFormatting.GREEN, HttpStats.cacheMisses()));
+        sender.sendMessage(ChatUtil.combine(TextFormatting.RESET));
+
+        sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "Dataset Cache: ", TextFormatting.GREEN,
+                String.format("%.2f / %.2f MiB", DatasetCacheGovernor.totalWeight() / (1024.0d * 1024.0d), DatasetCacheGovernor.budget() / (1024.0d * 1024.0d))));
+        for (DatasetCacheGovernor.Usage usage : DatasetCacheGovernor.usage()) {
+            sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "  " + usage.name() + ": ",
+                    TextFormatting.GREEN, usage.entries(), TextFormatting.BLUE, " tiles, ",
+                    TextFormatting.GREEN, String.format("%.2f MiB", usage.weight() / (1024.0d * 1024.0d)), TextFormatting.BLUE, ", ",
+                    TextFormatting.GREEN, usage.evictions(), TextFormatting.BLUE, " evicted"));
+        }
+        sender.sendMessage(ChatUtil.combine(TextFormatting.RESET));
+
+        for (InstrumentedExecutor executor : TerraExecutors.all()) {
+            sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "Executor \"" + executor.name() + "\": ",
+                    TextFormatting.GREEN, executor.activeTasks() + " / " + executor.threads(), TextFormatting.BLUE, " active, ",
+                    TextFormatting.GREEN, executor.queueDepth(), TextFormatting.BLUE, " queued, ",
+                    TextFormatting.GREEN, executor.inlinedTasks(), TextFormatting.BLUE, " inlined, ",
+                    TextFormatting.GREEN, String.format("%.2fms", executor.averageQueueMillis()), TextFormatting.BLUE, " avg. wait, ",
+                    TextFormatting.GREEN, String.format("%.2fms", executor.averageRunMillis()), TextFormatting.BLUE, " avg. run"));
+        }
+    }
+
+    @Override
+    public String[] getName() {
+        return new String[]{ "status" };
+    }
+
+    @Override
+    public String getPurpose() {
+        return TranslateUtil.translate(TerraConstants.MODID + ".fragment.terra.status.purpose").getUnformattedComponentText();
+    }
+
+    @Override
+    public String[] getArguments() {
+        return null;
+    }
+
+    @Override
+    public String getPermission() {
+        return TerraConstants.MODID + ".commands.terra";
+    }
+}
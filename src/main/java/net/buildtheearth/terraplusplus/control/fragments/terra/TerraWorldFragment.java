@@ -6,7 +6,9 @@ import net.buildtheearth.terraplusplus.TerraConstants;
 import net.buildtheearth.terraplusplus.control.fragments.CommandFragment;
 import net.buildtheearth.terraplusplus.generator.EarthGenerator;
 import net.buildtheearth.terraplusplus.generator.EarthGeneratorSettings;
+import net.buildtheearth.terraplusplus.generator.Prefetcher;
 import net.buildtheearth.terraplusplus.util.ChatUtil;
+import net.buildtheearth.terraplusplus.util.ColumnCache;
 import net.buildtheearth.terraplusplus.util.TranslateUtil;
 import net.minecraft.command.ICommandSender;
 import net.minecraft.server.MinecraftServer;
@@ -44,6 +46,18 @@ public class TerraWorldFragment extends CommandFragment {
         sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "Projection: ", TextFormatting.GREEN, settings.projection().toString()));
         sender.sendMessage(this.boolComponent("Default Heights", settings.useDefaultHeights()));
         sender.sendMessage(this.boolComponent("Default Trees", settings.useDefaultTreeCover()));
+        sender.sendMessage(ChatUtil.combine(TextFormatting.RESET));
+
+        ColumnCache<?> cache = ((EarthGenerator) gen).cache;
+        sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "Cached Columns: ", TextFormatting.GREEN, cache.size() + " / " + cache.maximumSize()));
+        sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "Cache Hits: ", TextFormatting.GREEN, cache.hits(),
+                TextFormatting.BLUE, ", Misses: ", TextFormatting.GREEN, cache.misses(),
+                TextFormatting.BLUE, ", Evictions: ", TextFormatting.GREEN, cache.evictions()));
+
+        Prefetcher prefetcher = ((EarthGenerator) gen).prefetcher;
+        sender.sendMessage(ChatUtil.combine(TextFormatting.BLUE, "Prefetched Columns: ", TextFormatting.GREEN, prefetcher.issued(),
+                TextFormatting.BLUE, ", Used: ", TextFormatting.GREEN, prefetcher.used(),
+                TextFormatting.BLUE, ", In Progress: ", TextFormatting.GREEN, prefetcher.inFlight()));
     }
 
     @Override
@@ -125,4 +125,24 @@ public enum BlendMode {
     public final int size;
 
     public abstract double get(double scaledX, double scaledZ, @NonNull IntToDoubleBiFunction sampler);
+
+    /**
+     * Computes a row of blended values at evenly spaced points.
+     * <p>
+     * The coordinates of each point are obtained by adding the step to the coordinates of the previous point, rather than being computed separately.
+     *
+     * @param scaledX the X coordinate of the first point
+     * @param scaledZ the Z coordinate of the first point
+     * @param stepX   the difference between the X coordinates of consecutive points
+     * @param stepZ   the difference between the Z coordinates of consecutive points
+     * @param count   the number of points
+     * @param sampler the function to use for getting raw sample values
+     * @param dst     the array to store the values in
+     * @param dstOff  the index in the array at which to store the first value
+     */
+    public void getRow(double scaledX, double scaledZ, double stepX, double stepZ, int count, @NonNull IntToDoubleBiFunction sampler, @NonNull double[] dst, int dstOff) {
+        for (int i = 0; i < count; i++, scaledX += stepX, scaledZ += stepZ) {
+            dst[dstOff + i] = this.get(scaledX, scaledZ, sampler);
+        }
+    }
 }
@@ -4,22 +4,103 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import lombok.NonNull;
+import lombok.SneakyThrows;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
 
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * @author DaPorkchop_
  */
 public abstract class Dataset<K, V> extends CacheLoader<K, CompletableFuture<V>> implements IDataset<K, V> {
+    /**
+     * The weight assumed for values whose {@link Dataset} doesn't provide a better estimate.
+     */
+    protected static final long DEFAULT_WEIGHT = 1024L;
+
+    //the priorities of values which were first requested speculatively and are still loading
+    protected final Map<CompletableFuture<V>, SharedPriority> sharedPriorities = new ConcurrentHashMap<>();
+
+    //the total size of all cached values is limited by DatasetCacheGovernor
     protected final LoadingCache<K, CompletableFuture<V>> cache = CacheBuilder.newBuilder()
-            .softValues()
             .expireAfterAccess(5L, TimeUnit.MINUTES)
-            .build(this);
+            .<K, CompletableFuture<V>>removalListener(notification -> DatasetCacheGovernor.removed(notification.getValue()))
+            .build(new CacheLoader<K, CompletableFuture<V>>() {
+                @Override
+                @SuppressWarnings("deprecation")
+                public CompletableFuture<V> load(K key) throws Exception {
+                    long startTime = System.nanoTime();
+                    CompletableFuture<V> future;
+                    RequestPriority priority = Http.currentPriority();
+                    if (priority.isSpeculative()) { //anyone else who requests the value before it's loaded must be able to prevent it from being cancelled
+                        SharedPriority sharedPriority = new SharedPriority(priority);
+                        future = Http.withPriority(sharedPriority, () -> Dataset.this.load0(key));
+                        Dataset.this.sharedPriorities.put(future, sharedPriority);
+                        future.whenComplete((v, t) -> Dataset.this.sharedPriorities.remove(future));
+                    } else {
+                        future = Dataset.this.load(key);
+                    }
+                    future.thenAccept(value -> {
+                        if (value != null) {
+                            DatasetCacheGovernor.loaded(Dataset.this, key, future, Dataset.this.weigh(value), System.nanoTime() - startTime);
+                        }
+                    });
+                    return future;
+                }
+            });
 
     @Override
     public CompletableFuture<V> getAsync(@NonNull K key) {
-        return this.cache.getUnchecked(key);
+        CompletableFuture<V> future = this.cache.getUnchecked(key);
+        if (future.isCompletedExceptionally() && Http.isCancellation(future.handle((v, t) -> t).join())) {
+            //the value was cancelled because nobody wanted it any more, but now someone does. discard it and try again
+            this.cache.asMap().remove(key, future);
+            future = this.cache.getUnchecked(key);
+        }
+        if (!future.isDone()) {
+            SharedPriority sharedPriority = this.sharedPriorities.get(future);
+            if (sharedPriority != null) { //the value is being loaded speculatively, make sure it isn't cancelled or delayed while we still need it
+                sharedPriority.join(Http.currentPriority());
+            }
+        }
+        DatasetCacheGovernor.accessed(future);
+        return future;
+    }
+
+    @SneakyThrows(Exception.class)
+    @SuppressWarnings("deprecation")
+    private CompletableFuture<V> load0(@NonNull K key) {
+        return this.load(key);
+    }
+
+    /**
+     * Estimates the amount of memory used by the given value, for the purposes of {@link DatasetCacheGovernor}.
+     *
+     * @param value the value
+     * @return the value's approximate size, in bytes
+     */
+    protected long weigh(@NonNull V value) {
+        return DEFAULT_WEIGHT;
+    }
+
+    /**
+     * Removes the given value from this dataset's cache, if it is still present.
+     * <p>
+     * Called by {@link DatasetCacheGovernor} when the value is chosen for eviction.
+     */
+    void evict(@NonNull K key, @NonNull CompletableFuture<?> future) {
+        this.cache.asMap().remove(key, future);
+    }
+
+    /**
+     * @return whether or not the given value is still present in this dataset's cache
+     */
+    boolean isCached(@NonNull K key, @NonNull CompletableFuture<?> future) {
+        return this.cache.asMap().get(key) == future;
     }
 
     /**
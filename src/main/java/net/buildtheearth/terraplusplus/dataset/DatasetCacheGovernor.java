@@ -0,0 +1,226 @@
+package net.buildtheearth.terraplusplus.dataset;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.buildtheearth.terraplusplus.TerraConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * Limits the total amount of memory used by the caches of all {@link Dataset}s.
+ * <p>
+ * Every loaded value is weighed by its {@link Dataset} (see {@link Dataset#weigh(Object)}), and its cost is the time it took to load. Once the total weight
+ * of all cached values exceeds the configured budget, values are evicted using the GreedyDual-Size algorithm: each value is given a priority of
+ * {@code L + cost / weight} whenever it is loaded or accessed, the value with the lowest priority is evicted first, and {@code L} is raised to the priority
+ * of the last evicted value. This favors keeping values which are small, expensive to load again, or recently used.
+ * <p>
+ * Accesses are recorded without locking by simply flagging the accessed value. The priorities of flagged values are only updated once they are about to
+ * be evicted, at which point they are given a second chance instead.
+ * <p>
+ * Statistics are recorded separately for each type of {@link Dataset}.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+public class DatasetCacheGovernor {
+    private final Object LOCK = new Object();
+
+    private final Map<CompletableFuture<?>, Entry> ENTRIES = new ConcurrentHashMap<>(); //CompletableFuture uses identity equality, modified only while holding LOCK
+    private final TreeSet<Entry> QUEUE = new TreeSet<>((a, b) -> a.priority != b.priority ? Double.compare(a.priority, b.priority) : Long.compare(a.id, b.id));
+
+    private final Map<String, Usage> USAGE_BY_NAME = new ConcurrentHashMap<>();
+
+    private long NEXT_ID;
+    private double INFLATION;
+    private long TOTAL_WEIGHT;
+
+    /**
+     * @return the maximum total weight of all cached values, in bytes
+     */
+    public long budget() {
+        return TerraConfig.data.datasetCacheMemory * (1L << 20L);
+    }
+
+    /**
+     * @return the current total weight of all cached values, in bytes
+     */
+    public long totalWeight() {
+        synchronized (LOCK) {
+            return TOTAL_WEIGHT;
+        }
+    }
+
+    /**
+     * @return the statistics for every type of {@link Dataset} which has cached any values, in no particular order
+     */
+    public List<Usage> usage() {
+        return new ArrayList<>(USAGE_BY_NAME.values());
+    }
+
+    /**
+     * Notifies the governor that a value has been loaded into the given {@link Dataset}'s cache, evicting other values if necessary.
+     *
+     * @param dataset   the {@link Dataset}
+     * @param key       the value's key
+     * @param future    the {@link CompletableFuture} stored in the cache, which has been completed with the value
+     * @param weight    the value's weight, in bytes
+     * @param costNanos the time taken to load the value, in nanoseconds
+     */
+    <K> void loaded(@NonNull Dataset<K, ?> dataset, @NonNull K key, @NonNull CompletableFuture<?> future, long weight, long costNanos) {
+        Usage usage = USAGE_BY_NAME.computeIfAbsent(dataset.getClass().getSimpleName(), Usage::new);
+        Entry entry = new Entry(dataset, key, future, usage, Math.max(weight, 1L), Math.max(costNanos, 1L));
+
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (LOCK) {
+            if (ENTRIES.putIfAbsent(future, entry) != null) { //already tracked
+                return;
+            }
+
+            entry.id = NEXT_ID++;
+            entry.priority = INFLATION + entry.cost / entry.weight;
+            QUEUE.add(entry);
+            TOTAL_WEIGHT += entry.weight;
+            usage.entries++;
+            usage.weight += entry.weight;
+
+            long budget = budget();
+            while (TOTAL_WEIGHT > budget && !QUEUE.isEmpty()) {
+                Entry victim = QUEUE.pollFirst();
+                if (victim.accessed) { //the value has been accessed since its priority was last updated, update it now and try again
+                    victim.accessed = false;
+                    victim.priority = INFLATION + victim.cost / victim.weight;
+                    QUEUE.add(victim);
+                    continue;
+                }
+
+                INFLATION = victim.priority;
+                untrack(victim);
+                evicted.add(victim);
+            }
+        }
+
+        //remove the evicted values from their caches outside of the lock, since doing so will call back into removed()
+        for (Entry victim : evicted) {
+            victim.usage.evictions.increment();
+            victim.dataset.evict(victim.key, victim.future);
+        }
+
+        //the value may have been removed from the cache before it finished loading, in which case removed() was called before we started tracking it.
+        //  the value is removed from the cache before removed() is called, so checking after we've started tracking it ensures it can't be missed.
+        if (!dataset.isCached(key, future)) {
+            removed(future);
+        }
+    }
+
+    /**
+     * Notifies the governor that a cached value has been accessed.
+     *
+     * @param future the {@link CompletableFuture} stored in the cache
+     */
+    void accessed(@NonNull CompletableFuture<?> future) {
+        Entry entry = ENTRIES.get(future);
+        if (entry != null && !entry.accessed) {
+            entry.accessed = true;
+        }
+    }
+
+    /**
+     * Notifies the governor that a value has been removed from a {@link Dataset}'s cache for any reason.
+     *
+     * @param future the {@link CompletableFuture} which was stored in the cache. May be {@code null}
+     */
+    void removed(CompletableFuture<?> future) {
+        if (future == null) {
+            return;
+        }
+
+        synchronized (LOCK) {
+            Entry entry = ENTRIES.get(future);
+            if (entry != null) {
+                QUEUE.remove(entry);
+                untrack(entry);
+            }
+        }
+    }
+
+    private void untrack(@NonNull Entry entry) {
+        ENTRIES.remove(entry.future);
+        TOTAL_WEIGHT -= entry.weight;
+        entry.usage.entries--;
+        entry.usage.weight -= entry.weight;
+    }
+
+    /**
+     * A value tracked by the governor.
+     *
+     * @author DaPorkchop_
+     */
+    private static final class Entry {
+        final Dataset<Object, ?> dataset;
+        final Object key;
+        final CompletableFuture<?> future;
+        final Usage usage;
+
+        final long weight;
+        final double cost;
+
+        long id;
+        double priority;
+
+        volatile boolean accessed;
+
+        <K> Entry(@NonNull Dataset<K, ?> dataset, @NonNull K key, @NonNull CompletableFuture<?> future, @NonNull Usage usage, long weight, long cost) {
+            this.dataset = uncheckedCast(dataset);
+            this.key = key;
+            this.future = future;
+            this.usage = usage;
+            this.weight = weight;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * The cache usage statistics for a single type of {@link Dataset}.
+     *
+     * @author DaPorkchop_
+     */
+    @Getter
+    public static final class Usage {
+        /**
+         * The simple name of the {@link Dataset}'s class.
+         */
+        protected final String name;
+
+        /**
+         * The number of values which are currently cached.
+         */
+        protected volatile long entries;
+
+        /**
+         * The total weight of all values which are currently cached, in bytes.
+         */
+        protected volatile long weight;
+
+        protected final LongAdder evictions = new LongAdder();
+
+        Usage(@NonNull String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the number of values which were evicted to stay within the memory budget
+         */
+        public long evictions() {
+            return this.evictions.sum();
+        }
+    }
+}
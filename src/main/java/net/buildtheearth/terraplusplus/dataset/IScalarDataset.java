@@ -1,19 +1,29 @@
 package net.buildtheearth.terraplusplus.dataset;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.NonNull;
+import net.buildtheearth.terraplusplus.config.GlobalParseRegistries;
 import net.buildtheearth.terraplusplus.dataset.scalar.ConfigurableDoubleTiledDataset;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraplusplus.util.CornerBoundingBox2d;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * A dataset consisting of floating-point scalar values.
+ * <p>
+ * In JSON, a dataset is either a JSON object with a single property whose name is one of the types in {@link GlobalParseRegistries#SCALAR_DATASETS},
+ * or the configuration of a {@link ConfigurableDoubleTiledDataset}.
  *
  * @author DaPorkchop_
  */
-@JsonDeserialize(as = ConfigurableDoubleTiledDataset.class)
+@JsonDeserialize(using = IScalarDataset.Deserializer.class)
 public interface IScalarDataset {
     /**
      * @param point the point
@@ -40,4 +50,38 @@ public interface IScalarDataset {
      * @return a {@link CompletableFuture} which will be completed with the values
      */
     CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) throws OutOfProjectionBoundsException;
+
+    /**
+     * Asynchronously gets a bunch of values at the given coordinates, at a reduced level of detail.
+     * <p>
+     * Level {@code 0} is full resolution, and each subsequent level corresponds to twice the distance between samples. Implementations may use this to
+     * sample from lower-resolution data, which is much cheaper to load when the samples are far apart. By default, the level of detail is ignored.
+     *
+     * @param sizeX the number of samples to take along the X axis
+     * @param sizeZ the number of samples to take along the Z axis
+     * @param zoom  the level of detail
+     * @return a {@link CompletableFuture} which will be completed with the values
+     * @see #getAsync(CornerBoundingBox2d, int, int)
+     */
+    default CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ, int zoom) throws OutOfProjectionBoundsException {
+        return this.getAsync(bounds, sizeX, sizeZ);
+    }
+
+    class Deserializer extends JsonDeserializer<IScalarDataset> {
+        @Override
+        public IScalarDataset deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            TreeNode node = p.readValueAsTree();
+            if (node.size() == 1) {
+                Iterator<String> names = node.fieldNames();
+                String name = names.hasNext() ? names.next() : null;
+                Class<? extends IScalarDataset> clazz = name != null ? GlobalParseRegistries.SCALAR_DATASETS.get(name) : null;
+                if (clazz != null) {
+                    return p.getCodec().treeToValue(node.get(name), clazz);
+                }
+            }
+
+            //untyped datasets are always tiled datasets, for backwards compatibility
+            return p.getCodec().treeToValue(node, ConfigurableDoubleTiledDataset.class);
+        }
+    }
 }
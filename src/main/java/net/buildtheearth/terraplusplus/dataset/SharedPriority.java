@@ -0,0 +1,78 @@
+package net.buildtheearth.terraplusplus.dataset;
+
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
+
+/**
+ * The {@link RequestPriority} of the requests made while loading a value which was first requested speculatively.
+ * <p>
+ * Everyone who requests the value while it is still loading joins the priority. The value is as urgent as its most urgent requester, it is only
+ * speculative while all of its requesters are, and its requests are only cancelled once every requester has been cancelled. This prevents a value which
+ * is also needed by someone else from being cancelled or delayed just because the request which started loading it turned out to be unnecessary.
+ *
+ * @author DaPorkchop_
+ */
+final class SharedPriority implements RequestPriority {
+    private volatile RequestPriority[] members;
+
+    public SharedPriority(@NonNull RequestPriority first) {
+        this.members = new RequestPriority[]{ first };
+    }
+
+    /**
+     * Adds another requester to this priority.
+     *
+     * @param member the requester's {@link RequestPriority}
+     */
+    public void join(@NonNull RequestPriority member) {
+        boolean wasSpeculative;
+        synchronized (this) {
+            RequestPriority[] members = this.members;
+            for (RequestPriority existing : members) {
+                if (existing == member) { //already joined
+                    return;
+                }
+            }
+
+            wasSpeculative = this.isSpeculative();
+            RequestPriority[] newMembers = new RequestPriority[members.length + 1];
+            System.arraycopy(members, 0, newMembers, 0, members.length);
+            newMembers[members.length] = member;
+            this.members = newMembers;
+        }
+
+        if (wasSpeculative && !member.isSpeculative()) { //the requests may be queued on a host which wouldn't send them while they were speculative
+            Http.priorityChanged();
+        }
+    }
+
+    @Override
+    public double priority() {
+        double min = Double.POSITIVE_INFINITY;
+        for (RequestPriority member : this.members) {
+            min = Math.min(min, member.priority());
+        }
+        return min;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        for (RequestPriority member : this.members) {
+            if (!member.isCancelled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isSpeculative() {
+        for (RequestPriority member : this.members) {
+            if (!member.isSpeculative()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
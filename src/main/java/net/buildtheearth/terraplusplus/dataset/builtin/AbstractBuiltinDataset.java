@@ -4,6 +4,7 @@ import lombok.NonNull;
 import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraplusplus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraplusplus.util.concurrent.TerraExecutors;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -58,7 +59,7 @@ public abstract class AbstractBuiltinDataset implements IScalarDataset {
             }
 
             return out;
-        });
+        }, TerraExecutors.SAMPLE);
     }
 
     protected abstract double get(double x, double y);
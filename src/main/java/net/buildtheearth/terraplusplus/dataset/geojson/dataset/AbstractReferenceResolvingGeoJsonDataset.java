@@ -10,6 +10,8 @@ import lombok.NonNull;
 import net.buildtheearth.terraplusplus.dataset.Dataset;
 import net.buildtheearth.terraplusplus.dataset.geojson.GeoJsonObject;
 import net.buildtheearth.terraplusplus.dataset.geojson.object.Reference;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,7 +47,8 @@ public abstract class AbstractReferenceResolvingGeoJsonDataset<V> extends Datase
 
     @Override
     public CompletableFuture<V> load(@NonNull String key) throws Exception {
-        return this.delegate.getAsync(key).thenCompose(objects -> {
+        RequestPriority priority = Http.currentPriority();
+        return this.delegate.getAsync(key).thenCompose(objects -> Http.withPriority(priority, () -> {
             if (!areAnyObjectsReferences(objects)) { //none of the objects are references, so there's nothing to be resolved!
                 return CompletableFuture.completedFuture(this.translate(Arrays.stream(objects)));
             }
@@ -68,7 +71,7 @@ public abstract class AbstractReferenceResolvingGeoJsonDataset<V> extends Datase
             CompletableFuture<V>[] packedReferenceFutures = uncheckedCast(referenceFutures.toArray(new CompletableFuture[0]));
             return CompletableFuture.allOf(packedReferenceFutures).thenApply(unused ->
                     this.merge(Arrays.stream(packedReferenceFutures).map(CompletableFuture::join)));
-        });
+        }));
     }
 
     protected abstract V translate(@NonNull Stream<GeoJsonObject> inputs);
@@ -24,4 +24,9 @@ public class ParsingGeoJsonDataset extends KeyedHttpDataset<GeoJsonObject[]> {
             return reader.lines().map(GeoJson::parse).toArray(GeoJsonObject[]::new);
         }
     }
+
+    @Override
+    protected long weigh(@NonNull GeoJsonObject[] value) {
+        return 16L + 512L * value.length; //very rough estimate, the size of individual objects varies wildly
+    }
 }
@@ -33,6 +33,11 @@ public class TiledGeoJsonDataset extends TiledDataset<GeoJsonObject[]> implement
         return this.delegate.getAsync(String.format("tile/%d/%d.json", key.x, key.z));
     }
 
+    @Override
+    protected long weigh(@NonNull GeoJsonObject[] value) {
+        return 16L; //the array is shared with the delegate dataset, which already accounts for its size
+    }
+
     @Override
     public CompletableFuture<GeoJsonObject[][]> getAsync(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
         Bounds2d localBounds = bounds.fromGeo(this.projection).axisAlign();
@@ -30,8 +30,9 @@ public class ConfigurableDoubleTiledDataset extends DoubleTiledDataset {
             @JsonProperty(value = "resolution", required = true) int resolution,
             @JsonProperty(value = "blend", required = true) @NonNull BlendMode blend,
             @JsonProperty(value = "parse", required = true) @NonNull DoubleScalarParser parse,
-            @JsonProperty(value = "projection", required = true) @NonNull GeographicProjection projection) {
-        super(projection, resolution, blend);
+            @JsonProperty(value = "projection", required = true) @NonNull GeographicProjection projection,
+            @JsonProperty(value = "storage", required = false) ScalarTileStorage storage) {
+        super(projection, resolution, blend, storage != null ? storage : ScalarTileStorage.DEFAULT);
 
         this.urls = urls;
         this.parse = parse;
@@ -43,7 +44,7 @@ public class ConfigurableDoubleTiledDataset extends DoubleTiledDataset {
     }
 
     @Override
-    protected double[] decode(int tileX, int tileZ, @NonNull ByteBuf data) throws Exception {
+    protected double[] decodeValues(int tileX, int tileZ, @NonNull ByteBuf data) throws Exception {
         return this.parse.parse(this.resolution, data);
     }
 
@@ -64,4 +65,10 @@ public class ConfigurableDoubleTiledDataset extends DoubleTiledDataset {
     public GeographicProjection projection() {
         return super.projection();
     }
+
+    @Override
+    @JsonGetter
+    public ScalarTileStorage storage() {
+        return super.storage();
+    }
 }
@@ -1,10 +1,8 @@
 package net.buildtheearth.terraplusplus.dataset.scalar;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import net.buildtheearth.terraplusplus.dataset.BlendMode;
 import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
 import net.buildtheearth.terraplusplus.dataset.TiledDataset;
@@ -12,12 +10,11 @@ import net.buildtheearth.terraplusplus.dataset.TiledHttpDataset;
 import net.buildtheearth.terraplusplus.projection.GeographicProjection;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraplusplus.util.CornerBoundingBox2d;
-import net.buildtheearth.terraplusplus.util.IntToDoubleBiFunction;
 import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
+import net.buildtheearth.terraplusplus.util.concurrent.TerraExecutors;
 import net.daporkchop.lib.common.math.BinMath;
 import net.minecraft.util.math.ChunkPos;
 
-import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
@@ -25,17 +22,24 @@ import static net.daporkchop.lib.common.util.PValidation.*;
 
 /**
  * A {@link TiledDataset} which operates on a grid of interpolated {@code double}s.
+ * <p>
+ * Decoded tiles are stored in memory as {@link ScalarTile}s, whose precision is determined by the dataset's {@link ScalarTileStorage}.
  *
  * @author DaPorkchop_
  */
 @Getter
-public abstract class DoubleTiledDataset extends TiledHttpDataset<double[]> implements IScalarDataset {
+public abstract class DoubleTiledDataset extends TiledHttpDataset<ScalarTile> implements IScalarDataset {
     protected final BlendMode blend;
+    protected final ScalarTileStorage storage;
     protected final int resolution;
     protected final int shift;
     protected final int mask;
 
     public DoubleTiledDataset(@NonNull GeographicProjection projection, int resolution, @NonNull BlendMode blend) {
+        this(projection, resolution, blend, ScalarTileStorage.DEFAULT);
+    }
+
+    public DoubleTiledDataset(@NonNull GeographicProjection projection, int resolution, @NonNull BlendMode blend, @NonNull ScalarTileStorage storage) {
         super(projection, 1.0d / resolution);
 
         checkArg(BinMath.isPow2(positive(resolution, "resolution")), "given resolution (%d) is not a power of 2!", resolution);
@@ -44,6 +48,25 @@ public abstract class DoubleTiledDataset extends TiledHttpDataset<double[]> impl
         this.mask = resolution - 1;
 
         this.blend = blend;
+        this.storage = storage;
+    }
+
+    /**
+     * Decodes the values in a tile.
+     *
+     * @return the values in the tile, indexed by {@code z * resolution + x}
+     * @see #decode(int, int, ByteBuf)
+     */
+    protected abstract double[] decodeValues(int tileX, int tileZ, @NonNull ByteBuf data) throws Exception;
+
+    @Override
+    protected ScalarTile decode(int tileX, int tileZ, @NonNull ByteBuf data) throws Exception {
+        return this.storage.store(this.decodeValues(tileX, tileZ, data));
+    }
+
+    @Override
+    protected long weigh(@NonNull ScalarTile value) {
+        return value.sizeInBytes();
     }
 
     @Override
@@ -59,7 +82,7 @@ public abstract class DoubleTiledDataset extends TiledHttpDataset<double[]> impl
 
             @Override
             public Double apply(Void unused) { //stage 2: actually compute the value now that the tiles have been fetched
-                return DoubleTiledDataset.this.blend.get(this.localCoords[0], this.localCoords[1], this);
+                return DoubleTiledDataset.this.blend.get(this.localCoords[0], this.localCoords[1], this.sampler);
             }
         }
 
@@ -94,19 +117,17 @@ public abstract class DoubleTiledDataset extends TiledHttpDataset<double[]> impl
                 double stepX = 1.0d / sizeX;
                 double stepZ = 1.0d / sizeZ;
 
-                double[] point = new double[2];
+                double[] rowStart = new double[2];
+                double[] rowEnd = new double[2];
                 double[] out = new double[sizeX * sizeZ];
 
                 double fx = 0.0d;
-                for (int i = 0, x = 0; x < sizeX; x++, fx += stepX) {
-                    double fz = 0.0d;
-                    for (int z = 0; z < sizeZ; z++, fz += stepZ) {
-                        //compute coordinates of point
-                        point = this.localBounds.point(point, fx, fz);
-
-                        //sample value at point
-                        out[i++] = blend.get(point[0], point[1], this);
-                    }
+                for (int x = 0; x < sizeX; x++, fx += stepX) {
+                    //each row is a straight line between two opposite edges of the bounding box, so we can step along it instead of computing every point
+                    rowStart = this.localBounds.point(rowStart, fx, 0.0d);
+                    rowEnd = this.localBounds.point(rowEnd, fx, 1.0d);
+
+                    blend.getRow(rowStart[0], rowStart[1], (rowEnd[0] - rowStart[0]) * stepZ, (rowEnd[1] - rowStart[1]) * stepZ, sizeZ, this.sampler, out, x * sizeZ);
                 }
 
                 return out;
@@ -119,39 +140,27 @@ public abstract class DoubleTiledDataset extends TiledHttpDataset<double[]> impl
         return new State(localBounds, paddedLocalBounds).future();
     }
 
-    @RequiredArgsConstructor
-    protected abstract class AbstractState<R> implements Function<Void, R>, IntToDoubleBiFunction {
-        final Long2ObjectMap<double[]> loadedTiles = new Long2ObjectOpenHashMap<>();
-
-        @NonNull
-        protected final Bounds2d paddedLocalBounds;
-
-        @Override
-        public double apply(int x, int z) { //gets raw sample values to be used in blending
-            int shift = DoubleTiledDataset.this.shift;
-            int mask = DoubleTiledDataset.this.mask;
+    protected abstract class AbstractState<R> implements Function<Void, R> {
+        /**
+         * Gets raw sample values to be used in blending.
+         */
+        protected final TileSampler sampler;
 
-            double[] tile = this.loadedTiles.get(BinMath.packXY(x >> shift, z >> shift));
-            if (tile == null) {
-                return Double.NaN;
-            }
-            return tile[(z & mask) << shift | (x & mask)];
+        public AbstractState(@NonNull Bounds2d paddedLocalBounds) {
+            this.sampler = new TileSampler(DoubleTiledDataset.this.shift, paddedLocalBounds);
         }
 
         public CompletableFuture<R> future() {
-            ChunkPos[] tilePositions = this.paddedLocalBounds.toTiles(DoubleTiledDataset.this.resolution);
-
-            return CompletableFuture.allOf(Arrays.stream(tilePositions)
-                    .map(pos -> DoubleTiledDataset.this.getAsync(pos)
-                            .thenApply(tile -> { //put tile directly into map when it's loaded
-                                //synchronize because we can't be certain that all of the futures will be completed by the same thread
-                                synchronized (this.loadedTiles) {
-                                    this.loadedTiles.put(BinMath.packXY(pos.x, pos.z), tile);
-                                }
-                                return tile;
-                            }))
-                    .toArray(CompletableFuture[]::new))
-                    .thenApplyAsync(this);
+            TileSampler sampler = this.sampler;
+            CompletableFuture<?>[] futures = new CompletableFuture[sampler.tileCount()];
+            for (int i = 0; i < futures.length; i++) {
+                int index = i;
+                //put tile directly into the sampler when it's loaded. each tile has its own slot, and the final stage happens-after all of them, so
+                // there's no need to synchronize
+                futures[i] = DoubleTiledDataset.this.getAsync(new ChunkPos(sampler.tileX(i), sampler.tileZ(i))).thenAccept(tile -> sampler.put(index, tile));
+            }
+
+            return CompletableFuture.allOf(futures).thenApplyAsync(this, TerraExecutors.SAMPLE);
         }
     }
 }
@@ -5,11 +5,15 @@ import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
+import net.buildtheearth.terraplusplus.TerraConfig;
 import net.buildtheearth.terraplusplus.TerraConstants;
 import net.buildtheearth.terraplusplus.config.condition.DoubleCondition;
+import net.buildtheearth.terraplusplus.dataset.Dataset;
 import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraplusplus.util.CornerBoundingBox2d;
@@ -17,6 +21,8 @@ import net.buildtheearth.terraplusplus.util.IntRange;
 import net.buildtheearth.terraplusplus.util.bvh.BVH;
 import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
 import net.buildtheearth.terraplusplus.util.http.Disk;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
 import net.daporkchop.lib.common.function.io.IOFunction;
 import net.daporkchop.lib.common.function.throwing.EFunction;
 
@@ -29,18 +35,48 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 
+import static net.daporkchop.lib.common.math.PMath.*;
 import static net.daporkchop.lib.common.util.PValidation.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 /**
  * Implementation of {@link IScalarDataset} which can sample from multiple {@link IScalarDataset}s and combine the results.
+ * <p>
+ * The world is divided into small regions, for each of which the priority-ordered list of datasets is resolved once and cached. Each region also remembers
+ * whether each of its datasets has been observed to answer all, none or only some of the samples requested from it. If a dataset is known not to always
+ * answer every sample in a region, the next dataset is requested at the same time rather than only once the first one's results are available. Where
+ * nothing is known yet, up to {@link TerraConfig.DataOpts#speculativeDatasets} lower-priority datasets are requested ahead of time. The results are still
+ * combined in priority order, so this only affects latency.
+ * <p>
+ * Requests made ahead of time are {@link RequestPriority#isSpeculative() speculative} until the dataset is actually reached, and are cancelled if the
+ * result is complete before then. Values which are also requested by someone who actually needs them are not cancelled (see {@link Dataset}), and a
+ * dataset whose request was cancelled anyway is simply requested again once it is reached.
+ * <p>
+ * Each dataset is only used for the levels of detail in its {@code zooms} range. Requests for a level of detail coarser than any dataset supports are
+ * treated as requests for the coarsest supported level.
  *
  * @author DaPorkchop_
  */
 public class MultiScalarDataset implements IScalarDataset {
+    /**
+     * The number of regions per degree of longitude or latitude.
+     */
+    protected static final int REGION_SCALE = 64;
+
+    protected static final int COVERAGE_FULL = 1;
+    protected static final int COVERAGE_NONE = 2;
+    protected static final int COVERAGE_PARTIAL = 4;
+
     protected final BVH<WrappedDataset> bvh;
+    protected final int maxZoom;
+
+    protected final Cache<Long, Region> regions = CacheBuilder.newBuilder()
+            .maximumSize(4096L)
+            .build();
 
     @SneakyThrows(IOException.class)
     public MultiScalarDataset(@NonNull String name, boolean useDefault) {
@@ -61,11 +97,70 @@ public class MultiScalarDataset implements IScalarDataset {
                 .flatMap(Arrays::stream)
                 .flatMap(WrappedDataset::flatten)
                 .toArray(WrappedDataset[]::new));
+
+        int maxZoom = 0;
+        for (WrappedDataset dataset : this.bvh) {
+            maxZoom = Math.max(maxZoom, dataset.zooms.max());
+        }
+        this.maxZoom = maxZoom;
+    }
+
+    /**
+     * Gets the cached {@link Region} which entirely contains the given bounding box.
+     *
+     * @param bounds the bounding box, in geographic coordinates
+     * @param zoom   the level of detail, as returned by {@link #zoom(int)}
+     * @return the {@link Region}, or {@code null} if the bounding box isn't strictly inside a single region, or the region's datasets can't be cached
+     */
+    protected Region region(@NonNull Bounds2d bounds, int zoom) {
+        int x = floorI(bounds.minX() * REGION_SCALE);
+        int z = floorI(bounds.minZ() * REGION_SCALE);
+        double minX = x / (double) REGION_SCALE;
+        double maxX = (x + 1) / (double) REGION_SCALE;
+        double minZ = z / (double) REGION_SCALE;
+        double maxZ = (z + 1) / (double) REGION_SCALE;
+
+        //the bounding box must not touch the region's edges, as otherwise it could intersect a dataset which only touches the region
+        if (!(bounds.minX() > minX && bounds.maxX() < maxX && bounds.minZ() > minZ && bounds.maxZ() < maxZ)) {
+            return null;
+        }
+
+        //region coordinates fit into 24 bits, since there are only 360 * REGION_SCALE regions along each axis
+        long key = ((long) zoom << 48L) | ((x & 0xFFFFFFL) << 24L) | (z & 0xFFFFFFL);
+        Region region = this.regions.getIfPresent(key);
+        if (region == null) { //if multiple threads get here at once they'll all resolve the same region, which is harmless
+            this.regions.put(key, region = new Region(this.bvh, Bounds2d.of(minX, maxX, minZ, maxZ), zoom));
+        }
+        return region.datasets != null ? region : null;
+    }
+
+    /**
+     * Gets all of the datasets which intersect the given bounding box and support the given level of detail, in priority order.
+     *
+     * @param region the {@link Region} containing the bounding box, as returned by {@link #region(Bounds2d, int)}. May be {@code null}
+     * @param bounds the bounding box, in geographic coordinates
+     * @param zoom   the level of detail, as returned by {@link #zoom(int)}
+     */
+    protected WrappedDataset[] datasets(Region region, @NonNull Bounds2d bounds, int zoom) {
+        if (region != null) {
+            return region.datasets;
+        }
+        return sortedDatasets(this.bvh.getAllIntersecting(bounds), zoom);
+    }
+
+    /**
+     * Clamps the requested level of detail to the range supported by this dataset.
+     *
+     * @param zoom the requested level of detail
+     */
+    protected int zoom(int zoom) {
+        return clamp(zoom, 0, this.maxZoom);
     }
 
     @Override
     public CompletableFuture<Double> getAsync(double lon, double lat) throws OutOfProjectionBoundsException {
-        WrappedDataset[] datasets = this.bvh.getAllIntersecting(Bounds2d.of(lon, lon, lat, lat)).toArray(new WrappedDataset[0]);
+        Bounds2d pointBounds = Bounds2d.of(lon, lon, lat, lat);
+        WrappedDataset[] datasets = this.datasets(this.region(pointBounds, 0), pointBounds, 0);
         if (datasets.length == 0) { //no matching datasets!
             return CompletableFuture.completedFuture(Double.NaN);
         } else if (datasets.length == 1) { //only one dataset matches
@@ -73,7 +168,7 @@ public class MultiScalarDataset implements IScalarDataset {
                 return datasets[0].dataset.getAsync(lon, lat);
             }
         }
-        Arrays.sort(datasets); //ensure datasets are in priority order
+        RequestPriority requestPriority = Http.currentPriority(); //subsequent datasets are sampled from callback threads
 
         class State implements BiConsumer<Double, Throwable> {
             final CompletableFuture<Double> future = new CompletableFuture<>();
@@ -92,11 +187,13 @@ public class MultiScalarDataset implements IScalarDataset {
 
             private void advance() {
                 if (++this.i < datasets.length) {
-                    try {
-                        datasets[this.i].dataset.getAsync(lon, lat).whenComplete(this);
-                    } catch (OutOfProjectionBoundsException e) {
-                        this.future.completeExceptionally(e);
-                    }
+                    Http.runWithPriority(requestPriority, () -> {
+                        try {
+                            datasets[this.i].dataset.getAsync(lon, lat).whenComplete(this);
+                        } catch (OutOfProjectionBoundsException e) {
+                            this.future.completeExceptionally(e);
+                        }
+                    });
                 } else { //no datasets remain, complete the future successfully with whatever value we currently have
                     this.future.complete(Double.NaN);
                 }
@@ -110,30 +207,45 @@ public class MultiScalarDataset implements IScalarDataset {
 
     @Override
     public CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) throws OutOfProjectionBoundsException {
+        return this.getAsync(bounds, sizeX, sizeZ, 0);
+    }
+
+    @Override
+    public CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ, int requestedZoom) throws OutOfProjectionBoundsException {
         if (notNegative(sizeX, "sizeX") == 0 | notNegative(sizeZ, "sizeZ") == 0) { //no input points -> no output points, ez
             return CompletableFuture.completedFuture(new double[0]);
         }
 
-        WrappedDataset[] datasets = this.bvh.getAllIntersecting(bounds).toArray(new WrappedDataset[0]);
+        int zoom = this.zoom(requestedZoom);
+        Region region = this.region(bounds, zoom);
+        WrappedDataset[] datasets = this.datasets(region, bounds, zoom);
         if (datasets.length == 0) { //no matching datasets!
             return CompletableFuture.completedFuture(null);
         } else if (datasets.length == 1) { //only one dataset matches
             if (datasets[0].condition == null) { //if it doesn't have a condition, there's no reason to do any merging
-                return datasets[0].dataset.getAsync(bounds, sizeX, sizeZ);
+                return datasets[0].dataset.getAsync(bounds, sizeX, sizeZ, requestedZoom);
             }
         }
-        Arrays.sort(datasets); //ensure datasets are in priority order
+        RequestPriority requestPriority = Http.currentPriority(); //subsequent datasets are sampled from callback threads
 
         class State implements BiConsumer<double[], Throwable> {
             final CompletableFuture<double[]> future = new CompletableFuture<>();
+            final CompletableFuture<double[]>[] requests = uncheckedCast(new CompletableFuture[datasets.length]);
+            final SpeculativePriority[] speculativePriorities = new SpeculativePriority[datasets.length];
+            boolean[] retried;
             double[] out;
             int remaining = sizeX * sizeZ;
             int i = -1;
 
             @Override
             public void accept(double[] data, Throwable cause) {
+                int remainingBefore = this.remaining;
                 if (cause != null) {
+                    if (Http.isCancellation(cause) && !requestPriority.isCancelled() && this.retry(this.i)) {
+                        return;
+                    }
                     this.future.completeExceptionally(cause);
+                    return;
                 } else if (data != null) { //if the array is null, it's as if it were an array of NaNs - nothing would be set, we simply skip it
                     double[] out = this.out;
                     if (out == null) { //ensure the destination array is set
@@ -148,6 +260,7 @@ public class MultiScalarDataset implements IScalarDataset {
                             if (!Double.isNaN(v) && dataset.test(v)) { //if the value in the input array is accepted, use it as the output
                                 out[i] = v;
                                 if (--this.remaining == 0) { //if no samples are left to process, we're done!
+                                    this.recordCoverage(remainingBefore);
                                     this.future.complete(out);
                                     return;
                                 }
@@ -155,16 +268,88 @@ public class MultiScalarDataset implements IScalarDataset {
                         }
                     }
                 }
+                this.recordCoverage(remainingBefore);
+                this.advance();
+            }
+
+            /**
+             * Requests the dataset with the given index again, in case its request was cancelled while it was still speculative (e.g. because the host
+             * doesn't accept speculative requests, or because the request was shared with a speculative request for another column).
+             *
+             * @return whether or not the dataset will be requested again. Each dataset is only requested again at most once
+             */
+            private boolean retry(int i) {
+                if (this.retried == null) {
+                    this.retried = new boolean[datasets.length];
+                } else if (this.retried[i]) {
+                    return false;
+                }
+                this.retried[i] = true;
+
+                this.requests[i] = null;
+                this.speculativePriorities[i] = null;
+                this.i = i - 1;
                 this.advance();
+                return true;
+            }
+
+            private void recordCoverage(int remainingBefore) {
+                if (region != null) {
+                    int accepted = remainingBefore - this.remaining;
+                    region.record(this.i, accepted == remainingBefore ? COVERAGE_FULL : accepted == 0 ? COVERAGE_NONE : COVERAGE_PARTIAL);
+                }
+            }
+
+            private CompletableFuture<double[]> request(int i) throws OutOfProjectionBoundsException {
+                CompletableFuture<double[]> request = this.requests[i];
+                if (request == null) {
+                    this.requests[i] = request = datasets[i].dataset.getAsync(bounds, sizeX, sizeZ, requestedZoom);
+                }
+                return request;
+            }
+
+            private void speculate() {
+                int speculativeDatasets = TerraConfig.data.speculativeDatasets;
+                for (int next = this.i + 1; next < datasets.length; next++) {
+                    //request the next dataset if the previous one is known not to answer every sample in this region, or if nothing is known about the
+                    // previous one yet and we haven't already requested too many datasets ahead of time
+                    if (!(region != null && region.mayFallThrough(next - 1))
+                        && !((region == null || region.isUnknown(next - 1)) && next - this.i <= speculativeDatasets)) {
+                        break;
+                    } else if (this.requests[next] != null) { //already requested
+                        continue;
+                    }
+
+                    int index = next;
+                    SpeculativePriority priority = this.speculativePriorities[index] = new SpeculativePriority(requestPriority, this.future);
+                    Http.runWithPriority(priority, () -> {
+                        try {
+                            this.request(index);
+                        } catch (OutOfProjectionBoundsException ignored) { //the exception will be thrown again if we actually get to this dataset
+                        }
+                    });
+                }
             }
 
             private void advance() {
                 if (++this.i < datasets.length) {
-                    try {
-                        datasets[this.i].dataset.getAsync(bounds, sizeX, sizeZ).whenComplete(this);
-                    } catch (OutOfProjectionBoundsException e) {
-                        this.future.completeExceptionally(e);
+                    SpeculativePriority speculativePriority = this.speculativePriorities[this.i];
+                    if (speculativePriority != null) { //the dataset was requested ahead of time, but now we actually need it
+                        speculativePriority.promote();
                     }
+
+                    Http.runWithPriority(requestPriority, () -> {
+                        CompletableFuture<double[]> request;
+                        try {
+                            request = this.request(this.i);
+                        } catch (OutOfProjectionBoundsException e) {
+                            this.future.completeExceptionally(e);
+                            return;
+                        }
+
+                        this.speculate();
+                        request.whenComplete(this);
+                    });
                 } else { //no datasets remain, complete the future successfully with whatever value we currently have
                     this.future.complete(this.out);
                 }
@@ -176,6 +361,130 @@ public class MultiScalarDataset implements IScalarDataset {
         return state.future;
     }
 
+    /**
+     * Gets the datasets which support the given level of detail, in priority order.
+     *
+     * @param candidates the datasets
+     * @param zoom       the level of detail
+     */
+    protected static WrappedDataset[] sortedDatasets(@NonNull List<WrappedDataset> candidates, int zoom) {
+        WrappedDataset[] datasets = candidates.stream().filter(dataset -> dataset.supportsZoom(zoom)).toArray(WrappedDataset[]::new);
+        Arrays.sort(datasets); //ensure datasets are in priority order
+        return datasets;
+    }
+
+    /**
+     * A small area of the world for which the list of intersecting datasets has been resolved in advance.
+     *
+     * @author DaPorkchop_
+     */
+    protected static final class Region {
+        /**
+         * All of the datasets which intersect this region, in priority order. {@code null} if some of them don't cover the whole region, in which case the
+         * datasets must be resolved individually for each query.
+         */
+        protected final WrappedDataset[] datasets;
+
+        /**
+         * The coverage flags which have been observed for each dataset in this region.
+         */
+        protected final AtomicIntegerArray coverage;
+
+        public Region(@NonNull BVH<WrappedDataset> bvh, @NonNull Bounds2d bounds, int zoom) {
+            WrappedDataset[] datasets = sortedDatasets(bvh.getAllIntersecting(bounds), zoom);
+            for (WrappedDataset dataset : datasets) {
+                if (!(dataset.minX <= bounds.minX() && dataset.maxX >= bounds.maxX() && dataset.minZ <= bounds.minZ() && dataset.maxZ >= bounds.maxZ())) {
+                    datasets = null;
+                    break;
+                }
+            }
+
+            this.datasets = datasets;
+            this.coverage = new AtomicIntegerArray(datasets != null ? datasets.length : 0);
+        }
+
+        /**
+         * Records how many of the samples requested from the dataset with the given index were accepted.
+         *
+         * @param index    the dataset's index
+         * @param coverage one of {@link #COVERAGE_FULL}, {@link #COVERAGE_NONE} or {@link #COVERAGE_PARTIAL}
+         */
+        public void record(int index, int coverage) {
+            int flags;
+            do {
+                flags = this.coverage.get(index);
+            } while ((flags & coverage) == 0 && !this.coverage.compareAndSet(index, flags, flags | coverage));
+        }
+
+        /**
+         * Checks whether or not the dataset with the given index has been observed to leave samples in this region for lower-priority datasets.
+         *
+         * @param index the dataset's index
+         */
+        public boolean mayFallThrough(int index) {
+            return (this.coverage.get(index) & (COVERAGE_NONE | COVERAGE_PARTIAL)) != 0;
+        }
+
+        /**
+         * Checks whether or not the dataset with the given index has never been sampled in this region.
+         *
+         * @param index the dataset's index
+         */
+        public boolean isUnknown(int index) {
+            return this.coverage.get(index) == 0;
+        }
+    }
+
+    /**
+     * The {@link RequestPriority} of requests for a dataset which were made before the higher-priority datasets' results were available.
+     * <p>
+     * Such requests are less urgent than those for datasets whose results are definitely needed, and are cancelled once the combined result is complete
+     * unless they have been {@link #promote() promoted} in the meantime.
+     *
+     * @author DaPorkchop_
+     */
+    private static final class SpeculativePriority implements RequestPriority {
+        /**
+         * Added to the priority of speculative requests, so that they are sent after all non-speculative requests for nearby columns.
+         */
+        private static final double SPECULATION_PENALTY = 1.0e6d;
+
+        private final RequestPriority base;
+        private final CompletableFuture<?> result;
+
+        private volatile boolean promoted;
+
+        public SpeculativePriority(@NonNull RequestPriority base, @NonNull CompletableFuture<?> result) {
+            this.base = base;
+            this.result = result;
+        }
+
+        /**
+         * Marks the dataset's result as being needed.
+         */
+        public void promote() {
+            if (!this.promoted) {
+                this.promoted = true;
+                Http.priorityChanged(); //the request may be queued on a host which wouldn't send it while it was speculative
+            }
+        }
+
+        @Override
+        public double priority() {
+            return this.promoted ? this.base.priority() : this.base.priority() + SPECULATION_PENALTY;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.base.isCancelled() || (!this.promoted && this.result.isDone());
+        }
+
+        @Override
+        public boolean isSpeculative() {
+            return !this.promoted;
+        }
+    }
+
     /**
      * Wrapper around a dataset with a bounding box.
      *
@@ -190,7 +499,7 @@ public class MultiScalarDataset implements IScalarDataset {
         @Getter(onMethod_ = { @JsonGetter })
         protected final DoubleCondition condition;
         @Getter(onMethod_ = { @JsonGetter })
-        protected final IntRange zooms; //TODO: use this
+        protected final IntRange zooms;
 
         protected final Bounds2d[] bounds;
 
@@ -233,6 +542,14 @@ public class MultiScalarDataset implements IScalarDataset {
             return -Double.compare(this.priority, o.priority);
         }
 
+        /**
+         * @param zoom the level of detail
+         * @return whether or not this dataset should be used at the given level of detail
+         */
+        public boolean supportsZoom(int zoom) {
+            return zoom >= this.zooms.min() && zoom <= this.zooms.max();
+        }
+
         @Override
         public boolean test(double value) {
             return this.condition == null || this.condition.test(value);
@@ -0,0 +1,135 @@
+package net.buildtheearth.terraplusplus.dataset.scalar;
+
+import lombok.NonNull;
+
+/**
+ * A decoded tile of scalar values, as stored in the cache of a {@link DoubleTiledDataset}.
+ * <p>
+ * Tiles may store their values with less precision than a {@code double} in order to save memory. The way in which values are stored is determined by a
+ * {@link ScalarTileStorage}.
+ *
+ * @author DaPorkchop_
+ */
+public abstract class ScalarTile {
+    /**
+     * Gets the value at the given index.
+     *
+     * @param i the index
+     * @return the value, or {@link Double#NaN} if there is no value at the given index
+     */
+    public abstract double get(int i);
+
+    /**
+     * @return the number of values in this tile
+     */
+    public abstract int length();
+
+    /**
+     * @return the approximate amount of memory used by this tile, in bytes
+     */
+    public abstract long sizeInBytes();
+
+    /**
+     * A {@link ScalarTile} which stores its values as {@code double}s.
+     *
+     * @author DaPorkchop_
+     */
+    static final class OfDouble extends ScalarTile {
+        private final double[] values;
+
+        OfDouble(@NonNull double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public double get(int i) {
+            return this.values[i];
+        }
+
+        @Override
+        public int length() {
+            return this.values.length;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 32L + 8L * this.values.length;
+        }
+    }
+
+    /**
+     * A {@link ScalarTile} which stores its values as {@code float}s.
+     *
+     * @author DaPorkchop_
+     */
+    static final class OfFloat extends ScalarTile {
+        private final float[] values;
+
+        OfFloat(@NonNull double[] values) {
+            this.values = new float[values.length];
+            for (int i = 0; i < values.length; i++) {
+                this.values[i] = (float) values[i];
+            }
+        }
+
+        @Override
+        public double get(int i) {
+            return this.values[i];
+        }
+
+        @Override
+        public int length() {
+            return this.values.length;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 32L + 4L * this.values.length;
+        }
+    }
+
+    /**
+     * A {@link ScalarTile} which stores its values as {@code short}s, which are mapped to the actual values using a fixed offset and scale.
+     * <p>
+     * {@link Short#MIN_VALUE} is reserved to represent {@link Double#NaN}, and values which are out of range are clamped.
+     *
+     * @author DaPorkchop_
+     */
+    static final class OfShort extends ScalarTile {
+        private static final short NAN = Short.MIN_VALUE;
+
+        private final short[] values;
+        private final double offset;
+        private final double scale;
+
+        OfShort(@NonNull double[] values, double offset, double scale) {
+            this.values = new short[values.length];
+            this.offset = offset;
+            this.scale = scale;
+
+            double factor = 1.0d / scale;
+            for (int i = 0; i < values.length; i++) {
+                double value = values[i];
+                this.values[i] = Double.isNaN(value)
+                        ? NAN
+                        : (short) Math.max(Math.min(Math.round((value - offset) * factor), Short.MAX_VALUE), Short.MIN_VALUE + 1);
+            }
+        }
+
+        @Override
+        public double get(int i) {
+            short value = this.values[i];
+            return value != NAN ? value * this.scale + this.offset : Double.NaN;
+        }
+
+        @Override
+        public int length() {
+            return this.values.length;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 48L + 2L * this.values.length;
+        }
+    }
+}
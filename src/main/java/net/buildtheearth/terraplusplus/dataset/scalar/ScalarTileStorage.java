@@ -0,0 +1,112 @@
+package net.buildtheearth.terraplusplus.dataset.scalar;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Getter;
+import lombok.NonNull;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Defines how the values in the tiles of a {@link DoubleTiledDataset} are stored in memory.
+ * <p>
+ * May be configured in JSON either as just the name of a {@link Mode}, e.g. {@code "FLOAT"}, or as an object with the properties {@code "mode"},
+ * {@code "offset"} and {@code "scale"}, e.g. {@code { "mode": "SHORT", "offset": 0.0, "scale": 0.01 }}. The offset and scale are only used by
+ * {@link Mode#SHORT}.
+ * <p>
+ * Jackson always prefers a delegating creator over a properties-based one, so both forms are handled by a single creator which accepts the raw JSON.
+ *
+ * @author DaPorkchop_
+ */
+@JsonDeserialize
+@JsonSerialize
+@Getter(onMethod_ = { @JsonGetter })
+public final class ScalarTileStorage {
+    /**
+     * The default storage, which keeps values as {@code float}s. This is sufficient for all of the supported input formats.
+     */
+    public static final ScalarTileStorage DEFAULT = new ScalarTileStorage(Mode.FLOAT, 0.0d, 1.0d);
+
+    public static ScalarTileStorage of(@NonNull Mode mode) {
+        return new ScalarTileStorage(mode, 0.0d, 1.0d);
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static ScalarTileStorage fromJson(@NonNull JsonNode node) {
+        if (node.isTextual()) { //just the mode
+            return of(Mode.valueOf(node.textValue()));
+        }
+
+        checkArg(node.isObject(), "storage must be either a string or an object (given: %s)", node);
+        node.fieldNames().forEachRemaining(name -> checkArg("mode".equals(name) || "offset".equals(name) || "scale".equals(name),
+                "unknown storage property: %s", name));
+
+        JsonNode mode = node.get("mode");
+        JsonNode offset = node.get("offset");
+        JsonNode scale = node.get("scale");
+        checkArg(mode != null && mode.isTextual(), "storage mode must be given as a string (given: %s)", mode);
+        checkArg(offset == null || offset.isNumber(), "storage offset must be a number (given: %s)", offset);
+        checkArg(scale == null || scale.isNumber(), "storage scale must be a number (given: %s)", scale);
+        return new ScalarTileStorage(Mode.valueOf(mode.textValue()),
+                offset != null ? offset.doubleValue() : 0.0d,
+                scale != null ? scale.doubleValue() : 1.0d);
+    }
+
+    protected final Mode mode;
+    protected final double offset;
+    protected final double scale;
+
+    public ScalarTileStorage(@NonNull Mode mode, double offset, double scale) {
+        this.mode = mode;
+        this.offset = offset;
+        this.scale = scale;
+
+        checkArg(this.scale > 0.0d && Double.isFinite(this.scale), "scale must be positive and finite (given: %s)", this.scale);
+        checkArg(Double.isFinite(this.offset), "offset must be finite (given: %s)", this.offset);
+    }
+
+    /**
+     * Stores the given values in a {@link ScalarTile}.
+     *
+     * @param values the values. The array may be retained by the returned tile, and must not be modified afterwards.
+     * @return a {@link ScalarTile} containing the values
+     */
+    public ScalarTile store(@NonNull double[] values) {
+        switch (this.mode) {
+            case DOUBLE:
+                return new ScalarTile.OfDouble(values);
+            case FLOAT:
+                return new ScalarTile.OfFloat(values);
+            case SHORT:
+                return new ScalarTile.OfShort(values, this.offset, this.scale);
+            default:
+                throw new IllegalStateException(this.mode.name());
+        }
+    }
+
+    /**
+     * The different ways in which values may be stored.
+     *
+     * @author DaPorkchop_
+     */
+    public enum Mode {
+        /**
+         * Values are stored as {@code double}s, with no loss of precision.
+         */
+        DOUBLE,
+        /**
+         * Values are stored as {@code float}s, using half as much memory as {@link #DOUBLE}.
+         */
+        FLOAT,
+        /**
+         * Values are stored as {@code short}s, using a quarter as much memory as {@link #DOUBLE}.
+         * <p>
+         * Each value {@code v} is stored as {@code round((v - offset) / scale)}, which must be between {@code -32767} and {@code 32767} (values outside of
+         * this range are clamped).
+         */
+        SHORT;
+    }
+}
@@ -0,0 +1,104 @@
+package net.buildtheearth.terraplusplus.dataset.scalar;
+
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.util.IntToDoubleBiFunction;
+import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
+
+import static net.daporkchop.lib.common.math.PMath.*;
+
+/**
+ * Provides access to the raw samples in the {@link ScalarTile}s which cover a rectangular area of a {@link DoubleTiledDataset}.
+ * <p>
+ * The tiles are stored in a small array indexed by their position relative to the area's minimum corner, so looking up a sample doesn't require any
+ * hashing. When the entire area lies within a single tile, samples are read directly from that tile without having to compute the tile's index at all.
+ * Samples outside of the area's tiles are always {@link Double#NaN}.
+ * <p>
+ * Each tile must be {@link #put(int, ScalarTile) put} exactly once before any samples are read. Tiles may be put by different threads, so long as the
+ * thread which reads samples is guaranteed to observe the writes (e.g. because it is run by a {@link java.util.concurrent.CompletableFuture} which
+ * depends on all of the tiles).
+ *
+ * @author DaPorkchop_
+ */
+final class TileSampler implements IntToDoubleBiFunction {
+    private final int shift;
+    private final int mask;
+
+    private final int minTileX;
+    private final int minTileZ;
+    private final int tilesX;
+    private final int tilesZ;
+
+    private final ScalarTile[] tiles;
+
+    /**
+     * @param shift  the base-2 logarithm of the dataset's resolution
+     * @param bounds the area from which samples will be read, in sample coordinates. Every sample which will be read must be contained in this area.
+     */
+    TileSampler(int shift, @NonNull Bounds2d bounds) {
+        this.shift = shift;
+        this.mask = (1 << shift) - 1;
+
+        //samples are read at integer coordinates, so the tiles containing the area's fractional maximum coordinates are only needed if the area
+        // actually reaches into them
+        this.minTileX = floorI(bounds.minX()) >> shift;
+        this.minTileZ = floorI(bounds.minZ()) >> shift;
+        this.tilesX = (floorI(bounds.maxX()) >> shift) - this.minTileX + 1;
+        this.tilesZ = (floorI(bounds.maxZ()) >> shift) - this.minTileZ + 1;
+
+        this.tiles = new ScalarTile[this.tilesX * this.tilesZ];
+    }
+
+    /**
+     * @return the number of tiles which cover the area
+     */
+    int tileCount() {
+        return this.tiles.length;
+    }
+
+    /**
+     * @return the X coordinate of the tile with the given index
+     */
+    int tileX(int index) {
+        return this.minTileX + index / this.tilesZ;
+    }
+
+    /**
+     * @return the Z coordinate of the tile with the given index
+     */
+    int tileZ(int index) {
+        return this.minTileZ + index % this.tilesZ;
+    }
+
+    /**
+     * Sets the tile with the given index.
+     *
+     * @param index the tile's index
+     * @param tile  the tile. May be {@code null} if the tile doesn't exist, in which case all of its samples will be {@link Double#NaN}
+     */
+    void put(int index, ScalarTile tile) {
+        this.tiles[index] = tile;
+    }
+
+    @Override
+    public double apply(int x, int z) {
+        int shift = this.shift;
+        int mask = this.mask;
+
+        ScalarTile tile;
+        if (this.tiles.length == 1) { //fast path: there is only a single tile
+            if ((x >> shift) != this.minTileX || (z >> shift) != this.minTileZ) {
+                return Double.NaN;
+            }
+            tile = this.tiles[0];
+        } else {
+            int tileX = (x >> shift) - this.minTileX;
+            int tileZ = (z >> shift) - this.minTileZ;
+            if (tileX < 0 || tileX >= this.tilesX || tileZ < 0 || tileZ >= this.tilesZ) {
+                return Double.NaN;
+            }
+            tile = this.tiles[tileX * this.tilesZ + tileZ];
+        }
+
+        return tile != null ? tile.get((z & mask) << shift | (x & mask)) : Double.NaN;
+    }
+}
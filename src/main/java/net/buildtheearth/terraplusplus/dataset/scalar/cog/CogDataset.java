@@ -0,0 +1,211 @@
+package net.buildtheearth.terraplusplus.dataset.scalar.cog;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import net.buildtheearth.terraplusplus.dataset.BlendMode;
+import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
+import net.buildtheearth.terraplusplus.dataset.scalar.ScalarTileStorage;
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraplusplus.projection.transform.OffsetProjectionTransform;
+import net.buildtheearth.terraplusplus.projection.transform.ScaleProjectionTransform;
+import net.buildtheearth.terraplusplus.util.CornerBoundingBox2d;
+import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
+
+import java.io.FileNotFoundException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * An {@link IScalarDataset} which reads values from a single cloud-optimized GeoTIFF.
+ * <p>
+ * The file may be either local, in which case it is memory-mapped, or remote, in which case only the header and the tiles which are actually needed are
+ * downloaded using HTTP range requests. The file's overviews are used when the samples are far enough apart that full resolution data isn't needed.
+ * <p>
+ * The TIFF header is read when the dataset is first used. If the header doesn't fit into the initially requested prefix of the file, a larger prefix is
+ * requested until it does. If reading the header fails, it is read again the next time the dataset is used: immediately if the request was cancelled,
+ * otherwise only once a delay has passed which doubles with each consecutive failure.
+ *
+ * @author DaPorkchop_
+ */
+@JsonDeserialize
+@JsonSerialize
+@Getter(onMethod_ = { @JsonGetter })
+public class CogDataset implements IScalarDataset {
+    protected static final int INITIAL_HEADER_SIZE = 1 << 16;
+    protected static final int MAX_HEADER_SIZE = 1 << 26;
+
+    protected static final long MIN_RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(5L);
+    protected static final long MAX_RETRY_DELAY_NANOS = TimeUnit.MINUTES.toNanos(10L);
+
+    protected final String url;
+    protected final GeographicProjection projection;
+    protected final BlendMode blend;
+    protected final ScalarTileStorage storage;
+
+    @Getter(AccessLevel.NONE)
+    protected final CogSource source;
+
+    @Getter(AccessLevel.NONE)
+    protected volatile CompletableFuture<CogLevelDataset[]> levels;
+
+    @Getter(AccessLevel.NONE)
+    protected volatile long retryTime; //the System.nanoTime() after which a failed header may be read again
+    @Getter(AccessLevel.NONE)
+    protected long retryDelay = MIN_RETRY_DELAY_NANOS; //guarded by this
+
+    /**
+     * @param url        the location of the file. Either an {@code http(s)} URL, a {@code file} URL, or a local path.
+     * @param projection the projection from geographic coordinates into the file's coordinate system
+     * @param blend      the {@link BlendMode} to use for interpolating between samples
+     * @param storage    the {@link ScalarTileStorage} to use for decoded tiles
+     */
+    @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+    public CogDataset(
+            @JsonProperty(value = "url", required = true) @NonNull String url,
+            @JsonProperty(value = "projection", required = true) @NonNull GeographicProjection projection,
+            @JsonProperty(value = "blend", required = true) @NonNull BlendMode blend,
+            @JsonProperty(value = "storage", required = false) ScalarTileStorage storage) {
+        this.url = url;
+        this.projection = projection;
+        this.blend = blend;
+        this.storage = storage != null ? storage : ScalarTileStorage.DEFAULT;
+
+        this.source = CogSource.of(url);
+    }
+
+    /**
+     * @return a {@link CompletableFuture} which will be completed with a dataset for each of the file's images, ordered from the highest to the lowest
+     * resolution
+     */
+    protected CompletableFuture<CogLevelDataset[]> levels() {
+        CompletableFuture<CogLevelDataset[]> levels = this.levels;
+        if (levels == null || this.shouldRetry(levels)) {
+            synchronized (this) {
+                if ((levels = this.levels) == null || this.shouldRetry(levels)) {
+                    //the retry time is updated before the stored future is completed, so nobody can observe the failure without also observing it
+                    this.levels = levels = this.readHeader(INITIAL_HEADER_SIZE).thenApply(this::createLevels).whenComplete((v, t) -> this.headerCompleted(t));
+                }
+            }
+        }
+        return levels;
+    }
+
+    private boolean shouldRetry(@NonNull CompletableFuture<?> future) {
+        if (!future.isCompletedExceptionally()) {
+            return false;
+        }
+
+        //the header may have been requested by a request which was subsequently cancelled, in which case we'll want to try again immediately. other
+        // failures may be temporary (e.g. the server being unreachable), so they're retried as well, but not so often that we keep hammering the server
+        return future.handle((v, t) -> Http.isCancellation(t)).join() || System.nanoTime() - this.retryTime >= 0L;
+    }
+
+    private synchronized void headerCompleted(Throwable cause) {
+        if (cause == null) {
+            this.retryDelay = MIN_RETRY_DELAY_NANOS;
+        } else if (!Http.isCancellation(cause)) {
+            this.retryTime = System.nanoTime() + this.retryDelay;
+            this.retryDelay = Math.min(this.retryDelay << 1L, MAX_RETRY_DELAY_NANOS);
+        }
+    }
+
+    private CompletableFuture<List<TiffImage>> readHeader(int length) {
+        return this.source.read(0L, length, data -> {
+            try {
+                return TiffImage.parse(data);
+            } catch (TiffImage.TruncatedException e) {
+                checkArg(data.readableBytes() >= length, "TIFF header in %s extends past the end of the file", this.url);
+                checkArg(e.requiredLength() <= MAX_HEADER_SIZE, "TIFF header in %s is too large (%d bytes), is it a cloud-optimized GeoTIFF?",
+                        this.url, e.requiredLength());
+                return Collections.<TiffImage>emptyList();
+            }
+        }).thenCompose(images -> {
+            if (images == null) {
+                throw new CompletionException(new FileNotFoundException(this.url));
+            } else if (images.isEmpty()) { //the header was truncated, try again with a larger prefix of the file
+                return this.readHeader(length << 1);
+            }
+            return CompletableFuture.completedFuture(images);
+        });
+    }
+
+    private CogLevelDataset[] createLevels(@NonNull List<TiffImage> images) {
+        TiffImage full = images.get(0);
+        checkArg(full.pixelScale() != null && full.pixelScale().length >= 2 && full.tiepoint() != null && full.tiepoint().length >= 5,
+                "%s isn't georeferenced", this.url);
+
+        double[] pixelScale = full.pixelScale();
+        double[] tiepoint = full.tiepoint();
+
+        //convert tiepoints which refer to pixel centers into ones which refer to pixel corners
+        double tieI = tiepoint[0] + (full.pixelIsPoint() ? 0.5d : 0.0d);
+        double tieJ = tiepoint[1] + (full.pixelIsPoint() ? 0.5d : 0.0d);
+
+        CogLevelDataset[] levels = new CogLevelDataset[images.size()];
+        for (int i = 0; i < levels.length; i++) {
+            TiffImage image = images.get(i);
+            double scaleX = (double) full.width() / image.width();
+            double scaleZ = (double) full.height() / image.height();
+
+            //geographic coordinates -> file coordinates -> pixel corner coordinates in this image -> sample coordinates (samples are at pixel centers)
+            GeographicProjection projection = new OffsetProjectionTransform(
+                    new ScaleProjectionTransform(
+                            new OffsetProjectionTransform(this.projection, -tiepoint[3], -tiepoint[4]),
+                            1.0d / (pixelScale[0] * scaleX), -1.0d / (pixelScale[1] * scaleZ)),
+                    tieI / scaleX - 0.5d, tieJ / scaleZ - 0.5d);
+
+            levels[i] = new CogLevelDataset(projection, this.blend, this.storage, this.source, image, Math.min(scaleX, scaleZ));
+        }
+        return levels;
+    }
+
+    @Override
+    public CompletableFuture<Double> getAsync(double lon, double lat) throws OutOfProjectionBoundsException {
+        RequestPriority priority = Http.currentPriority();
+        return this.levels().thenCompose(levels -> Http.withPriority(priority, () -> this.getAsync(levels[0], lon, lat)));
+    }
+
+    @Override
+    public CompletableFuture<double[]> getAsync(@NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) throws OutOfProjectionBoundsException {
+        if (notNegative(sizeX, "sizeX") == 0 | notNegative(sizeZ, "sizeZ") == 0) { //no input points -> no output points, ez
+            return CompletableFuture.completedFuture(new double[0]);
+        }
+
+        RequestPriority priority = Http.currentPriority();
+        return this.levels().thenCompose(levels -> Http.withPriority(priority, () -> this.getAsync(levels, bounds, sizeX, sizeZ)));
+    }
+
+    @SneakyThrows(OutOfProjectionBoundsException.class)
+    private CompletableFuture<Double> getAsync(@NonNull CogLevelDataset level, double lon, double lat) {
+        return level.getAsync(lon, lat);
+    }
+
+    @SneakyThrows(OutOfProjectionBoundsException.class)
+    private CompletableFuture<double[]> getAsync(@NonNull CogLevelDataset[] levels, @NonNull CornerBoundingBox2d bounds, int sizeX, int sizeZ) {
+        int level = 0;
+        if (levels.length > 1) {
+            //use the lowest-resolution image whose pixels are no larger than the distance between samples
+            Bounds2d localBounds = bounds.fromGeo(levels[0].projection()).axisAlign();
+            double spacing = Math.min((localBounds.maxX() - localBounds.minX()) / sizeX, (localBounds.maxZ() - localBounds.minZ()) / sizeZ);
+            while (level + 1 < levels.length && levels[level + 1].scale() <= spacing) {
+                level++;
+            }
+        }
+        return levels[level].getAsync(bounds, sizeX, sizeZ);
+    }
+}
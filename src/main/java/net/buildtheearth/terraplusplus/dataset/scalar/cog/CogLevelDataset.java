@@ -0,0 +1,64 @@
+package net.buildtheearth.terraplusplus.dataset.scalar.cog;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.dataset.BlendMode;
+import net.buildtheearth.terraplusplus.dataset.scalar.DoubleTiledDataset;
+import net.buildtheearth.terraplusplus.dataset.scalar.ScalarTile;
+import net.buildtheearth.terraplusplus.dataset.scalar.ScalarTileStorage;
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.concurrent.CompletableFuture;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A {@link DoubleTiledDataset} which reads the tiles of a single image in a cloud-optimized GeoTIFF.
+ * <p>
+ * Each dataset tile corresponds to exactly one TIFF tile, so every tile can be loaded with a single read of the file.
+ *
+ * @author DaPorkchop_
+ */
+@Getter
+final class CogLevelDataset extends DoubleTiledDataset {
+    private final CogSource source;
+    private final TiffImage image;
+
+    /**
+     * The size of this image's pixels relative to the pixels of the full-resolution image.
+     */
+    private final double scale;
+
+    CogLevelDataset(@NonNull GeographicProjection projection, @NonNull BlendMode blend, @NonNull ScalarTileStorage storage,
+                    @NonNull CogSource source, @NonNull TiffImage image, double scale) {
+        super(projection, image.tileWidth(), blend, storage);
+        checkArg(image.tileWidth() == image.tileHeight(), "TIFF tiles must be square (found %dx%d)", image.tileWidth(), image.tileHeight());
+
+        this.source = source;
+        this.image = image;
+        this.scale = scale;
+    }
+
+    @Override
+    protected String[] urls(int tileX, int tileZ) {
+        return null; //unused, tiles are read directly from the source
+    }
+
+    @Override
+    public CompletableFuture<ScalarTile> load(@NonNull ChunkPos pos) throws Exception {
+        if (!this.image.hasTile(pos.x, pos.z)) { //the tile is outside of the image, or is empty
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long byteCount = this.image.tileByteCount(pos.x, pos.z);
+        checkArg(byteCount <= Integer.MAX_VALUE, "tile (%d,%d) is too large: %d bytes", pos.x, pos.z, byteCount);
+        return this.source.read(this.image.tileOffset(pos.x, pos.z), (int) byteCount, data -> this.decode(pos.x, pos.z, data));
+    }
+
+    @Override
+    protected double[] decodeValues(int tileX, int tileZ, @NonNull ByteBuf data) throws Exception {
+        return TiffTileDecoder.decode(this.image, tileX, tileZ, data);
+    }
+}
@@ -0,0 +1,179 @@
+package net.buildtheearth.terraplusplus.dataset.scalar.cog;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.util.concurrent.TerraExecutors;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.daporkchop.lib.common.function.throwing.EFunction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Reads byte ranges from a file which may be either local or remote.
+ *
+ * @author DaPorkchop_
+ */
+interface CogSource {
+    /**
+     * Gets a {@link CogSource} for the file at the given location.
+     *
+     * @param url the file's location. Either an {@code http(s)} URL, a {@code file} URL, or a local path.
+     * @return a {@link CogSource}
+     */
+    static CogSource of(@NonNull String url) {
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+            return new Remote(url);
+        } else if (url.startsWith("file://")) {
+            return new Local(Paths.get(url.substring("file://".length())));
+        } else {
+            return new Local(Paths.get(url));
+        }
+    }
+
+    /**
+     * Asynchronously reads and parses a range of bytes.
+     * <p>
+     * The data passed to the parse function may be shorter than requested if the range extends past the end of the file, and will be released once the
+     * parse function returns.
+     *
+     * @param offset        the offset of the first byte to read
+     * @param length        the number of bytes to read
+     * @param parseFunction a function to use to parse the data
+     * @return a {@link CompletableFuture} which will be completed with the parsed data, or {@code null} if the file doesn't exist
+     */
+    <T> CompletableFuture<T> read(long offset, int length, @NonNull EFunction<ByteBuf, T> parseFunction);
+
+    /**
+     * A {@link CogSource} which reads byte ranges from a remote server using HTTP range requests.
+     *
+     * @author DaPorkchop_
+     */
+    final class Remote implements CogSource {
+        private final String url;
+
+        Remote(@NonNull String url) {
+            this.url = url;
+        }
+
+        @Override
+        public <T> CompletableFuture<T> read(long offset, int length, @NonNull EFunction<ByteBuf, T> parseFunction) {
+            return Http.getSingle(this.url, Http.RequestOptions.builder().rangeOffset(offset).rangeLength(positive(length, "length")).build(), parseFunction);
+        }
+
+        @Override
+        public String toString() {
+            return this.url;
+        }
+    }
+
+    /**
+     * A {@link CogSource} which reads byte ranges from a memory-mapped local file.
+     * <p>
+     * The file is mapped in fixed-size segments, which are created when they are first accessed.
+     *
+     * @author DaPorkchop_
+     */
+    final class Local implements CogSource {
+        private static final int SEGMENT_SHIFT = 30;
+        private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+        private final Path path;
+
+        private long size = -1L;
+        private ByteBuffer[] segments;
+
+        Local(@NonNull Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public <T> CompletableFuture<T> read(long offset, int length, @NonNull EFunction<ByteBuf, T> parseFunction) {
+            notNegative(offset, "offset");
+            positive(length, "length");
+
+            return CompletableFuture.supplyAsync(() -> {
+                ByteBuf data;
+                try {
+                    data = this.slice(offset, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (data == null) { //the file doesn't exist
+                    return null;
+                }
+
+                try {
+                    return parseFunction.apply(data);
+                } finally {
+                    data.release();
+                }
+            }, TerraExecutors.DECODE);
+        }
+
+        /**
+         * @return a buffer containing the given range of the file, or {@code null} if the file doesn't exist
+         */
+        synchronized ByteBuf slice(long offset, int length) throws IOException {
+            if (this.size < 0L) { //open the file
+                if (!this.path.toFile().isFile()) {
+                    return null;
+                }
+
+                try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+                    this.size = channel.size();
+                }
+                this.segments = new ByteBuffer[(int) ((this.size + SEGMENT_SIZE - 1L) >>> SEGMENT_SHIFT)];
+            }
+
+            long end = Math.min(offset + length, this.size);
+            if (offset >= end) {
+                return Unpooled.EMPTY_BUFFER;
+            }
+
+            int firstSegment = (int) (offset >>> SEGMENT_SHIFT);
+            int lastSegment = (int) ((end - 1L) >>> SEGMENT_SHIFT);
+            if (firstSegment == lastSegment) { //fast path: the whole range is in a single segment, we can avoid copying
+                return Unpooled.wrappedBuffer(this.segment(firstSegment, (int) (offset - ((long) firstSegment << SEGMENT_SHIFT)), (int) (end - offset)));
+            }
+
+            ByteBuf data = Unpooled.buffer((int) (end - offset));
+            for (long position = offset; position < end; ) {
+                int segment = (int) (position >>> SEGMENT_SHIFT);
+                int segmentOffset = (int) (position - ((long) segment << SEGMENT_SHIFT));
+                int count = (int) Math.min(end - position, SEGMENT_SIZE - segmentOffset);
+                data.writeBytes(this.segment(segment, segmentOffset, count));
+                position += count;
+            }
+            return data;
+        }
+
+        private ByteBuffer segment(int segment, int offset, int length) throws IOException {
+            ByteBuffer buffer = this.segments[segment];
+            if (buffer == null) {
+                long start = (long) segment << SEGMENT_SHIFT;
+                try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+                    buffer = this.segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, this.size - start));
+                }
+            }
+
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(offset).limit(offset + length);
+            return slice.slice();
+        }
+
+        @Override
+        public String toString() {
+            return this.path.toString();
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package net.buildtheearth.terraplusplus.dataset.scalar.cog;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A single tiled, single-channel image (or overview) in a TIFF file.
+ * <p>
+ * Only the information needed to locate and decode the image's tiles is retained. Both classic TIFF and BigTIFF files are supported.
+ *
+ * @author DaPorkchop_
+ */
+@Getter
+final class TiffImage {
+    static final int TAG_NEW_SUBFILE_TYPE = 254;
+    static final int TAG_IMAGE_WIDTH = 256;
+    static final int TAG_IMAGE_LENGTH = 257;
+    static final int TAG_BITS_PER_SAMPLE = 258;
+    static final int TAG_COMPRESSION = 259;
+    static final int TAG_SAMPLES_PER_PIXEL = 277;
+    static final int TAG_PLANAR_CONFIGURATION = 284;
+    static final int TAG_PREDICTOR = 317;
+    static final int TAG_TILE_WIDTH = 322;
+    static final int TAG_TILE_LENGTH = 323;
+    static final int TAG_TILE_OFFSETS = 324;
+    static final int TAG_TILE_BYTE_COUNTS = 325;
+    static final int TAG_SAMPLE_FORMAT = 339;
+    static final int TAG_MODEL_PIXEL_SCALE = 33550;
+    static final int TAG_MODEL_TIEPOINT = 33922;
+    static final int TAG_GEO_KEY_DIRECTORY = 34735;
+    static final int TAG_GDAL_NODATA = 42113;
+
+    static final int COMPRESSION_NONE = 1;
+    static final int COMPRESSION_LZW = 5;
+    static final int COMPRESSION_DEFLATE = 8;
+    static final int COMPRESSION_DEFLATE_OLD = 32946;
+
+    static final int PREDICTOR_NONE = 1;
+    static final int PREDICTOR_HORIZONTAL = 2;
+    static final int PREDICTOR_FLOATING_POINT = 3;
+
+    static final int SAMPLE_FORMAT_UNSIGNED = 1;
+    static final int SAMPLE_FORMAT_SIGNED = 2;
+    static final int SAMPLE_FORMAT_FLOATING_POINT = 3;
+
+    private static final int SUBFILE_TYPE_MASK = 4;
+
+    private static final int GEO_KEY_RASTER_TYPE = 1025;
+    private static final int RASTER_PIXEL_IS_POINT = 2;
+
+    private static final int[] TYPE_SIZES = { 0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8, 4, 0, 0, 8, 8, 8 };
+
+    /**
+     * Parses all of the images in a TIFF file, ordered from the highest to the lowest resolution. Mask images are ignored.
+     *
+     * @param data the beginning of the file
+     * @return the images
+     * @throws TruncatedException if the given data doesn't contain the entire header
+     */
+    static List<TiffImage> parse(@NonNull ByteBuf data) throws TruncatedException {
+        Reader reader = new Reader(data);
+
+        List<TiffImage> images = new ArrayList<>();
+        for (long offset = reader.firstIfdOffset; offset != 0L; ) {
+            checkArg(images.size() < 64, "too many images in TIFF file");
+
+            long count = reader.bigTiff ? reader.u64(offset) : reader.u16(offset);
+            long entries = offset + (reader.bigTiff ? 8L : 2L);
+            int entrySize = reader.bigTiff ? 20 : 12;
+
+            Directory directory = new Directory();
+            for (long i = 0L; i < count; i++) {
+                directory.read(reader, entries + i * entrySize);
+            }
+            offset = reader.bigTiff ? reader.u64(entries + count * entrySize) : reader.u32(entries + count * entrySize);
+
+            if ((directory.subfileType & SUBFILE_TYPE_MASK) == 0) {
+                images.add(new TiffImage(reader.littleEndian, directory));
+            }
+        }
+
+        checkArg(!images.isEmpty(), "TIFF file doesn't contain any images");
+        images.sort(Comparator.comparingInt(TiffImage::width).reversed());
+        return images;
+    }
+
+    private final boolean littleEndian;
+
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int tilesAcross;
+    private final int tilesDown;
+    private final long[] tileOffsets;
+    private final long[] tileByteCounts;
+
+    private final int compression;
+    private final int predictor;
+    private final int bitsPerSample;
+    private final int sampleFormat;
+
+    /**
+     * The value used to indicate missing samples, or {@link Double#NaN} if there is none.
+     */
+    private final double noData;
+
+    /**
+     * The size of a pixel in the image's coordinate system, or {@code null} if the image isn't georeferenced.
+     */
+    private final double[] pixelScale;
+
+    /**
+     * The first tiepoint, consisting of a pixel position followed by the corresponding position in the image's coordinate system. {@code null} if the
+     * image isn't georeferenced.
+     */
+    private final double[] tiepoint;
+
+    /**
+     * Whether or not each pixel's value applies to a single point rather than the area covered by the pixel.
+     */
+    private final boolean pixelIsPoint;
+
+    /**
+     * Parses the value of a {@code GDAL_NODATA} tag.
+     * <p>
+     * GDAL writes non-finite values in C notation (e.g. {@code nan} or {@code -inf}), which {@link Double#parseDouble(String)} doesn't accept. A nodata
+     * value of NaN is the same as having no nodata value, since NaN samples are always treated as missing.
+     *
+     * @param value the tag's value
+     * @return the nodata value, or {@link Double#NaN} if there is none
+     * @throws NumberFormatException if the value isn't a number
+     */
+    static double parseNoData(@NonNull String value) {
+        value = value.trim();
+        String lowerCase = value.toLowerCase(Locale.ROOT);
+        boolean negative = lowerCase.startsWith("-");
+        switch (negative || lowerCase.startsWith("+") ? lowerCase.substring(1) : lowerCase) {
+            case "":
+            case "nan":
+                return Double.NaN;
+            case "inf":
+            case "infinity":
+                return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            default:
+                return Double.parseDouble(value);
+        }
+    }
+
+    private TiffImage(boolean littleEndian, @NonNull Directory directory) {
+        this.littleEndian = littleEndian;
+
+        this.width = positive(directory.width, "width");
+        this.height = positive(directory.height, "height");
+        checkArg(directory.tileWidth > 0 && directory.tileHeight > 0, "TIFF image isn't tiled");
+        this.tileWidth = directory.tileWidth;
+        this.tileHeight = directory.tileHeight;
+        this.tilesAcross = (this.width + this.tileWidth - 1) / this.tileWidth;
+        this.tilesDown = (this.height + this.tileHeight - 1) / this.tileHeight;
+
+        checkArg(directory.samplesPerPixel == 1, "only single-channel TIFF images are supported (found %d channels)", directory.samplesPerPixel);
+        checkArg(directory.tileOffsets != null && directory.tileOffsets.length == this.tilesAcross * this.tilesDown, "invalid tile offsets");
+        checkArg(directory.tileByteCounts != null && directory.tileByteCounts.length == this.tilesAcross * this.tilesDown, "invalid tile byte counts");
+        this.tileOffsets = directory.tileOffsets;
+        this.tileByteCounts = directory.tileByteCounts;
+
+        this.compression = directory.compression;
+        this.predictor = directory.predictor;
+        this.bitsPerSample = directory.bitsPerSample;
+        this.sampleFormat = directory.sampleFormat;
+        TiffTileDecoder.validate(this);
+
+        this.noData = directory.noData != null ? parseNoData(directory.noData) : Double.NaN;
+        this.pixelScale = directory.pixelScale;
+        this.tiepoint = directory.tiepoint;
+        this.pixelIsPoint = directory.pixelIsPoint;
+    }
+
+    /**
+     * @return the number of bytes used by each sample
+     */
+    int bytesPerSample() {
+        return this.bitsPerSample >>> 3;
+    }
+
+    /**
+     * @return whether or not the given tile exists
+     */
+    boolean hasTile(int tileX, int tileZ) {
+        return tileX >= 0 && tileX < this.tilesAcross && tileZ >= 0 && tileZ < this.tilesDown && this.tileByteCounts[tileZ * this.tilesAcross + tileX] > 0L;
+    }
+
+    /**
+     * @return the offset of the given tile's data in the file
+     */
+    long tileOffset(int tileX, int tileZ) {
+        return this.tileOffsets[tileZ * this.tilesAcross + tileX];
+    }
+
+    /**
+     * @return the size of the given tile's data, in bytes
+     */
+    long tileByteCount(int tileX, int tileZ) {
+        return this.tileByteCounts[tileZ * this.tilesAcross + tileX];
+    }
+
+    /**
+     * Thrown if more of the file is needed in order to parse its header.
+     *
+     * @author DaPorkchop_
+     */
+    @Getter
+    static final class TruncatedException extends Exception {
+        /**
+         * The number of bytes at the beginning of the file which would be needed in order to continue parsing.
+         */
+        private final long requiredLength;
+
+        TruncatedException(long requiredLength) {
+            super(null, null, false, false);
+            this.requiredLength = requiredLength;
+        }
+    }
+
+    /**
+     * Reads primitive values from the beginning of a TIFF file in the file's byte order.
+     *
+     * @author DaPorkchop_
+     */
+    private static final class Reader {
+        final ByteBuf data;
+        final boolean littleEndian;
+        final boolean bigTiff;
+        final long firstIfdOffset;
+
+        Reader(@NonNull ByteBuf data) throws TruncatedException {
+            this.data = data;
+
+            this.check(0L, 8L);
+            int byteOrder = data.getUnsignedShort(data.readerIndex());
+            checkArg(byteOrder == 0x4949 || byteOrder == 0x4D4D, "not a TIFF file");
+            this.littleEndian = byteOrder == 0x4949;
+
+            int magic = this.u16(2L);
+            if (magic == 42) {
+                this.bigTiff = false;
+                this.firstIfdOffset = this.u32(4L);
+            } else if (magic == 43) {
+                this.bigTiff = true;
+                checkArg(this.u16(4L) == 8, "unsupported BigTIFF offset size");
+                this.firstIfdOffset = this.u64(8L);
+            } else {
+                throw new IllegalArgumentException("not a TIFF file");
+            }
+        }
+
+        int index(long offset, long length) throws TruncatedException {
+            this.check(offset, length);
+            return this.data.readerIndex() + (int) offset;
+        }
+
+        void check(long offset, long length) throws TruncatedException {
+            checkArg(offset >= 0L && length >= 0L, "invalid offset in TIFF file");
+            if (offset + length > this.data.readableBytes()) {
+                throw new TruncatedException(offset + length);
+            }
+        }
+
+        int u8(long offset) throws TruncatedException {
+            return this.data.getUnsignedByte(this.index(offset, 1L));
+        }
+
+        int u16(long offset) throws TruncatedException {
+            int index = this.index(offset, 2L);
+            return this.littleEndian ? this.data.getUnsignedShortLE(index) : this.data.getUnsignedShort(index);
+        }
+
+        long u32(long offset) throws TruncatedException {
+            int index = this.index(offset, 4L);
+            return this.littleEndian ? this.data.getUnsignedIntLE(index) : this.data.getUnsignedInt(index);
+        }
+
+        long u64(long offset) throws TruncatedException {
+            int index = this.index(offset, 8L);
+            long value = this.littleEndian ? this.data.getLongLE(index) : this.data.getLong(index);
+            checkArg(value >= 0L, "invalid offset in TIFF file");
+            return value;
+        }
+
+        double f64(long offset) throws TruncatedException {
+            int index = this.index(offset, 8L);
+            return Double.longBitsToDouble(this.littleEndian ? this.data.getLongLE(index) : this.data.getLong(index));
+        }
+    }
+
+    /**
+     * The raw values of the fields in an image file directory which we care about.
+     *
+     * @author DaPorkchop_
+     */
+    private static final class Directory {
+        int subfileType;
+        int width;
+        int height;
+        int tileWidth;
+        int tileHeight;
+        int samplesPerPixel = 1;
+        int compression = COMPRESSION_NONE;
+        int predictor = PREDICTOR_NONE;
+        int bitsPerSample = 1;
+        int sampleFormat = SAMPLE_FORMAT_UNSIGNED;
+        long[] tileOffsets;
+        long[] tileByteCounts;
+        String noData;
+        double[] pixelScale;
+        double[] tiepoint;
+        boolean pixelIsPoint;
+
+        void read(@NonNull Reader reader, long entry) throws TruncatedException {
+            int tag = reader.u16(entry);
+            int type = reader.u16(entry + 2L);
+            long count = reader.bigTiff ? reader.u64(entry + 4L) : reader.u32(entry + 4L);
+
+            int typeSize = type < TYPE_SIZES.length ? TYPE_SIZES[type] : 0;
+            if (typeSize == 0) { //unknown type, skip it
+                return;
+            }
+
+            //values which fit into the entry are stored inline, otherwise the entry contains an offset to the values
+            long inlineOffset = entry + (reader.bigTiff ? 12L : 8L);
+            long valuesOffset = typeSize * count <= (reader.bigTiff ? 8L : 4L)
+                    ? inlineOffset
+                    : reader.bigTiff ? reader.u64(inlineOffset) : reader.u32(inlineOffset);
+
+            switch (tag) {
+                case TAG_NEW_SUBFILE_TYPE:
+                    this.subfileType = (int) integer(reader, type, valuesOffset);
+                    break;
+                case TAG_IMAGE_WIDTH:
+                    this.width = toIntExact(integer(reader, type, valuesOffset));
+                    break;
+                case TAG_IMAGE_LENGTH:
+                    this.height = toIntExact(integer(reader, type, valuesOffset));
+                    break;
+                case TAG_BITS_PER_SAMPLE:
+                    this.bitsPerSample = (int) integer(reader, type, valuesOffset);
+                    break;
+                case TAG_COMPRESSION:
+                    this.compression = (int) integer(reader, type, valuesOffset);
+                    break;
+                case TAG_SAMPLES_PER_PIXEL:
+                    this.samplesPerPixel = (int) integer(reader, type, valuesOffset);
+                    break;
+                case TAG_PREDICTOR:
+                    this.predictor = (int) integer(reader, type, valuesOffset);
+                    break;
+                case TAG_TILE_WIDTH:
+                    this.tileWidth = toIntExact(integer(reader, type, valuesOffset));
+                    break;
+                case TAG_TILE_LENGTH:
+                    this.tileHeight = toIntExact(integer(reader, type, valuesOffset));
+                    break;
+                case TAG_TILE_OFFSETS:
+                    this.tileOffsets = integers(reader, type, valuesOffset, count);
+                    break;
+                case TAG_TILE_BYTE_COUNTS:
+                    this.tileByteCounts = integers(reader, type, valuesOffset, count);
+                    break;
+                case TAG_SAMPLE_FORMAT:
+                    this.sampleFormat = (int) integer(reader, type, valuesOffset);
+                    break;
+                case TAG_MODEL_PIXEL_SCALE:
+                    this.pixelScale = doubles(reader, type, valuesOffset, count);
+                    break;
+                case TAG_MODEL_TIEPOINT:
+                    this.tiepoint = doubles(reader, type, valuesOffset, count);
+                    break;
+                case TAG_GEO_KEY_DIRECTORY: {
+                    long[] keys = integers(reader, type, valuesOffset, count);
+                    for (int i = 4; i + 3 < keys.length; i += 4) { //skip the header
+                        if (keys[i] == GEO_KEY_RASTER_TYPE && keys[i + 1] == 0L) { //the value is stored directly in the key
+                            this.pixelIsPoint = keys[i + 3] == RASTER_PIXEL_IS_POINT;
+                        }
+                    }
+                    break;
+                }
+                case TAG_GDAL_NODATA: {
+                    reader.check(valuesOffset, count);
+                    String value = reader.data.toString(reader.data.readerIndex() + (int) valuesOffset, (int) count, StandardCharsets.US_ASCII);
+                    int end = value.indexOf('\0');
+                    this.noData = end >= 0 ? value.substring(0, end) : value;
+                    break;
+                }
+            }
+        }
+
+        private static int toIntExact(long value) {
+            checkArg(value >= 0L && value <= Integer.MAX_VALUE, "value out of range: %d", value);
+            return (int) value;
+        }
+
+        private static long integer(@NonNull Reader reader, int type, long offset) throws TruncatedException {
+            switch (type) {
+                case 1: //BYTE
+                    return reader.u8(offset);
+                case 3: //SHORT
+                    return reader.u16(offset);
+                case 4: //LONG
+                    return reader.u32(offset);
+                case 16: //LONG8
+                    return reader.u64(offset);
+                default:
+                    throw new IllegalArgumentException("expected an integer, but found TIFF type " + type);
+            }
+        }
+
+        private static long[] integers(@NonNull Reader reader, int type, long offset, long count) throws TruncatedException {
+            int size = TYPE_SIZES[type];
+            reader.check(offset, size * count);
+
+            long[] values = new long[toIntExact(count)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = integer(reader, type, offset + (long) i * size);
+            }
+            return values;
+        }
+
+        private static double[] doubles(@NonNull Reader reader, int type, long offset, long count) throws TruncatedException {
+            checkArg(type == 12, "expected DOUBLE values, but found TIFF type %d", type);
+            reader.check(offset, 8L * count);
+
+            double[] values = new double[toIntExact(count)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = reader.f64(offset + i * 8L);
+            }
+            return values;
+        }
+    }
+}
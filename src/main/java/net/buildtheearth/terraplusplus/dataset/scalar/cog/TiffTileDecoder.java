@@ -0,0 +1,293 @@
+package net.buildtheearth.terraplusplus.dataset.scalar.cog;
+
+import io.netty.buffer.ByteBuf;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static net.buildtheearth.terraplusplus.dataset.scalar.cog.TiffImage.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Decodes the compressed tiles of a {@link TiffImage} into sample values.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+class TiffTileDecoder {
+    private final int LZW_CLEAR = 256;
+    private final int LZW_EOI = 257;
+    private final int LZW_FIRST_CODE = 258;
+    private final int LZW_MAX_BITS = 12;
+
+    /**
+     * Ensures that the tiles of the given {@link TiffImage} can be decoded.
+     *
+     * @param image the {@link TiffImage}
+     * @throws IllegalArgumentException if the image uses an unsupported encoding
+     */
+    void validate(@NonNull TiffImage image) {
+        checkArg(image.compression() == COMPRESSION_NONE || image.compression() == COMPRESSION_LZW
+                 || image.compression() == COMPRESSION_DEFLATE || image.compression() == COMPRESSION_DEFLATE_OLD,
+                "unsupported TIFF compression: %d", image.compression());
+
+        switch (image.sampleFormat()) {
+            case SAMPLE_FORMAT_UNSIGNED:
+            case SAMPLE_FORMAT_SIGNED:
+                checkArg(image.bitsPerSample() == 8 || image.bitsPerSample() == 16 || image.bitsPerSample() == 32,
+                        "unsupported integer sample size: %d bits", image.bitsPerSample());
+                checkArg(image.predictor() == PREDICTOR_NONE || image.predictor() == PREDICTOR_HORIZONTAL,
+                        "unsupported predictor for integer samples: %d", image.predictor());
+                break;
+            case SAMPLE_FORMAT_FLOATING_POINT:
+                checkArg(image.bitsPerSample() == 32 || image.bitsPerSample() == 64,
+                        "unsupported floating-point sample size: %d bits", image.bitsPerSample());
+                checkArg(image.predictor() == PREDICTOR_NONE || image.predictor() == PREDICTOR_FLOATING_POINT,
+                        "unsupported predictor for floating-point samples: %d", image.predictor());
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported TIFF sample format: " + image.sampleFormat());
+        }
+    }
+
+    /**
+     * Decodes a single tile.
+     *
+     * @param image the {@link TiffImage} which the tile belongs to
+     * @param tileX the tile's X coordinate
+     * @param tileZ the tile's Z coordinate
+     * @param data  the tile's compressed data
+     * @return the tile's values, indexed by {@code z * tileWidth + x}. Pixels which are beyond the edge of the image, or whose value is the image's
+     * nodata value, are {@link Double#NaN}.
+     */
+    double[] decode(@NonNull TiffImage image, int tileX, int tileZ, @NonNull ByteBuf data) throws DataFormatException {
+        int tileWidth = image.tileWidth();
+        int tileHeight = image.tileHeight();
+        int bytesPerSample = image.bytesPerSample();
+
+        byte[] raw = decompress(image.compression(), data, tileWidth * tileHeight * bytesPerSample);
+
+        double[] values;
+        if (image.predictor() == PREDICTOR_FLOATING_POINT) {
+            values = decodeFloatingPointPredictor(raw, tileWidth, tileHeight, bytesPerSample);
+        } else {
+            values = decodeSamples(image, raw, tileWidth, tileHeight, bytesPerSample);
+        }
+
+        double noData = image.noData();
+        if (!Double.isNaN(noData)) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == noData) {
+                    values[i] = Double.NaN;
+                }
+            }
+        }
+
+        //tiles along the right and bottom edges of the image may extend past it, the extra pixels contain garbage
+        int validWidth = Math.min(tileWidth, image.width() - tileX * tileWidth);
+        int validHeight = Math.min(tileHeight, image.height() - tileZ * tileHeight);
+        for (int z = 0; z < tileHeight; z++) {
+            for (int x = z < validHeight ? validWidth : 0; x < tileWidth; x++) {
+                values[z * tileWidth + x] = Double.NaN;
+            }
+        }
+
+        return values;
+    }
+
+    private byte[] decompress(int compression, @NonNull ByteBuf data, int length) throws DataFormatException {
+        byte[] out = new byte[length];
+        switch (compression) {
+            case COMPRESSION_NONE:
+                checkArg(data.readableBytes() >= length, "tile is too short: %d < %d bytes", data.readableBytes(), length);
+                data.getBytes(data.readerIndex(), out);
+                break;
+            case COMPRESSION_DEFLATE:
+            case COMPRESSION_DEFLATE_OLD: {
+                byte[] compressed = new byte[data.readableBytes()];
+                data.getBytes(data.readerIndex(), compressed);
+
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(compressed);
+                    for (int n = 0; n < length && !inflater.finished(); ) {
+                        int read = inflater.inflate(out, n, length - n);
+                        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new DataFormatException("truncated deflate stream");
+                        }
+                        n += read;
+                    }
+                } finally {
+                    inflater.end();
+                }
+                break;
+            }
+            case COMPRESSION_LZW:
+                decompressLzw(data, out);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported TIFF compression: " + compression);
+        }
+        return out;
+    }
+
+    /**
+     * Decompresses TIFF-flavored LZW data: codes are stored MSB-first, and the code width is increased one code earlier than in other LZW variants.
+     */
+    private void decompressLzw(@NonNull ByteBuf data, @NonNull byte[] out) throws DataFormatException {
+        //each code is stored as its prefix code and its last byte, strings are reconstructed backwards from the end
+        int[] prefixes = new int[1 << LZW_MAX_BITS];
+        byte[] suffixes = new byte[1 << LZW_MAX_BITS];
+        byte[] firsts = new byte[1 << LZW_MAX_BITS];
+        int[] lengths = new int[1 << LZW_MAX_BITS];
+        for (int i = 0; i < 256; i++) {
+            suffixes[i] = firsts[i] = (byte) i;
+            lengths[i] = 1;
+        }
+
+        int readerIndex = data.readerIndex();
+        int writerIndex = data.writerIndex();
+        long bitBuffer = 0L;
+        int bitCount = 0;
+
+        int next = LZW_FIRST_CODE;
+        int width = 9;
+        int previous = -1;
+        int n = 0;
+
+        while (n < out.length) {
+            while (bitCount < width) {
+                if (readerIndex >= writerIndex) { //some encoders omit the end-of-information code
+                    return;
+                }
+                bitBuffer = (bitBuffer << 8) | data.getUnsignedByte(readerIndex++);
+                bitCount += 8;
+            }
+            int code = (int) (bitBuffer >>> (bitCount - width)) & ((1 << width) - 1);
+            bitCount -= width;
+
+            if (code == LZW_EOI) {
+                return;
+            } else if (code == LZW_CLEAR) {
+                next = LZW_FIRST_CODE;
+                width = 9;
+                previous = -1;
+                continue;
+            }
+
+            if (previous < 0) { //first code after a clear code
+                if (code >= 256) {
+                    throw new DataFormatException("invalid LZW code: " + code);
+                }
+                out[n++] = (byte) code;
+                previous = code;
+                continue;
+            }
+
+            if (code > next || next >= 1 << LZW_MAX_BITS) {
+                throw new DataFormatException("invalid LZW code: " + code);
+            }
+
+            //add a new string consisting of the previous string followed by the first byte of the current one
+            //  (if the current code is the one being added, its first byte is the same as the previous string's)
+            byte first = code == next ? firsts[previous] : firsts[code];
+            prefixes[next] = previous;
+            suffixes[next] = first;
+            firsts[next] = firsts[previous];
+            lengths[next] = lengths[previous] + 1;
+            next++;
+
+            int length = lengths[code];
+            int end = Math.min(n + length, out.length);
+            int c = code;
+            for (int i = n + length - 1; i >= n; i--, c = prefixes[c]) {
+                if (i < end) {
+                    out[i] = suffixes[c];
+                }
+            }
+            n = end;
+            previous = code;
+
+            if (next + 1 >= 1 << width && width < LZW_MAX_BITS) { //early change
+                width++;
+            }
+        }
+    }
+
+    private double[] decodeSamples(@NonNull TiffImage image, @NonNull byte[] raw, int tileWidth, int tileHeight, int bytesPerSample) {
+        boolean littleEndian = image.littleEndian();
+        boolean horizontal = image.predictor() == PREDICTOR_HORIZONTAL;
+        int sampleFormat = image.sampleFormat();
+        int bits = bytesPerSample << 3;
+        long mask = bits == 64 ? -1L : (1L << bits) - 1L;
+
+        double[] values = new double[tileWidth * tileHeight];
+        for (int z = 0, i = 0; z < tileHeight; z++) {
+            long previous = 0L;
+            for (int x = 0; x < tileWidth; x++, i++) {
+                long sample = readSample(raw, i * bytesPerSample, bytesPerSample, littleEndian);
+                if (horizontal) { //each sample is stored as the difference from the previous sample in the row
+                    sample = previous = (previous + sample) & mask;
+                }
+                values[i] = toDouble(sample, bits, sampleFormat);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Decodes samples which were encoded using the floating-point predictor.
+     * <p>
+     * Each row's bytes are stored as byte-wise differences, and the bytes of each sample are split into separate planes in big-endian order.
+     */
+    private double[] decodeFloatingPointPredictor(@NonNull byte[] raw, int tileWidth, int tileHeight, int bytesPerSample) {
+        int rowBytes = tileWidth * bytesPerSample;
+        int bits = bytesPerSample << 3;
+
+        double[] values = new double[tileWidth * tileHeight];
+        for (int z = 0; z < tileHeight; z++) {
+            int rowStart = z * rowBytes;
+            for (int i = rowStart + 1; i < rowStart + rowBytes; i++) {
+                raw[i] += raw[i - 1];
+            }
+
+            for (int x = 0; x < tileWidth; x++) {
+                long sample = 0L;
+                for (int b = 0; b < bytesPerSample; b++) {
+                    sample = (sample << 8) | (raw[rowStart + b * tileWidth + x] & 0xFFL);
+                }
+                values[z * tileWidth + x] = toDouble(sample, bits, SAMPLE_FORMAT_FLOATING_POINT);
+            }
+        }
+        return values;
+    }
+
+    private long readSample(@NonNull byte[] raw, int offset, int bytesPerSample, boolean littleEndian) {
+        long sample = 0L;
+        if (littleEndian) {
+            for (int b = bytesPerSample - 1; b >= 0; b--) {
+                sample = (sample << 8) | (raw[offset + b] & 0xFFL);
+            }
+        } else {
+            for (int b = 0; b < bytesPerSample; b++) {
+                sample = (sample << 8) | (raw[offset + b] & 0xFFL);
+            }
+        }
+        return sample;
+    }
+
+    private double toDouble(long sample, int bits, int sampleFormat) {
+        switch (sampleFormat) {
+            case SAMPLE_FORMAT_UNSIGNED:
+                return sample;
+            case SAMPLE_FORMAT_SIGNED:
+                return (sample << (64 - bits)) >> (64 - bits);
+            case SAMPLE_FORMAT_FLOATING_POINT:
+                return bits == 32 ? Float.intBitsToFloat((int) sample) : Double.longBitsToDouble(sample);
+            default:
+                throw new IllegalArgumentException("unsupported TIFF sample format: " + sampleFormat);
+        }
+    }
+}
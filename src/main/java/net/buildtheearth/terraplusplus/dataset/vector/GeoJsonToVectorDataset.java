@@ -47,6 +47,11 @@ public class GeoJsonToVectorDataset extends AbstractReferenceResolvingGeoJsonDat
         return inputs.flatMap(Arrays::stream).toArray(VectorGeometry[]::new);
     }
 
+    @Override
+    protected long weigh(@NonNull VectorGeometry[] value) {
+        return 16L + 256L * value.length; //very rough estimate, the size of individual geometries varies wildly
+    }
+
     protected Stream<VectorGeometry> convertToElements(String id, @NonNull Map<String, String> tags, @NonNull GeoJsonObject object) {
         if (object instanceof Iterable) {
             //recursively process all child elements
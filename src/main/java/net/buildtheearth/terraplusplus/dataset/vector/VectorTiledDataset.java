@@ -34,6 +34,11 @@ public class VectorTiledDataset extends TiledDataset<BVH<VectorGeometry>> implem
         return this.delegate.getAsync(String.format("tile/%d/%d.json", key.x, key.z)).thenApply(BVH::of);
     }
 
+    @Override
+    protected long weigh(@NonNull BVH<VectorGeometry> value) {
+        return 64L + 48L * value.size(); //the geometries themselves are shared with the delegate dataset, so we only count the tree's nodes
+    }
+
     @Override
     public CompletableFuture<BVH<VectorGeometry>[]> getAsync(@NonNull CornerBoundingBox2d bounds) throws OutOfProjectionBoundsException {
         Bounds2d localBounds = bounds.fromGeo(this.projection).axisAlign();
@@ -41,7 +46,8 @@ public class VectorTiledDataset extends TiledDataset<BVH<VectorGeometry>> implem
                 .map(this::getAsync)
                 .toArray(CompletableFuture[]::new));
 
-        return CompletableFuture.allOf(futures).thenApplyAsync(unused ->
+        //collecting the results is trivial, so it's done on whichever thread completes the last tile rather than on another executor
+        return CompletableFuture.allOf(futures).thenApply(unused ->
                 uncheckedCast(Arrays.stream(futures)
                         .map(CompletableFuture::join)
                         .toArray(BVH[]::new)));
@@ -0,0 +1,249 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.TerraConfig;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Limits the number of columns whose data may be loaded at the same time.
+ * <p>
+ * Every column which is being loaded holds on to decoded dataset tiles and partially built data, so allowing an unbounded number of loads to run at once
+ * can easily exhaust the heap. Loads which would exceed the limit are queued, and are started in priority order as running loads complete. If the queue
+ * grows too long, the least urgent (and then oldest) queued loads are shed by completing them with a {@link CancellationException}.
+ * <p>
+ * Evaluating a {@link RequestPriority} may be expensive (e.g. {@link ColumnPriority} looks at every player), so each queued entry's priority is
+ * evaluated only once whenever the queue needs to be ordered, and the queue is then sorted by the evaluated priorities.
+ * <p>
+ * The limit is the smaller of {@link TerraConfig.DataOpts#maxInFlightColumns} and the number of columns which fit into
+ * {@link TerraConfig.DataOpts#inFlightMemoryBudget}, based on a rough estimate of the memory used by each column while it is being loaded.
+ *
+ * @author DaPorkchop_
+ */
+public final class AdmissionController {
+    /**
+     * A rough estimate of the number of bytes of memory retained by a single column while it is being loaded, including its share of the dataset tiles
+     * it depends on.
+     */
+    public static final long COLUMN_MEMORY_ESTIMATE = 256L << 10L;
+
+    //both orders break ties by age, so that equally urgent entries are started and shed in the order in which they were submitted
+    private static final Comparator<Entry<?>> MOST_URGENT_FIRST = Comparator.<Entry<?>>comparingDouble(entry -> entry.sortPriority)
+            .thenComparingLong(entry -> entry.sequence);
+    private static final Comparator<Entry<?>> LEAST_URGENT_FIRST = Comparator.<Entry<?>>comparingDouble(entry -> -entry.sortPriority)
+            .thenComparingLong(entry -> entry.sequence);
+
+    private final List<Entry<?>> queue = new ArrayList<>();
+    private long nextSequence;
+    private int queuedColumns;
+    private int inFlight;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * @return the maximum number of columns which may be loaded at the same time
+     */
+    public int limit() {
+        long budgetColumns = ((long) TerraConfig.data.inFlightMemoryBudget << 20L) / COLUMN_MEMORY_ESTIMATE;
+        return (int) Math.max(Math.min(TerraConfig.data.maxInFlightColumns, budgetColumns), 1L);
+    }
+
+    /**
+     * Runs the given task once there is room for the given number of columns to be loaded.
+     *
+     * @param cost     the number of columns which will be loaded by the task
+     * @param priority the priority of the task. The task will be run using this priority.
+     * @param task     the task. The {@link CompletableFuture} it returns must be completed once all of the columns have been loaded.
+     * @return a {@link CompletableFuture} which will be completed with the task's result, or with a {@link CancellationException} if the task is shed
+     */
+    public <T> CompletableFuture<T> submit(int cost, @NonNull RequestPriority priority, @NonNull Supplier<CompletableFuture<T>> task) {
+        positive(cost, "cost");
+
+        Entry<T> entry;
+        List<Entry<?>> shed = new ArrayList<>();
+        List<Entry<?>> cancelled = new ArrayList<>();
+        synchronized (this) {
+            this.queue.add(entry = new Entry<>(cost, priority, task, this.nextSequence++));
+            this.queuedColumns += cost;
+            this.shedExcess(shed, cancelled);
+        }
+        cancelled.forEach(e -> e.future.completeExceptionally(new CancellationException()));
+        shed.forEach(e -> e.future.completeExceptionally(new CancellationException("shed by admission control")));
+
+        this.drain();
+        return entry.future;
+    }
+
+    /**
+     * Removes queued entries until the queue is no longer than the configured maximum length. Must be called while holding this instance's lock.
+     *
+     * @param shed      a {@link List} to which the shed entries will be added
+     * @param cancelled a {@link List} to which entries which were found to have been cancelled will be added
+     */
+    private void shedExcess(List<Entry<?>> shed, List<Entry<?>> cancelled) {
+        int maxQueued = TerraConfig.data.maxQueuedColumns;
+        if (this.queuedColumns <= maxQueued) { //fast path: nothing needs to be shed, so there's no need to look at any priorities
+            return;
+        }
+
+        //cancelled entries are dropped first, so that they can't cause any entries which are still needed to be shed
+        this.evaluatePriorities(cancelled);
+        this.queue.sort(LEAST_URGENT_FIRST);
+
+        int count = 0;
+        while (this.queuedColumns > maxQueued && count < this.queue.size()) {
+            Entry<?> entry = this.queue.get(count++);
+            this.queuedColumns -= entry.cost;
+            this.shed.add(entry.cost);
+            shed.add(entry);
+        }
+        this.queue.subList(0, count).clear();
+    }
+
+    /**
+     * Starts as many queued entries as there is room for.
+     */
+    private void drain() {
+        List<Entry<?>> toStart = new ArrayList<>();
+        List<Entry<?>> cancelled = new ArrayList<>();
+        synchronized (this) {
+            int limit = this.limit();
+            if (this.queue.isEmpty() || (this.inFlight > 0 && this.inFlight >= limit)) { //fast path: nothing could be started
+                return;
+            }
+
+            this.evaluatePriorities(cancelled);
+            this.queue.sort(MOST_URGENT_FIRST);
+
+            int count = 0;
+            while (count < this.queue.size()) {
+                //always allow at least one entry to run, even if it alone exceeds the limit
+                Entry<?> entry = this.queue.get(count);
+                if (this.inFlight > 0 && this.inFlight + entry.cost > limit) {
+                    break;
+                }
+
+                count++;
+                this.queuedColumns -= entry.cost;
+                this.inFlight += entry.cost;
+                toStart.add(entry);
+            }
+            this.queue.subList(0, count).clear();
+        }
+
+        //complete and start the entries outside of the lock, as the futures' callbacks and the tasks could take a while to return
+        cancelled.forEach(entry -> entry.future.completeExceptionally(new CancellationException()));
+        toStart.forEach(Entry::start);
+    }
+
+    /**
+     * Evaluates the priority of every queued entry, removing any which have been cancelled. Must be called while holding this instance's lock.
+     *
+     * @param cancelled a {@link List} to which the removed entries will be added
+     */
+    private void evaluatePriorities(List<Entry<?>> cancelled) {
+        int size = 0;
+        for (int i = 0; i < this.queue.size(); i++) {
+            Entry<?> entry = this.queue.get(i);
+            if (entry.priority.isCancelled() || entry.future.isDone()) {
+                this.queuedColumns -= entry.cost;
+                cancelled.add(entry);
+                continue;
+            }
+
+            entry.sortPriority = entry.priority.priority();
+            this.queue.set(size++, entry);
+        }
+        this.queue.subList(size, this.queue.size()).clear();
+    }
+
+    private void release(int cost) {
+        synchronized (this) {
+            this.inFlight -= cost;
+        }
+        this.drain();
+    }
+
+    /**
+     * @return the number of columns which are currently being loaded
+     */
+    public synchronized int inFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * @return the number of columns which are waiting to be loaded
+     */
+    public synchronized int queued() {
+        return this.queuedColumns;
+    }
+
+    /**
+     * @return the total number of columns which have been admitted
+     */
+    public long admitted() {
+        return this.admitted.sum();
+    }
+
+    /**
+     * @return the total number of columns which have been shed
+     */
+    public long shed() {
+        return this.shed.sum();
+    }
+
+    /**
+     * A queued task.
+     *
+     * @author DaPorkchop_
+     */
+    private final class Entry<T> {
+        final int cost;
+        final RequestPriority priority;
+        final Supplier<CompletableFuture<T>> task;
+        final long sequence;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        //the most recently evaluated priority, only accessed while holding the controller's lock
+        double sortPriority;
+
+        Entry(int cost, RequestPriority priority, Supplier<CompletableFuture<T>> task, long sequence) {
+            this.cost = cost;
+            this.priority = priority;
+            this.task = task;
+            this.sequence = sequence;
+        }
+
+        void start() {
+            AdmissionController.this.admitted.add(this.cost);
+
+            CompletableFuture<T> result;
+            try {
+                result = Http.withPriority(this.priority, this.task);
+            } catch (Throwable t) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(t);
+            }
+
+            result.whenComplete((value, t) -> {
+                AdmissionController.this.release(this.cost);
+                if (t != null) {
+                    this.future.completeExceptionally(t);
+                } else {
+                    this.future.complete(value);
+                }
+            });
+        }
+    }
+}
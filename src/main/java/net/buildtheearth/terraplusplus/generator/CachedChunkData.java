@@ -1,32 +1,41 @@
 package net.buildtheearth.terraplusplus.generator;
 
-import com.google.common.collect.ImmutableMap;
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
-import net.buildtheearth.terraplusplus.util.CustomAttributeContainer;
+import net.buildtheearth.terraplusplus.generator.data.TreeCoverBaker;
+import net.buildtheearth.terraplusplus.util.CompactIntArray;
+import net.buildtheearth.terraplusplus.util.CustomAttributeArray;
+import net.buildtheearth.terraplusplus.util.CustomAttributeKey;
 import net.buildtheearth.terraplusplus.util.ImmutableCompactArray;
 import net.daporkchop.lib.common.reference.ReferenceStrength;
 import net.daporkchop.lib.common.reference.cache.Cached;
 import net.daporkchop.lib.common.util.PorkUtil;
+import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Biomes;
+import net.minecraft.util.ResourceLocation;
 import net.minecraft.world.biome.Biome;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
+import java.util.List;
 
 import static java.lang.Math.*;
 import static net.daporkchop.lib.common.math.PMath.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
 
 /**
  * A collection of data cached per-column by {@link EarthGenerator}.
  *
  * @author DaPorkchop_
  */
-public class CachedChunkData extends CustomAttributeContainer {
+public class CachedChunkData extends CustomAttributeArray {
     public static final int BLANK_HEIGHT = -1;
 
     public static final int WATERDEPTH_DEFAULT = (byte) 0x80;
@@ -36,20 +45,102 @@ public class CachedChunkData extends CustomAttributeContainer {
     public static final int WATERDEPTH_TYPE_WATER = (byte) 0x00;
     public static final int WATERDEPTH_TYPE_OCEAN = (byte) 0x40;
 
+    /*
+     * The names of the builder's fields, as used by IEarthAsyncPipelineStep#reads() and IEarthAsyncPipelineStep#writes().
+     * Custom attributes are identified by the name of their key.
+     */
+    public static final String FIELD_SURFACE_HEIGHT = "surface_height";
+    public static final String FIELD_WATER_DEPTH = "water_depth";
+    public static final String FIELD_BIOMES = "biomes";
+    public static final String FIELD_SURFACE_BLOCKS = "surface_blocks";
+
+    private static final byte[][] UNIFORM_BIOMES = new byte[256][];
+    private static final ImmutableCompactArray<IBlockState> NO_SURFACE_BLOCKS = new ImmutableCompactArray<>(new IBlockState[16 * 16]);
+
     private static final Cached<Builder> BUILDER_CACHE = Cached.threadLocal(Builder::new, ReferenceStrength.SOFT);
 
     public static Builder builder() {
         return BUILDER_CACHE.get().reset();
     }
 
+    /**
+     * Creates a new {@link Builder} which isn't shared with anything else, and may therefore be passed between threads.
+     *
+     * @return a new {@link Builder}
+     */
+    @SuppressWarnings("deprecation")
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
     private static int extractActualDepth(int waterDepth) {
         //discard upper 2 bits from least significant byte and then sign-extend everything back down
         return ((waterDepth & 0x3F) - 32) << 26 >> 26;
     }
 
-    private final int[] surfaceHeight;
-    private final int[] groundHeight;
+    /**
+     * Reads a {@link CachedChunkData} from the binary representation produced by {@link #write(ByteBuf)}.
+     *
+     * @param buf the {@link ByteBuf} to read from
+     * @return the decoded {@link CachedChunkData}
+     * @throws IllegalStateException if the data references a block which is not registered
+     */
+    public static CachedChunkData read(@NonNull ByteBuf buf) {
+        int[] surfaceHeight = new int[16 * 16];
+        for (int i = 0; i < 16 * 16; i++) {
+            surfaceHeight[i] = buf.readInt();
+        }
+        int[] groundHeight = new int[16 * 16];
+        for (int i = 0; i < 16 * 16; i++) {
+            groundHeight[i] = buf.readInt();
+        }
+
+        byte[] biomes = new byte[16 * 16];
+        buf.readBytes(biomes);
 
+        //index 0 in the palette is reserved for null
+        IBlockState[] palette = new IBlockState[buf.readUnsignedShort() + 1];
+        for (int i = 1; i < palette.length; i++) {
+            ResourceLocation name = new ResourceLocation(readString(buf));
+            checkState(Block.REGISTRY.containsKey(name), "unknown block: %s", name);
+            palette[i] = Block.REGISTRY.getObject(name).getStateFromMeta(buf.readUnsignedByte());
+        }
+        IBlockState[] surfaceBlocks = new IBlockState[16 * 16];
+        for (int i = 0; i < 16 * 16; i++) {
+            surfaceBlocks[i] = palette[buf.readUnsignedShort()];
+        }
+
+        Object[] custom = EMPTY_ATTRIBUTES;
+        for (int i = 0, count = buf.readInt(); i < count; i++) {
+            CustomAttributeKey<byte[]> key = CustomAttributeKey.of(readString(buf));
+            byte[] value = new byte[buf.readInt()];
+            buf.readBytes(value);
+
+            if (key.slot() >= custom.length) {
+                custom = Arrays.copyOf(custom, key.slot() + 1);
+            }
+            custom[key.slot()] = value;
+        }
+
+        return new CachedChunkData(surfaceHeight, groundHeight, biomes, surfaceBlocks, custom);
+    }
+
+    private static String readString(@NonNull ByteBuf buf) {
+        return buf.readCharSequence(buf.readInt(), StandardCharsets.UTF_8).toString();
+    }
+
+    private static void writeString(@NonNull ByteBuf buf, @NonNull String value) {
+        int i = buf.writerIndex();
+        int len = buf.writeInt(-1).writeCharSequence(value, StandardCharsets.UTF_8);
+        buf.setInt(i, len);
+    }
+
+    private final CompactIntArray surfaceHeight;
+    private final CompactIntArray groundDepth; //the distance between the surface and the ground, which is 0 almost everywhere on land
+
+    /**
+     * The biome IDs in this column. Columns with a single biome share the same array, so it must not be modified!
+     */
     @Getter
     private final byte[] biomes;
 
@@ -58,57 +149,117 @@ public class CachedChunkData extends CustomAttributeContainer {
     private final int surfaceMinCube;
     private final int surfaceMaxCube;
 
-    private CachedChunkData(@NonNull Builder builder, @NonNull Map<String, Object> custom) {
-        super(custom);
+    private final long[] treeCandidates;
+    private final long[] snowMask;
 
-        this.surfaceHeight = builder.surfaceHeight.clone();
-        this.groundHeight = builder.surfaceHeight.clone();
+    /**
+     * The {@link SurfaceStrata} computed for this column by {@link EarthGenerator}, or {@code null} if they haven't been computed yet.
+     */
+    volatile SurfaceStrata surfaceStrata;
+
+    private CachedChunkData(@NonNull int[] surfaceHeight, @NonNull int[] groundHeight, @NonNull byte[] biomes, @NonNull IBlockState[] surfaceBlocks, @NonNull Object[] custom) {
+        super(custom);
 
+        this.surfaceHeight = CompactIntArray.of(surfaceHeight);
+        int[] groundDepth = new int[16 * 16];
         for (int i = 0; i < 16 * 16; i++) {
-            int waterDepth = builder.waterDepth[i];
-            int d = extractActualDepth(waterDepth);
-
-            switch (waterDepth & WATERDEPTH_TYPE_MASK) {
-                case WATERDEPTH_TYPE_DEFAULT: //no water
-                    //do nothing
-                    break;
-                case WATERDEPTH_TYPE_WATER: //water - lake/river/pond
-                    if (d + EarthGenerator.WATER_DEPTH_OFFSET >= 0) {
-                        this.groundHeight[i] -= d + EarthGenerator.WATER_DEPTH_OFFSET;
-                        builder.biomes[(i >>> 4) | ((i & 0xF) << 4)] = Biomes.RIVER;
-                    }
-                    break;
-                case WATERDEPTH_TYPE_OCEAN:
-                    if (d < 0) {
-                        double t = (~d) / 8.0d;
-                        this.surfaceHeight[i] = floorI(lerp(0.0d, this.surfaceHeight[i], t));
-                        this.groundHeight[i] = floorI(lerp(-1.0d, this.groundHeight[i], t));
-                    } else {
-                        this.surfaceHeight[i] = 0;
-                        this.groundHeight[i] = min(this.groundHeight[i], -2);
-                        builder.biomes[(i >>> 4) | ((i & 0xF) << 4)] = Biomes.DEEP_OCEAN;
-                    }
-                    break;
-                default:
-                    throw new IllegalStateException();
-            }
-        }
-
-        this.biomes = new byte[16 * 16];
+            groundDepth[i] = surfaceHeight[i] - groundHeight[i];
+        }
+        this.groundDepth = CompactIntArray.of(groundDepth);
+
+        this.biomes = internBiomes(biomes);
+        this.surfaceBlocks = internSurfaceBlocks(surfaceBlocks);
+
+        this.surfaceMinCube = surfaceMinCube(surfaceHeight, groundHeight);
+        this.surfaceMaxCube = surfaceMaxCube(surfaceHeight, groundHeight);
+
+        this.treeCandidates = this.findTreeCandidates();
+        this.snowMask = this.computeSnowMask();
+    }
+
+    /**
+     * Gets a shared biome array if every biome in the given array is the same, or the given array otherwise.
+     */
+    private static byte[] internBiomes(@NonNull byte[] biomes) {
+        for (int i = 1; i < 16 * 16; i++) {
+            if (biomes[i] != biomes[0]) {
+                return biomes;
+            }
+        }
+
+        //racing here is harmless, as all threads will create an identical array
+        byte[] shared = UNIFORM_BIOMES[biomes[0] & 0xFF];
+        if (shared == null) {
+            UNIFORM_BIOMES[biomes[0] & 0xFF] = shared = biomes;
+        }
+        return shared;
+    }
+
+    private static ImmutableCompactArray<IBlockState> internSurfaceBlocks(@NonNull IBlockState[] surfaceBlocks) {
+        for (IBlockState state : surfaceBlocks) {
+            if (state != null) {
+                return new ImmutableCompactArray<>(surfaceBlocks);
+            }
+        }
+        return NO_SURFACE_BLOCKS;
+    }
+
+    private int groundHeight(int i) {
+        return this.surfaceHeight.get(i) - this.groundDepth.get(i);
+    }
+
+    private long[] findTreeCandidates() {
+        byte[] treeCover = this.getCustom(EarthGeneratorPipelines.ATTRIBUTE_TREE_COVER, TreeCoverBaker.FALLBACK_TREE_DENSITY);
+
+        long[] candidates = new long[16 * 16];
+        int count = 0;
         for (int i = 0; i < 16 * 16; i++) {
-            this.biomes[i] = (byte) Biome.getIdForBiome(PorkUtil.fallbackIfNull(builder.biomes[i], Biomes.DEEP_OCEAN));
+            int chance = treeCover[i] & 0xFF;
+            if (chance == 0 //no trees here
+                || this.groundDepth.get(i) > 1) { //the ground is underwater
+                continue;
+            }
+
+            //trees are placed on the block above the ground
+            candidates[count++] = ((long) (this.groundHeight(i) + 1) << 32L) | (chance << 8) | i;
         }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private long[] computeSnowMask() {
+        long[] mask = new long[16 * 16 / 64];
+        for (int i = 0; i < 16 * 16; i++) {
+            if (this.groundDepth.get(i) > 1) { //the ground is underwater, snow can't be placed on water
+                continue;
+            }
+            Biome biome = Biome.getBiomeForId(this.biomes[((i & 0xF) << 4) | (i >>> 4)] & 0xFF);
 
-        this.surfaceBlocks = new ImmutableCompactArray<>(builder.surfaceBlocks);
+            //same conditions as SnowPopulator#canSnow: temperature is always sampled at y=0, and everything above y=5000 is snowy
+            if ((biome != null && biome.getDefaultTemperature() < 0.15f) || max(this.groundHeight(i), this.surfaceHeight.get(i)) + 1 > 5000) {
+                mask[i >>> 6] |= 1L << i;
+            }
+        }
+        return mask;
+    }
 
+    private static int surfaceMinCube(@NonNull int[] surfaceHeight, @NonNull int[] groundHeight) {
         int min = Integer.MAX_VALUE;
+        for (int i = 0; i < 16 * 16; i++) {
+            min = min(min, min(groundHeight[i], surfaceHeight[i]));
+        }
+        return Coords.blockToCube(min) - 1;
+    }
+
+    private static int surfaceMaxCube(@NonNull int[] surfaceHeight, @NonNull int[] groundHeight) {
         int max = Integer.MIN_VALUE;
         for (int i = 0; i < 16 * 16; i++) {
-            min = min(min, min(this.groundHeight[i], this.surfaceHeight[i]));
-            max = max(max, max(this.groundHeight[i], this.surfaceHeight[i]));
+            max = max(max, max(groundHeight[i], surfaceHeight[i]));
         }
-        this.surfaceMinCube = Coords.blockToCube(min) - 1;
-        this.surfaceMaxCube = Coords.blockToCube(max) + 1;
+        return Coords.blockToCube(max) + 1;
+    }
+
+    int surfaceMinCube() {
+        return this.surfaceMinCube;
     }
 
     public boolean intersectsSurface(int cubeY) {
@@ -128,11 +279,11 @@ public class CachedChunkData extends CustomAttributeContainer {
     }
 
     public int surfaceHeight(int x, int z) {
-        return this.surfaceHeight[x * 16 + z];
+        return this.surfaceHeight.get(x * 16 + z);
     }
 
     public int groundHeight(int x, int z) {
-        return this.groundHeight[x * 16 + z];
+        return this.groundHeight(x * 16 + z);
     }
 
     public int waterHeight(int x, int z) {
@@ -147,6 +298,134 @@ public class CachedChunkData extends CustomAttributeContainer {
         return this.biomes[z * 16 + x] & 0xFF;
     }
 
+    /**
+     * Gets the positions in this column at which a tree could be placed, based on the column's tree cover and heights.
+     * <p>
+     * Each candidate is packed into a {@code long}, and may be unpacked using {@link #treeCandidateX(long)}, {@link #treeCandidateZ(long)},
+     * {@link #treeCandidateY(long)} and {@link #treeCandidateChance(long)}.
+     * <p>
+     * The returned array must not be modified!
+     *
+     * @return the tree candidates in this column
+     */
+    public long[] treeCandidates() {
+        return this.treeCandidates;
+    }
+
+    /**
+     * @return the X coordinate of the given tree candidate, relative to the column
+     */
+    public static int treeCandidateX(long candidate) {
+        return ((int) candidate >>> 4) & 0xF;
+    }
+
+    /**
+     * @return the Z coordinate of the given tree candidate, relative to the column
+     */
+    public static int treeCandidateZ(long candidate) {
+        return (int) candidate & 0xF;
+    }
+
+    /**
+     * @return the Y coordinate at which the given tree candidate's tree would be placed
+     */
+    public static int treeCandidateY(long candidate) {
+        return (int) (candidate >> 32L);
+    }
+
+    /**
+     * @return the chance (out of 256) that a tree will be placed at the given tree candidate
+     */
+    public static int treeCandidateChance(long candidate) {
+        return ((int) candidate >>> 8) & 0xFF;
+    }
+
+    /**
+     * Checks whether or not snow could be placed on the surface at the given position, based on the column's biomes and heights.
+     * <p>
+     * This is only an estimate: the actual surface may have been changed by structures or populators.
+     *
+     * @param x the X coordinate, relative to the column
+     * @param z the Z coordinate, relative to the column
+     * @return whether or not snow could be placed at the given position
+     */
+    public boolean canSnow(int x, int z) {
+        int i = x * 16 + z;
+        return (this.snowMask[i >>> 6] & (1L << i)) != 0L;
+    }
+
+    /**
+     * @return whether or not snow could be placed anywhere in this column
+     * @see #canSnow(int, int)
+     */
+    public boolean canSnowAnywhere() {
+        for (long l : this.snowMask) {
+            if (l != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes this chunk data to a binary representation which can later be decoded using {@link #read(ByteBuf)}.
+     * <p>
+     * Only custom attributes of type {@code byte[]} and surface blocks whose state can be restored from their metadata can be serialized. If the data contains
+     * anything else, nothing will be written.
+     *
+     * @param buf the {@link ByteBuf} to write to
+     * @return whether or not the data could be serialized
+     */
+    public boolean write(@NonNull ByteBuf buf) {
+        for (Object value : this.custom) {
+            if (value != null && !(value instanceof byte[])) { //we don't know how to serialize this attribute
+                return false;
+            }
+        }
+
+        Reference2IntMap<IBlockState> paletteIds = new Reference2IntOpenHashMap<>();
+        List<IBlockState> palette = new ArrayList<>();
+        for (int i = 0; i < 16 * 16; i++) {
+            IBlockState state = this.surfaceBlocks.get(i);
+            if (state != null && !paletteIds.containsKey(state)) {
+                paletteIds.put(state, palette.size() + 1);
+                palette.add(state);
+            }
+        }
+        for (IBlockState state : palette) {
+            Block block = state.getBlock();
+            if (block.getRegistryName() == null || block.getStateFromMeta(block.getMetaFromState(state)) != state) { //state can't be restored from its metadata
+                return false;
+            }
+        }
+
+        for (int i = 0; i < 16 * 16; i++) {
+            buf.writeInt(this.surfaceHeight.get(i));
+        }
+        for (int i = 0; i < 16 * 16; i++) {
+            buf.writeInt(this.groundHeight(i));
+        }
+
+        buf.writeBytes(this.biomes);
+
+        buf.writeShort(palette.size());
+        for (IBlockState state : palette) {
+            writeString(buf, state.getBlock().getRegistryName().toString());
+            buf.writeByte(state.getBlock().getMetaFromState(state));
+        }
+        for (int i = 0; i < 16 * 16; i++) {
+            IBlockState state = this.surfaceBlocks.get(i);
+            buf.writeShort(state != null ? paletteIds.getInt(state) : 0);
+        }
+
+        buf.writeInt(this.customCount());
+        this.forEachCustom((key, value) -> {
+            writeString(buf, key.name());
+            buf.writeInt(((byte[]) value).length).writeBytes((byte[]) value);
+        });
+        return true;
+    }
+
     /**
      * Builder class for {@link CachedChunkData}.
      *
@@ -154,7 +433,7 @@ public class CachedChunkData extends CustomAttributeContainer {
      */
     @Getter
     @Setter
-    public static final class Builder extends CustomAttributeContainer implements IEarthAsyncDataBuilder<CachedChunkData> {
+    public static final class Builder extends CustomAttributeArray implements IEarthAsyncDataBuilder<CachedChunkData> {
         private final int[] surfaceHeight = new int[16 * 16];
         private final byte[] waterDepth = new byte[16 * 16];
 
@@ -167,7 +446,7 @@ public class CachedChunkData extends CustomAttributeContainer {
          */
         @Deprecated
         public Builder() {
-            super(new Object2ObjectOpenHashMap<>());
+            super(new Object[CustomAttributeKey.count()]);
             this.reset();
         }
 
@@ -197,22 +476,74 @@ public class CachedChunkData extends CustomAttributeContainer {
         }
 
         public void putCustom(@NonNull String key, @NonNull Object value) {
-            this.custom.put(key, value);
+            this.putCustom(CustomAttributeKey.of(key), value);
+        }
+
+        //synchronized because bakers which write different attributes may run concurrently
+        public synchronized <T> void putCustom(@NonNull CustomAttributeKey<T> key, @NonNull T value) {
+            int slot = key.slot();
+            if (slot >= this.custom.length) { //the key was created after this builder
+                this.custom = Arrays.copyOf(this.custom, CustomAttributeKey.count());
+            }
+            this.custom[slot] = value;
         }
 
         public Builder reset() {
             Arrays.fill(this.surfaceHeight, BLANK_HEIGHT);
             Arrays.fill(this.waterDepth, (byte) WATERDEPTH_DEFAULT);
             Arrays.fill(this.surfaceBlocks, null);
-            this.custom.clear();
+            Arrays.fill(this.custom, null);
             return this;
         }
 
         @Override
         public CachedChunkData build() {
-            Map<String, Object> custom = ImmutableMap.copyOf(this.custom);
-            this.custom.clear();
-            return new CachedChunkData(this, custom);
+            int[] surfaceHeight = this.surfaceHeight.clone();
+            int[] groundHeight = this.surfaceHeight.clone();
+
+            for (int i = 0; i < 16 * 16; i++) {
+                int waterDepth = this.waterDepth[i];
+                int d = extractActualDepth(waterDepth);
+
+                switch (waterDepth & WATERDEPTH_TYPE_MASK) {
+                    case WATERDEPTH_TYPE_DEFAULT: //no water
+                        //do nothing
+                        break;
+                    case WATERDEPTH_TYPE_WATER: //water - lake/river/pond
+                        if (d + EarthGenerator.WATER_DEPTH_OFFSET >= 0) {
+                            groundHeight[i] -= d + EarthGenerator.WATER_DEPTH_OFFSET;
+                            this.biomes[(i >>> 4) | ((i & 0xF) << 4)] = Biomes.RIVER;
+                        }
+                        break;
+                    case WATERDEPTH_TYPE_OCEAN:
+                        if (d < 0) {
+                            double t = (~d) / 8.0d;
+                            surfaceHeight[i] = floorI(lerp(0.0d, surfaceHeight[i], t));
+                            groundHeight[i] = floorI(lerp(-1.0d, groundHeight[i], t));
+                        } else {
+                            surfaceHeight[i] = 0;
+                            groundHeight[i] = min(groundHeight[i], -2);
+                            this.biomes[(i >>> 4) | ((i & 0xF) << 4)] = Biomes.DEEP_OCEAN;
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                }
+            }
+
+            byte[] biomes = new byte[16 * 16];
+            for (int i = 0; i < 16 * 16; i++) {
+                biomes[i] = (byte) Biome.getIdForBiome(PorkUtil.fallbackIfNull(this.biomes[i], Biomes.DEEP_OCEAN));
+            }
+
+            //only copy as many slots as are actually needed
+            int length = this.custom.length;
+            while (length > 0 && this.custom[length - 1] == null) {
+                length--;
+            }
+            Object[] custom = length != 0 ? Arrays.copyOf(this.custom, length) : EMPTY_ATTRIBUTES;
+            Arrays.fill(this.custom, null);
+            return new CachedChunkData(surfaceHeight, groundHeight, biomes, this.surfaceBlocks, custom);
         }
     }
 }
@@ -15,6 +15,11 @@ import java.util.Arrays;
  */
 @Getter
 public class ChunkBiomesBuilder implements IEarthAsyncDataBuilder<ImmutableCompactArray<Biome>> {
+    /**
+     * The name of the builder's only field, as used by {@link IEarthAsyncPipelineStep#reads()} and {@link IEarthAsyncPipelineStep#writes()}.
+     */
+    public static final String FIELD_BIOMES = "biomes";
+
     private static final Cached<ChunkBiomesBuilder> BUILDER_CACHE = Cached.threadLocal(ChunkBiomesBuilder::new, ReferenceStrength.SOFT);
 
     public static ChunkBiomesBuilder get() {
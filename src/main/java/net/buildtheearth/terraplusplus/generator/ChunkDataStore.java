@@ -0,0 +1,342 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.TerraConfig;
+import net.buildtheearth.terraplusplus.TerraConstants;
+import net.buildtheearth.terraplusplus.TerraMod;
+import net.buildtheearth.terraplusplus.util.http.Disk;
+import net.daporkchop.lib.common.misc.file.PFiles;
+import net.daporkchop.lib.common.misc.threadfactory.PThreadFactories;
+import net.minecraft.util.math.ChunkPos;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Persistent on-disk storage for baked {@link CachedChunkData}.
+ * <p>
+ * Each distinct set of {@link EarthGeneratorSettings} is given its own directory, named after a hash of the settings. Changing a world's generator settings
+ * will therefore cause any previously stored data to be ignored.
+ * <p>
+ * Columns are grouped into regions of 32x32 columns, each of which is stored in a single file consisting of a header (containing the position and size of
+ * each column's data) followed by a number of 512-byte sectors. All file I/O is done on a single dedicated thread.
+ *
+ * @author DaPorkchop_
+ */
+public final class ChunkDataStore {
+    /**
+     * The current storage format version. Changing this will cause all previously stored data to be ignored.
+     */
+    public static final int STORE_VERSION = 1;
+
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+
+    private static final int SECTOR_SHIFT = 9;
+    private static final int SECTOR_SIZE = 1 << SECTOR_SHIFT;
+
+    private static final int HEADER_ENTRY_SIZE = 2 * Integer.BYTES;
+    private static final int HEADER_SIZE = REGION_SIZE * REGION_SIZE * HEADER_ENTRY_SIZE;
+    private static final int HEADER_SECTORS = HEADER_SIZE >> SECTOR_SHIFT;
+
+    private static final int MAX_OPEN_REGIONS = 64;
+
+    private static final EventLoop IO_EXECUTOR = new DefaultEventLoop(PThreadFactories.builder().daemon().minPriority().name("terra++ chunk data I/O thread").build());
+
+    private static final Map<String, ChunkDataStore> STORES = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the {@link ChunkDataStore} for the given {@link EarthGeneratorSettings}.
+     *
+     * @param settings the {@link EarthGeneratorSettings}
+     * @return the {@link ChunkDataStore}, or {@code null} if the persistent store is disabled
+     */
+    public static ChunkDataStore forSettings(@NonNull EarthGeneratorSettings settings) {
+        if (!TerraConfig.data.persistentCache) {
+            return null;
+        }
+
+        String settingsString = settings.toString();
+        return STORES.computeIfAbsent(hash(STORE_VERSION + ";" + TerraConstants.VERSION + ";" + settingsString), name -> new ChunkDataStore(Disk.dataFile(name), settingsString));
+    }
+
+    static String hash(@NonNull String text) {
+        try {
+            return Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not supported", e);
+        }
+    }
+
+    private final Path root;
+
+    //only accessed from IO_EXECUTOR
+    private final Map<ChunkPos, Region> openRegions = new LinkedHashMap<ChunkPos, Region>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChunkPos, Region> eldest) {
+            if (this.size() > MAX_OPEN_REGIONS) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private ChunkDataStore(@NonNull Path root, @NonNull String settings) {
+        this.root = root;
+
+        IO_EXECUTOR.execute(() -> {
+            try {
+                PFiles.ensureDirectoryExists(root.toFile());
+
+                //store the settings alongside the data, so that it's possible to figure out which world a directory belongs to
+                Path settingsFile = root.resolve("settings.json");
+                if (!Files.exists(settingsFile)) {
+                    Files.write(settingsFile, settings.getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (Exception e) {
+                TerraMod.LOGGER.error("unable to initialize chunk data store at " + root, e);
+            }
+        });
+    }
+
+    /**
+     * Asynchronously loads the stored {@link CachedChunkData} for the given column.
+     * <p>
+     * If no data is stored, the stored data has expired or the stored data cannot be read, the returned {@link CompletableFuture} will be completed with
+     * {@code null}.
+     *
+     * @param pos the position of the column
+     * @return a {@link CompletableFuture} which will be completed with the stored {@link CachedChunkData}
+     */
+    public CompletableFuture<CachedChunkData> load(@NonNull ChunkPos pos) {
+        return CompletableFuture.supplyAsync(() -> {
+            ByteBuf payload = null;
+            try {
+                Region region = this.region(pos, false);
+                if (region == null || (payload = region.read(index(pos))) == null) { //no data stored
+                    return null;
+                } else if (payload.readUnsignedByte() != STORE_VERSION) { //unsupported version
+                    return null;
+                }
+
+                long timestamp = payload.readLong();
+                int ttl = TerraConfig.data.persistentCacheTTL;
+                if (ttl > 0 && System.currentTimeMillis() - timestamp > TimeUnit.MINUTES.toMillis(ttl)) { //data has expired
+                    return null;
+                }
+
+                ByteBuf uncompressed = Unpooled.buffer();
+                try {
+                    try (InputStream in = new InflaterInputStream(new ByteBufInputStream(payload))) {
+                        while (uncompressed.writeBytes(in, SECTOR_SIZE) > 0) {
+                        }
+                    }
+                    return CachedChunkData.read(uncompressed);
+                } finally {
+                    uncompressed.release();
+                }
+            } catch (Exception e) {
+                TerraMod.LOGGER.warn("unable to load stored chunk data for " + pos + ", it will be regenerated", e);
+                return null;
+            } finally {
+                if (payload != null) {
+                    payload.release();
+                }
+            }
+        }, IO_EXECUTOR);
+    }
+
+    /**
+     * Asynchronously stores the given {@link CachedChunkData}, replacing any data previously stored for the same column.
+     *
+     * @param pos  the position of the column
+     * @param data the {@link CachedChunkData}
+     */
+    public void save(@NonNull ChunkPos pos, @NonNull CachedChunkData data) {
+        //serialize and compress on the calling thread to avoid putting unnecessary load on the I/O thread
+        ByteBuf uncompressed = Unpooled.buffer();
+        ByteBuf payload = Unpooled.buffer();
+        try {
+            if (!data.write(uncompressed)) { //data can't be serialized
+                payload.release();
+                return;
+            }
+
+            payload.writeByte(STORE_VERSION).writeLong(System.currentTimeMillis());
+            try (OutputStream out = new DeflaterOutputStream(new ByteBufOutputStream(payload))) {
+                uncompressed.readBytes(out, uncompressed.readableBytes());
+            }
+        } catch (IOException e) {
+            payload.release();
+            TerraMod.LOGGER.warn("unable to serialize chunk data for " + pos, e);
+            return;
+        } finally {
+            uncompressed.release();
+        }
+
+        IO_EXECUTOR.execute(() -> {
+            try {
+                this.region(pos, true).write(index(pos), payload);
+            } catch (Exception e) {
+                TerraMod.LOGGER.warn("unable to store chunk data for " + pos, e);
+            } finally {
+                payload.release();
+            }
+        });
+    }
+
+    private Region region(@NonNull ChunkPos pos, boolean create) throws IOException {
+        ChunkPos regionPos = new ChunkPos(pos.x >> REGION_SHIFT, pos.z >> REGION_SHIFT);
+        Region region = this.openRegions.get(regionPos);
+        if (region == null) {
+            Path file = this.root.resolve("r." + regionPos.x + '.' + regionPos.z + ".t3d");
+            if (!create && !Files.exists(file)) {
+                return null;
+            }
+
+            this.openRegions.put(regionPos, region = new Region(file));
+        }
+        return region;
+    }
+
+    private static int index(@NonNull ChunkPos pos) {
+        return (pos.z & REGION_MASK) << REGION_SHIFT | (pos.x & REGION_MASK);
+    }
+
+    /**
+     * A single region file.
+     *
+     * @author DaPorkchop_
+     */
+    static final class Region {
+        private final Path file;
+        private final FileChannel channel;
+
+        private final int[] offsets = new int[REGION_SIZE * REGION_SIZE]; //in sectors, 0 means absent
+        private final int[] lengths = new int[REGION_SIZE * REGION_SIZE]; //in bytes
+        private final BitSet usedSectors = new BitSet();
+
+        public Region(@NonNull Path file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            this.usedSectors.set(0, HEADER_SECTORS);
+
+            long size = this.channel.size();
+            if (size < HEADER_SIZE) { //new or truncated file, write an empty header
+                this.writeFully(ByteBuffer.allocate(HEADER_SIZE), 0L);
+                return;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            this.readFully(header, 0L);
+            header.flip();
+
+            for (int i = 0; i < REGION_SIZE * REGION_SIZE; i++) {
+                int offset = header.getInt();
+                int length = header.getInt();
+                if (offset < HEADER_SECTORS || length <= 0 || ((long) offset << SECTOR_SHIFT) + length > size) { //absent or invalid
+                    continue;
+                }
+
+                this.offsets[i] = offset;
+                this.lengths[i] = length;
+                this.usedSectors.set(offset, offset + sectors(length));
+            }
+        }
+
+        public ByteBuf read(int index) throws IOException {
+            int offset = this.offsets[index];
+            if (offset == 0) {
+                return null;
+            }
+
+            int length = this.lengths[index];
+            ByteBuf buf = Unpooled.buffer(length, length);
+            try {
+                this.readFully(buf.internalNioBuffer(0, length), (long) offset << SECTOR_SHIFT);
+                return buf.writerIndex(length).retain();
+            } finally {
+                buf.release();
+            }
+        }
+
+        public void write(int index, @NonNull ByteBuf data) throws IOException {
+            int length = data.readableBytes();
+            int sectors = sectors(length);
+
+            //find the first run of free sectors which is large enough to fit the data
+            int start = HEADER_SECTORS;
+            for (int end; (end = this.usedSectors.nextSetBit(start = this.usedSectors.nextClearBit(start))) >= 0 && end - start < sectors; start = end) {
+            }
+
+            this.writeFully(data.nioBuffer(), (long) start << SECTOR_SHIFT);
+
+            //update the header only after the data has been written, so that the old data remains valid if we crash in the meantime
+            ByteBuffer entry = ByteBuffer.allocate(HEADER_ENTRY_SIZE);
+            entry.putInt(start).putInt(length).flip();
+            this.writeFully(entry, (long) index * HEADER_ENTRY_SIZE);
+
+            int oldOffset = this.offsets[index];
+            if (oldOffset != 0) {
+                this.usedSectors.clear(oldOffset, oldOffset + sectors(this.lengths[index]));
+            }
+            this.offsets[index] = start;
+            this.lengths[index] = length;
+            this.usedSectors.set(start, start + sectors);
+        }
+
+        public void close() {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                TerraMod.LOGGER.warn("unable to close region file " + this.file, e);
+            }
+        }
+
+        private void readFully(@NonNull ByteBuffer dst, long position) throws IOException {
+            while (dst.hasRemaining()) {
+                int read = this.channel.read(dst, position);
+                checkState(read >= 0, "unexpected EOF in %s", this.file);
+                position += read;
+            }
+        }
+
+        private void writeFully(@NonNull ByteBuffer src, long position) throws IOException {
+            while (src.hasRemaining()) {
+                position += this.channel.write(src, position);
+            }
+        }
+
+        private static int sectors(int length) {
+            return (length + SECTOR_SIZE - 1) >> SECTOR_SHIFT;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.TerraConfig;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
+
+/**
+ * The {@link RequestPriority} of the requests made while loading the data for a single column.
+ * <p>
+ * Columns closer to a player are more urgent, and columns which the server is actually waiting on are always more urgent than those which are only
+ * being prefetched. Once a column is no longer being waited on and every player has moved far enough away from it, its requests are cancelled.
+ *
+ * @author DaPorkchop_
+ */
+final class ColumnPriority implements RequestPriority {
+    /**
+     * Added to the priority of columns which the server isn't waiting on, so that they are always sent after all demanded columns.
+     */
+    private static final double PREFETCH_PENALTY = 1.0e9d;
+
+    /**
+     * The priority of work which no player is waiting on at all, such as pregeneration.
+     * <p>
+     * The world is at most a few million columns across, so this is larger than the priority of any column, even a prefetched one.
+     */
+    static final double BACKGROUND_PRIORITY = 1.0e15d;
+
+    /**
+     * The number of ticks after the server last waited on a column during which it may not be cancelled.
+     */
+    private static final long DEMAND_TIMEOUT = 100L;
+
+    private final EarthGenerator generator;
+    private final int x;
+    private final int z;
+
+    private volatile long lastDemandTick;
+    private volatile boolean demanded;
+
+    public ColumnPriority(@NonNull EarthGenerator generator, int x, int z, boolean demanded) {
+        this.generator = generator;
+        this.x = x;
+        this.z = z;
+
+        this.lastDemandTick = generator.playerColumnsTick;
+        this.demanded = demanded;
+    }
+
+    /**
+     * Marks this column as being waited on by the server.
+     */
+    public void demand() {
+        this.lastDemandTick = this.generator.playerColumnsTick;
+        this.demanded = true;
+    }
+
+    /**
+     * @return the squared distance (in columns) between this column and the nearest player, or {@link Double#POSITIVE_INFINITY} if there are no players
+     */
+    private double nearestPlayerDistanceSq() {
+        double min = Double.POSITIVE_INFINITY;
+        for (long player : this.generator.playerColumns) {
+            double dx = (int) player - this.x;
+            double dz = (int) (player >>> 32) - this.z;
+            min = Math.min(min, dx * dx + dz * dz);
+        }
+        return min;
+    }
+
+    @Override
+    public double priority() {
+        double distanceSq = this.nearestPlayerDistanceSq();
+        if (distanceSq == Double.POSITIVE_INFINITY) { //no players are online, so no column is closer than any other
+            distanceSq = 0.0d;
+        }
+        return this.demanded ? distanceSq : distanceSq + PREFETCH_PENALTY;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        int cancelDistance = TerraConfig.data.cancelDistance;
+        if (cancelDistance <= 0 || this.generator.playerColumnsTick - this.lastDemandTick < DEMAND_TIMEOUT) {
+            return false;
+        }
+
+        double distanceSq = this.nearestPlayerDistanceSq();
+        return distanceSq != Double.POSITIVE_INFINITY && distanceSq > (double) cancelDistance * cancelDistance;
+    }
+}
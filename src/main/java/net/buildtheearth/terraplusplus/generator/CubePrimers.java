@@ -0,0 +1,144 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.buildtheearth.terraplusplus.TerraMod;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Helpers for filling large parts of a {@link CubePrimer} at once.
+ * <p>
+ * {@link CubePrimer#setBlockState(int, int, int, IBlockState)} looks up the state's ID in {@link Block#BLOCK_STATE_IDS} every time it is called, which
+ * adds up quickly when filling entire cubes. Where possible, these methods look up the ID once and write directly to the primer's internal {@code char[]}
+ * using array fills. If the primer's internals don't look the way we expect them to (e.g. because a different version of Cubic Chunks is installed), they
+ * fall back to calling {@link CubePrimer#setBlockState(int, int, int, IBlockState)} for every block.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+public class CubePrimers {
+    private final MethodHandle DATA_GETTER = findDataGetter();
+
+    /**
+     * Pre-filled copies of the primer data for cubes which consist entirely of a single block state, indexed by block state ID.
+     */
+    private final ConcurrentMap<Integer, char[]> TEMPLATES = new ConcurrentHashMap<>();
+
+    private MethodHandle findDataGetter() {
+        try {
+            for (Field field : CubePrimer.class.getDeclaredFields()) {
+                if (field.getType() != char[].class || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+
+                field.setAccessible(true);
+                MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+
+                //make sure that the array is indexed the way we expect it to be
+                CubePrimer primer = new CubePrimer();
+                char[] data = (char[]) getter.invoke(primer);
+                IBlockState state = Blocks.STONE.getDefaultState();
+                primer.setBlockState(1, 2, 3, state);
+                if (data.length == 16 * 16 * 16 && data[index(1, 2, 3)] == (char) Block.BLOCK_STATE_IDS.get(state)) {
+                    return getter;
+                }
+            }
+            TerraMod.LOGGER.warn("Unable to find CubePrimer's block data, falling back to slow cube filling");
+        } catch (Throwable t) {
+            TerraMod.LOGGER.warn("Unable to access CubePrimer's block data, falling back to slow cube filling", t);
+        }
+        return null;
+    }
+
+    private int index(int x, int y, int z) {
+        return (x << 8) | (z << 4) | y;
+    }
+
+    private char[] data(CubePrimer primer) {
+        try {
+            return (char[]) DATA_GETTER.invokeExact(primer);
+        } catch (Throwable t) {
+            throw new AssertionError(t); //impossible
+        }
+    }
+
+    /**
+     * @return whether or not bulk filling is supported. If {@code false}, all of these methods will be as slow as setting each block individually
+     */
+    public boolean isFast() {
+        return DATA_GETTER != null;
+    }
+
+    /**
+     * Sets every block in the given cube to the given block state.
+     *
+     * @param primer the {@link CubePrimer} to fill
+     * @param state  the block state
+     */
+    public void fillCube(@NonNull CubePrimer primer, @NonNull IBlockState state) {
+        if (DATA_GETTER == null) {
+            fillCubeSlow(primer, state);
+            return;
+        }
+
+        char[] template = TEMPLATES.computeIfAbsent(Block.BLOCK_STATE_IDS.get(state), id -> {
+            char[] arr = new char[16 * 16 * 16];
+            Arrays.fill(arr, (char) id.intValue());
+            return arr;
+        });
+        System.arraycopy(template, 0, data(primer), 0, template.length);
+    }
+
+    /**
+     * Sets the blocks in the given vertical span of a single column in the given cube to the given block state.
+     *
+     * @param primer the {@link CubePrimer} to fill
+     * @param x      the X coordinate of the column
+     * @param z      the Z coordinate of the column
+     * @param minY   the minimum Y coordinate (inclusive)
+     * @param maxY   the maximum Y coordinate (inclusive). If less than {@code minY}, nothing will be filled
+     * @param state  the block state
+     */
+    public void fillColumn(@NonNull CubePrimer primer, int x, int z, int minY, int maxY, @NonNull IBlockState state) {
+        if (maxY < minY) {
+            return;
+        }
+
+        if (DATA_GETTER == null) {
+            fillColumnSlow(primer, x, z, minY, maxY, state);
+            return;
+        }
+
+        int base = index(x, 0, z);
+        Arrays.fill(data(primer), base + minY, base + maxY + 1, (char) Block.BLOCK_STATE_IDS.get(state));
+    }
+
+    //fallback implementations, package-private so that they can be tested even when bulk filling is supported
+
+    void fillCubeSlow(@NonNull CubePrimer primer, @NonNull IBlockState state) {
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < 16; y++) {
+                    primer.setBlockState(x, y, z, state);
+                }
+            }
+        }
+    }
+
+    void fillColumnSlow(@NonNull CubePrimer primer, int x, int z, int minY, int maxY, @NonNull IBlockState state) {
+        for (int y = minY; y <= maxY; y++) {
+            primer.setBlockState(x, y, z, state);
+        }
+    }
+}
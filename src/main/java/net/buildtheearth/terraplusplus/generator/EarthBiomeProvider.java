@@ -1,11 +1,11 @@
 package net.buildtheearth.terraplusplus.generator;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import net.buildtheearth.terraplusplus.TerraConfig;
 import net.buildtheearth.terraplusplus.generator.biome.IEarthBiomeFilter;
+import net.buildtheearth.terraplusplus.util.ColumnCache;
 import net.buildtheearth.terraplusplus.util.ImmutableCompactArray;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
@@ -13,18 +13,42 @@ import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.BiomeProvider;
 
 import javax.annotation.Nullable;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
 @RequiredArgsConstructor
 public class EarthBiomeProvider extends BiomeProvider {
-    protected final LoadingCache<ChunkPos, CompletableFuture<ImmutableCompactArray<Biome>>> cache;
+    protected final ColumnCache<ImmutableCompactArray<Biome>> cache;
+    protected final ChunkDataLoader loader;
+
+    /**
+     * The cache of the {@link EarthGenerator} using this biome provider, if any.
+     * <p>
+     * This is weakly referenced, as biome providers are shared between all worlds using the same settings and may outlive the generator.
+     */
+    protected volatile Reference<ColumnCache<CachedChunkData>> generatorCache;
 
     public EarthBiomeProvider(@NonNull EarthGeneratorSettings settings) {
-        this.cache = CacheBuilder.newBuilder()
-                .weakValues()
-                .build(new ChunkDataLoader(settings));
+        this.loader = new ChunkDataLoader(settings);
+        this.cache = new ColumnCache<>(TerraConfig.data.cacheSize, key -> this.loader.load(new ChunkPos((int) key, (int) (key >>> 32))));
+    }
+
+    /**
+     * Allows this biome provider to read biomes from the given {@link EarthGenerator}'s cache.
+     * <p>
+     * The biomes of any column which has already been generated are then taken from its {@link CachedChunkData}, rather than being computed again. This
+     * also ensures that they match the biomes which were actually placed in the world.
+     *
+     * @param generatorCache the {@link EarthGenerator}'s cache
+     */
+    public void attach(@NonNull ColumnCache<CachedChunkData> generatorCache) {
+        this.generatorCache = new WeakReference<>(generatorCache);
     }
 
     /**
@@ -42,7 +66,7 @@ public class EarthBiomeProvider extends BiomeProvider {
      * @return a {@link CompletableFuture} which will be completed with the biomes in the chunk
      */
     public CompletableFuture<ImmutableCompactArray<Biome>> getBiomesForChunkAsync(ChunkPos pos) {
-        return this.cache.getUnchecked(pos);
+        return this.cache.get(pos);
     }
 
     /**
@@ -51,7 +75,7 @@ public class EarthBiomeProvider extends BiomeProvider {
     @Override
     @Deprecated
     public Biome getBiome(BlockPos pos) {
-        return this.getBiomesForChunk(new ChunkPos(pos)).get((pos.getX() & 0xF) * 16 + (pos.getZ() & 0xF));
+        return biome(this.getColumn(pos.getX() >> 4, pos.getZ() >> 4), pos.getX() & 0xF, pos.getZ() & 0xF);
     }
 
     /**
@@ -64,12 +88,17 @@ public class EarthBiomeProvider extends BiomeProvider {
             arr = new Biome[width * height];
         }
 
-        //stupidly inefficient solution, but nobody will ever use this so i'm not about to optimize it
+        //each sample is 4 blocks apart
+        int minChunkX = (x << 2) >> 4;
+        int minChunkZ = (z << 2) >> 4;
+        int sizeZ = (((z + height - 1) << 2) >> 4) - minChunkZ + 1;
+        Object[] columns = this.getColumns(minChunkX, minChunkZ, (((x + width - 1) << 2) >> 4) - minChunkX + 1, sizeZ);
+
         for (int zz = 0; zz < height; zz++) {
             for (int xx = 0; xx < width; xx++) {
                 int blockX = (x + xx) << 2;
                 int blockZ = (z + zz) << 2;
-                arr[zz * 16 + xx] = this.getBiomesForChunk(new ChunkPos(blockX >> 4, blockZ >> 4)).get((blockX & 0xF) * 16 + (blockZ & 0xF));
+                arr[zz * width + xx] = biome(columns[((blockX >> 4) - minChunkX) * sizeZ + ((blockZ >> 4) - minChunkZ)], blockX & 0xF, blockZ & 0xF);
             }
         }
         return arr;
@@ -95,18 +124,31 @@ public class EarthBiomeProvider extends BiomeProvider {
         }
 
         if (((x | z) & 0xF) == 0 && width == 16 && length == 16) {
-            ImmutableCompactArray<Biome> array = this.getBiomesForChunk(new ChunkPos(x >> 4, z >> 4));
-            for (int zz = 0; zz < 16; zz++) {
-                for (int xx = 0; xx < 16; xx++) { //reverse coordinate order
-                    arr[zz * 16 + xx] = array.get(xx * 16 + zz);
+            Object column = this.getColumn(x >> 4, z >> 4);
+            if (column instanceof CachedChunkData) { //already in the same coordinate order
+                byte[] biomes = ((CachedChunkData) column).biomes();
+                for (int i = 0; i < 16 * 16; i++) {
+                    arr[i] = Biome.getBiomeForId(biomes[i] & 0xFF);
+                }
+            } else {
+                ImmutableCompactArray<Biome> array = uncheckedCast(column);
+                for (int zz = 0; zz < 16; zz++) {
+                    for (int xx = 0; xx < 16; xx++) { //reverse coordinate order
+                        arr[zz * 16 + xx] = array.get(xx * 16 + zz);
+                    }
                 }
             }
-        } else { //stupidly inefficient solution, but nobody will ever use this so i'm not about to optimize it
+        } else {
+            int minChunkX = x >> 4;
+            int minChunkZ = z >> 4;
+            int sizeZ = ((z + length - 1) >> 4) - minChunkZ + 1;
+            Object[] columns = this.getColumns(minChunkX, minChunkZ, ((x + width - 1) >> 4) - minChunkX + 1, sizeZ);
+
             for (int zz = 0; zz < length; zz++) {
                 for (int xx = 0; xx < width; xx++) {
                     int blockX = x + xx;
                     int blockZ = z + zz;
-                    arr[zz * 16 + xx] = this.getBiomesForChunk(new ChunkPos(blockX >> 4, blockZ >> 4)).get((blockX & 0xF) * 16 + (blockZ & 0xF));
+                    arr[zz * width + xx] = biome(columns[((blockX >> 4) - minChunkX) * sizeZ + ((blockZ >> 4) - minChunkZ)], blockX & 0xF, blockZ & 0xF);
                 }
             }
         }
@@ -114,6 +156,87 @@ public class EarthBiomeProvider extends BiomeProvider {
         return arr;
     }
 
+    /**
+     * Gets the biome at the given position in a column returned by {@link #getColumn(int, int)} or {@link #getColumns(int, int, int, int)}.
+     */
+    protected static Biome biome(@NonNull Object column, int x, int z) {
+        if (column instanceof CachedChunkData) {
+            return Biome.getBiomeForId(((CachedChunkData) column).biome(x, z));
+        }
+        ImmutableCompactArray<Biome> biomes = uncheckedCast(column);
+        return biomes.get(x * 16 + z);
+    }
+
+    /**
+     * Gets the future for the given column from the attached {@link EarthGenerator}'s cache, if it has already been generated.
+     *
+     * @return a {@link CompletableFuture} which has already been completed with the column's {@link CachedChunkData}, or {@code null}
+     */
+    protected CompletableFuture<CachedChunkData> getGenerated(long key) {
+        Reference<ColumnCache<CachedChunkData>> reference = this.generatorCache;
+        ColumnCache<CachedChunkData> generatorCache = reference != null ? reference.get() : null;
+        if (generatorCache != null) {
+            CompletableFuture<CachedChunkData> future = generatorCache.getIfPresent(key);
+            if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+                return future;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the biomes in the given column, blocking if they aren't available yet.
+     *
+     * @return either the column's {@link CachedChunkData}, or an {@link ImmutableCompactArray} containing its biomes
+     * @see #biome(Object, int, int)
+     */
+    protected Object getColumn(int chunkX, int chunkZ) {
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        CompletableFuture<?> future = this.getGenerated(key);
+        return (future != null ? future : this.cache.get(key)).join();
+    }
+
+    /**
+     * Gets the biomes in every column in the given area, blocking until they are all available.
+     * <p>
+     * All of the columns which aren't already cached are loaded together as a single region.
+     *
+     * @return the biomes in each column, indexed by {@code dx * sizeZ + dz}
+     * @see #getColumn(int, int)
+     */
+    protected Object[] getColumns(int minChunkX, int minChunkZ, int sizeX, int sizeZ) {
+        int size = Math.max(sizeX, sizeZ);
+        CompletableFuture<?>[] futures = new CompletableFuture[sizeX * sizeZ];
+        BitSet missing = new BitSet(size * size);
+
+        for (int i = 0, dx = 0; dx < sizeX; dx++) {
+            for (int dz = 0; dz < sizeZ; dz++, i++) {
+                long key = ChunkPos.asLong(minChunkX + dx, minChunkZ + dz);
+                CompletableFuture<?> future = this.getGenerated(key);
+                if (future == null && (future = this.cache.getIfPresent(key)) == null) {
+                    missing.set(dx * size + dz);
+                }
+                futures[i] = future;
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            CompletableFuture<ImmutableCompactArray<Biome>>[] loaded = this.loader.loadRegion(new ChunkPos(minChunkX, minChunkZ), size, missing);
+            for (int index = missing.nextSetBit(0); index >= 0; index = missing.nextSetBit(index + 1)) {
+                int dx = index / size;
+                int dz = index % size;
+                CompletableFuture<ImmutableCompactArray<Biome>> existing = this.cache.putIfAbsent(ChunkPos.asLong(minChunkX + dx, minChunkZ + dz), loaded[index]);
+                futures[dx * sizeZ + dz] = existing != null ? existing : loaded[index];
+            }
+        }
+
+        Object[] columns = new Object[futures.length];
+        for (int i = 0; i < futures.length; i++) {
+            columns[i] = futures[i].join();
+        }
+        return columns;
+    }
+
     @Override
     public boolean areBiomesViable(int x, int z, int radius, List<Biome> allowed) {
         return true;
@@ -134,15 +257,26 @@ public class EarthBiomeProvider extends BiomeProvider {
     public static class ChunkDataLoader extends CacheLoader<ChunkPos, CompletableFuture<ImmutableCompactArray<Biome>>> {
         protected final GeneratorDatasets datasets;
         protected final IEarthBiomeFilter<?>[] filters;
+        protected final int[][] filterDependencies;
 
         public ChunkDataLoader(@NonNull EarthGeneratorSettings settings) {
             this.datasets = settings.datasets();
             this.filters = EarthGeneratorPipelines.biomeFilters(settings);
+            this.filterDependencies = IEarthAsyncPipelineStep.bakeDependencies(this.filters);
         }
 
         @Override
         public CompletableFuture<ImmutableCompactArray<Biome>> load(@NonNull ChunkPos pos) {
-            return IEarthAsyncPipelineStep.getFuture(pos, this.datasets, this.filters, ChunkBiomesBuilder::get);
+            return IEarthAsyncPipelineStep.getFuture(pos, this.datasets, this.filters, this.filterDependencies, ChunkBiomesBuilder::new);
+        }
+
+        /**
+         * Loads the biomes for multiple columns in a square region at once.
+         *
+         * @see IEarthAsyncPipelineStep#getRegionFutures(ChunkPos, int, BitSet, GeneratorDatasets, IEarthAsyncPipelineStep[], int[][], java.util.function.Supplier)
+         */
+        public CompletableFuture<ImmutableCompactArray<Biome>>[] loadRegion(@NonNull ChunkPos min, int size, @NonNull BitSet columns) {
+            return IEarthAsyncPipelineStep.getRegionFutures(min, size, columns, this.datasets, this.filters, this.filterDependencies, ChunkBiomesBuilder::new);
         }
     }
 }
\ No newline at end of file
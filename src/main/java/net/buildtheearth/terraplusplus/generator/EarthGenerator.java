@@ -1,8 +1,6 @@
 package net.buildtheearth.terraplusplus.generator;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
 import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
 import io.github.opencubicchunks.cubicchunks.api.world.ICube;
@@ -23,16 +21,25 @@ import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.IBiom
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure.CubicCaveGenerator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure.CubicRavineGenerator;
 import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.structure.feature.CubicStrongholdGenerator;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import lombok.NonNull;
 import lombok.val;
+import net.buildtheearth.terraplusplus.TerraConfig;
 import net.buildtheearth.terraplusplus.TerraConstants;
 import net.buildtheearth.terraplusplus.TerraMod;
 import net.buildtheearth.terraplusplus.generator.data.IEarthDataBaker;
 import net.buildtheearth.terraplusplus.generator.populate.IEarthPopulator;
 import net.buildtheearth.terraplusplus.projection.GeographicProjection;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraplusplus.util.ColumnCache;
+import net.buildtheearth.terraplusplus.util.ColumnReadiness;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
 import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.init.Blocks;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.text.TextComponentString;
@@ -50,18 +57,23 @@ import net.minecraftforge.fml.common.gameevent.PlayerEvent;
 import net.minecraftforge.fml.common.registry.ForgeRegistries;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.lang.Math.*;
+import static net.daporkchop.lib.common.math.PMath.*;
 import static net.daporkchop.lib.common.util.PValidation.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 public class EarthGenerator extends BasicCubeGenerator {
     public static final int WATER_DEPTH_OFFSET = 1;
@@ -102,7 +114,7 @@ public class EarthGenerator extends BasicCubeGenerator {
             if (cubeGenerator instanceof EarthGenerator) {
                 //prefetch terrain data
                 try {
-                    ((EarthGenerator) cubeGenerator).cache.getUnchecked(pos);
+                    ((EarthGenerator) cubeGenerator).cache.get(pos);
                 } catch (Exception e) {
                     //i don't think it's possible any more for an exception to be thrown here, but if one does get thrown somehow this will prevent it
                     //  from screwing up the CC async cube/column loading
@@ -129,7 +141,17 @@ public class EarthGenerator extends BasicCubeGenerator {
 
     public final GeneratorDatasets datasets;
 
-    public final LoadingCache<ChunkPos, CompletableFuture<CachedChunkData>> cache;
+    public final ChunkDataLoader loader;
+    public final ColumnCache<CachedChunkData> cache;
+    protected final ColumnReadiness readiness = new ColumnReadiness();
+
+    public final AdmissionController admission = new AdmissionController();
+    public final Prefetcher prefetcher = new Prefetcher(this);
+    private boolean prefetching;
+
+    protected final Long2ObjectMap<ColumnPriority> pendingPriorities = new Long2ObjectOpenHashMap<>();
+    volatile long[] playerColumns = new long[0];
+    volatile long playerColumnsTick = -1L;
 
     public EarthGenerator(World world) {
         super(world);
@@ -141,10 +163,12 @@ public class EarthGenerator extends BasicCubeGenerator {
         this.biomes = world.getBiomeProvider();
 
         this.datasets = this.settings.datasets();
-        this.cache = CacheBuilder.newBuilder()
-                .expireAfterAccess(5L, TimeUnit.MINUTES)
-                .softValues()
-                .build(new ChunkDataLoader(this.settings));
+        this.loader = new ChunkDataLoader(this.settings);
+        this.cache = new ColumnCache<>(TerraConfig.data.cacheSize, this::loadColumn, this.readiness);
+
+        if (this.biomes instanceof EarthBiomeProvider) { //allow the biome provider to reuse the biomes of columns we've already generated
+            ((EarthBiomeProvider) this.biomes).attach(this.cache);
+        }
 
         //structures
         for (val caveConfig : this.cubiccfg.caves) {
@@ -225,6 +249,161 @@ public class EarthGenerator extends BasicCubeGenerator {
         }
     }
 
+    protected CompletableFuture<CachedChunkData> loadColumn(long key) {
+        ColumnPriority priority = new ColumnPriority(this, (int) key, (int) (key >>> 32), this.isServerThread() && !this.prefetching);
+        CompletableFuture<CachedChunkData> future = Http.withPriority(priority, () -> this.loadColumn0(key));
+        this.registerPriority(key, priority, future);
+        return future;
+    }
+
+    /**
+     * Makes the given {@link ColumnPriority} available to {@link #getDemanded(int, int)} until the given column's data has been loaded.
+     */
+    protected void registerPriority(long key, @NonNull ColumnPriority priority, @NonNull CompletableFuture<CachedChunkData> future) {
+        synchronized (this.pendingPriorities) {
+            this.pendingPriorities.put(key, priority);
+        }
+        future.whenComplete((data, t) -> {
+            synchronized (this.pendingPriorities) {
+                if (this.pendingPriorities.get(key) == priority) {
+                    this.pendingPriorities.remove(key);
+                }
+            }
+        });
+    }
+
+    protected CompletableFuture<CachedChunkData> loadColumn0(long key) {
+        int x = (int) key;
+        int z = (int) (key >>> 32);
+
+        int size = TerraConfig.data.regionSize;
+        if (size <= 1) { //region loading is disabled
+            return this.admission.submit(1, Http.currentPriority(), () -> this.loader.load(new ChunkPos(x, z)));
+        }
+
+        //load all of the columns in the surrounding region which aren't already cached
+        int minX = Math.floorDiv(x, size) * size;
+        int minZ = Math.floorDiv(z, size) * size;
+        int index = (x - minX) * size + (z - minZ);
+
+        BitSet columns = new BitSet(size * size);
+        for (int i = 0, dx = 0; dx < size; dx++) {
+            for (int dz = 0; dz < size; dz++, i++) {
+                if (i == index || this.cache.getIfPresent(ChunkPos.asLong(minX + dx, minZ + dz)) == null) {
+                    columns.set(i);
+                }
+            }
+        }
+
+        //the region may have to wait for admission, so we insert placeholder futures into the cache for now. each of them gets its own priority, so
+        //  that the server can demand any column in the region, and the region as a whole is as urgent as its most urgent column.
+        CompletableFuture<CachedChunkData>[] futures = uncheckedCast(new CompletableFuture[size * size]);
+        List<RequestPriority> priorities = new ArrayList<>(columns.cardinality());
+        priorities.add(Http.currentPriority());
+        for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+            futures[i] = new CompletableFuture<>();
+            if (i != index) {
+                long neighborKey = ChunkPos.asLong(minX + i / size, minZ + i % size);
+                if (this.cache.putIfAbsent(neighborKey, futures[i]) == null) {
+                    ColumnPriority priority = new ColumnPriority(this, minX + i / size, minZ + i % size, false);
+                    this.registerPriority(neighborKey, priority, futures[i]);
+                    priorities.add(priority);
+                }
+            }
+        }
+
+        this.admission.submit(columns.cardinality(), new RegionPriority(priorities.toArray(new RequestPriority[0])), () -> {
+            CompletableFuture<CachedChunkData>[] loaded = this.loader.loadRegion(new ChunkPos(minX, minZ), size, columns);
+            for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+                CompletableFuture<CachedChunkData> placeholder = futures[i];
+                loaded[i].whenComplete((data, t) -> {
+                    if (t != null) {
+                        placeholder.completeExceptionally(t);
+                    } else {
+                        placeholder.complete(data);
+                    }
+                });
+            }
+            return CompletableFuture.allOf(Arrays.stream(loaded).filter(Objects::nonNull).toArray(CompletableFuture[]::new));
+        }).whenComplete((unused, t) -> {
+            if (t != null) { //the region was shed or failed to load, make sure none of the placeholders are left incomplete
+                for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+                    futures[i].completeExceptionally(t);
+                }
+            }
+        });
+        return futures[index];
+    }
+
+    /**
+     * Starts loading the data for the given column without marking it as being waited on by the server. Must be called from the server thread.
+     *
+     * @see Prefetcher
+     */
+    protected CompletableFuture<CachedChunkData> prefetch(long key) {
+        this.prefetching = true;
+        try {
+            return this.cache.get(key);
+        } finally {
+            this.prefetching = false;
+        }
+    }
+
+    /**
+     * Gets the {@link CompletableFuture} for the data for the given column, and marks the column as being waited on by the server.
+     * <p>
+     * If loading the column's data was previously cancelled, it will be loaded again.
+     */
+    protected CompletableFuture<CachedChunkData> getDemanded(int x, int z) {
+        boolean serverThread = this.isServerThread();
+        long key = ChunkPos.asLong(x, z);
+        if (serverThread) {
+            this.updatePlayerColumns();
+            this.prefetcher.demanded(key);
+        }
+
+        CompletableFuture<CachedChunkData> future = this.cache.get(key);
+        if (future.isCompletedExceptionally() && Http.isCancellation(future.handle((data, t) -> t).join())) {
+            this.cache.invalidate(key);
+            future = this.cache.get(key);
+        }
+
+        if (serverThread && !future.isDone()) {
+            ColumnPriority priority;
+            synchronized (this.pendingPriorities) {
+                priority = this.pendingPriorities.get(key);
+            }
+            if (priority != null) {
+                priority.demand();
+            }
+        }
+        return future;
+    }
+
+    protected boolean isServerThread() {
+        MinecraftServer server = this.world.getMinecraftServer();
+        return server != null && server.isCallingFromMinecraftThread();
+    }
+
+    /**
+     * Updates the snapshot of the positions of all players in the world used by {@link ColumnPriority}. Must be called from the server thread.
+     */
+    protected void updatePlayerColumns() {
+        long tick = this.world.getTotalWorldTime();
+        if (this.playerColumnsTick == tick) { //only update once per tick
+            return;
+        }
+
+        List<EntityPlayer> players = this.world.playerEntities;
+        long[] playerColumns = new long[players.size()];
+        for (int i = 0; i < playerColumns.length; i++) {
+            EntityPlayer player = players.get(i);
+            playerColumns[i] = ChunkPos.asLong(floorI(player.posX) >> 4, floorI(player.posZ) >> 4);
+        }
+        this.playerColumns = playerColumns;
+        this.playerColumnsTick = tick;
+    }
+
     @Override
     public boolean supportsConcurrentColumnGeneration() {
         return true;
@@ -232,7 +411,11 @@ public class EarthGenerator extends BasicCubeGenerator {
 
     @Override
     public GeneratorReadyState pollAsyncColumnGenerator(int chunkX, int chunkZ) {
-        CompletableFuture<CachedChunkData> future = this.cache.getUnchecked(new ChunkPos(chunkX, chunkZ));
+        if (this.readiness.isReady(chunkX, chunkZ)) { //fast path: the column's data is already loaded
+            return GeneratorReadyState.READY;
+        }
+
+        CompletableFuture<CachedChunkData> future = this.getDemanded(chunkX, chunkZ);
         if (!future.isDone()) {
             return GeneratorReadyState.WAITING;
         } else if (future.isCompletedExceptionally()) {
@@ -244,13 +427,13 @@ public class EarthGenerator extends BasicCubeGenerator {
 
     @Override
     public void generateColumn(Chunk column) { //legacy compat method
-        CachedChunkData data = this.cache.getUnchecked(column.getPos()).join();
+        CachedChunkData data = this.getDemanded(column.x, column.z).join();
         this.generateColumn(column, data);
     }
 
     @Override
     public Optional<Chunk> tryGenerateColumn(World world, int columnX, int columnZ, ChunkPrimer primer, boolean forceGenerate) {
-        CompletableFuture<CachedChunkData> future = this.cache.getUnchecked(new ChunkPos(columnX, columnZ));
+        CompletableFuture<CachedChunkData> future = this.getDemanded(columnX, columnZ);
         if (!forceGenerate && (!future.isDone() || future.isCompletedExceptionally())) {
             return Optional.empty();
         }
@@ -273,14 +456,14 @@ public class EarthGenerator extends BasicCubeGenerator {
     @Override
     public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ) { //legacy compat method
         CubePrimer primer = new CubePrimer();
-        CachedChunkData data = this.cache.getUnchecked(new ChunkPos(cubeX, cubeZ)).join();
+        CachedChunkData data = this.getDemanded(cubeX, cubeZ).join();
         this.generateCube(cubeX, cubeY, cubeZ, primer, data);
         return primer;
     }
 
     @Override
     public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ, CubePrimer primer) { //legacy compat method
-        CachedChunkData data = this.cache.getUnchecked(new ChunkPos(cubeX, cubeZ)).join();
+        CachedChunkData data = this.getDemanded(cubeX, cubeZ).join();
         this.generateCube(cubeX, cubeY, cubeZ, primer, data);
         return primer;
     }
@@ -292,7 +475,7 @@ public class EarthGenerator extends BasicCubeGenerator {
 
     @Override
     public Optional<CubePrimer> tryGenerateCube(int cubeX, int cubeY, int cubeZ, CubePrimer primer, boolean forceGenerate) {
-        CompletableFuture<CachedChunkData> future = this.cache.getUnchecked(new ChunkPos(cubeX, cubeZ));
+        CompletableFuture<CachedChunkData> future = this.getDemanded(cubeX, cubeZ);
         if (!forceGenerate && (!future.isDone() || future.isCompletedExceptionally())) {
             return Optional.empty();
         }
@@ -326,74 +509,44 @@ public class EarthGenerator extends BasicCubeGenerator {
         IBlockState stone = Blocks.STONE.getDefaultState();
         IBlockState water = Blocks.WATER.getDefaultState();
         if (data.belowSurface(cubeY + 2)) { //below surface -> solid stone (padding of 2 cubes because some replacers might need it)
-            //technically, i could reflectively get access to the primer's underlying char[] and use Arrays.fill(), because this
-            // implementation causes 4096 calls to ObjectIntIdentityMap#get() when only 1 would be necessary...
-            for (int x = 0; x < 16; x++) {
-                for (int y = 0; y < 16; y++) {
-                    for (int z = 0; z < 16; z++) {
-                        primer.setBlockState(x, y, z, stone);
-                    }
-                }
-            }
+            CubePrimers.fillCube(primer, stone);
         } else if (data.aboveSurface(cubeY)) { //above surface -> air (no padding here, replacers don't normally affect anything above the surface)
         } else {
-            IBlockState grass = Blocks.GRASS.getDefaultState();
-            IBlockState dirt = Blocks.DIRT.getDefaultState();
+            //run the replacers over the surface band (or reuse the results from a previous cube in this column)
+            this.surfaceStrata(cubeX, cubeZ, data).fill(primer, cubeY);
 
             for (int x = 0; x < 16; x++) {
                 for (int z = 0; z < 16; z++) {
-                    int groundHeight = data.groundHeight(x, z);
-                    int waterHeight = data.waterHeight(x, z);
-
-                    //horizontal density change is calculated using the top height rather than the ground height
-                    int topHeight = data.surfaceHeight(x, z);
-                    double dx = x == 15 ? topHeight - data.surfaceHeight(x - 1, z) : data.surfaceHeight(x + 1, z) - topHeight;
-                    double dz = z == 15 ? topHeight - data.surfaceHeight(x, z - 1) : data.surfaceHeight(x, z + 1) - topHeight;
-
-                    int groundTop = groundHeight - Coords.cubeToMinBlock(cubeY);
-                    int groundTopInCube = min(groundTop, 15);
-                    int waterTop = min(waterHeight - Coords.cubeToMinBlock(cubeY), 15);
-
-                    int blockX = Coords.cubeToMinBlock(cubeX) + x;
-                    int blockZ = Coords.cubeToMinBlock(cubeZ) + z;
-
-                    Biome biome = Biome.getBiomeForId(data.biome(x, z));
-                    IBiomeBlockReplacer[] replacers = this.biomeBlockReplacers.get(biome);
-                    for (int y = 0; y <= groundTopInCube; y++) {
-                        int blockY = Coords.cubeToMinBlock(cubeY) + y;
-                        double density = groundTop - y;
-                        IBlockState state = stone;
-                        for (IBiomeBlockReplacer replacer : replacers) {
-                            state = replacer.getReplacedBlock(state, biome, blockX, blockY, blockZ, dx, -1.0d, dz, density);
-                        }
-
-                        //calling this explicitly increases the likelihood of JIT inlining it
-                        //(for reference: previously, CliffReplacer was manually added to each biome as the last replacer)
-                        state = CliffReplacer.INSTANCE.getReplacedBlock(state, biome, blockX, blockY, blockZ, dx, -1.0d, dz, density);
-
-                        if (groundHeight < waterHeight && state == grass) { //hacky workaround for underwater grass
-                            state = dirt;
-                        }
-
-                        primer.setBlockState(x, y, z, state);
-                    }
+                    int groundTopInCube = min(data.groundHeight(x, z) - Coords.cubeToMinBlock(cubeY), 15);
+                    int waterTop = min(data.waterHeight(x, z) - Coords.cubeToMinBlock(cubeY), 15);
 
                     //fill water
-                    for (int y = max(groundTopInCube + 1, 0); y <= waterTop; y++) {
-                        primer.setBlockState(x, y, z, water);
-                    }
+                    CubePrimers.fillColumn(primer, x, z, max(groundTopInCube + 1, 0), waterTop, water);
                 }
             }
         }
     }
 
+    SurfaceStrata surfaceStrata(int chunkX, int chunkZ, @NonNull CachedChunkData data) {
+        SurfaceStrata strata = data.surfaceStrata;
+        if (strata == null || strata.generator != this) { //if multiple threads get here at once they'll all compute the same strata, which is harmless
+            data.surfaceStrata = strata = SurfaceStrata.build(this, data, chunkX, chunkZ);
+        }
+        return strata;
+    }
+
     @Override
     public GeneratorReadyState pollAsyncCubePopulator(int cubeX, int cubeY, int cubeZ) {
         //ensure that all columns required for population are ready to go
         // checking all neighbors here improves performance when checking if a cube can be generated
+        if (this.readiness.allReady(cubeX - 1, cubeZ - 1, cubeX + 1, cubeZ + 1)) { //fast path: all of the columns are already loaded
+            return GeneratorReadyState.READY;
+        }
+
+        //at least one column isn't ready yet, so we need to check the cache (which also marks the columns as being waited on)
         for (int dx = -1; dx <= 1; dx++) {
             for (int dz = -1; dz <= 1; dz++) {
-                CompletableFuture<CachedChunkData> future = this.cache.getUnchecked(new ChunkPos(cubeX + dx, cubeZ + dz));
+                CompletableFuture<CachedChunkData> future = this.getDemanded(cubeX + dx, cubeZ + dz);
                 if (!future.isDone()) {
                     return GeneratorReadyState.WAITING;
                 } else if (future.isCompletedExceptionally()) {
@@ -414,7 +567,7 @@ public class EarthGenerator extends BasicCubeGenerator {
         CachedChunkData[] datas = new CachedChunkData[2 * 2];
         for (int i = 0, dx = 0; dx < 2; dx++) {
             for (int dz = 0; dz < 2; dz++) {
-                datas[i++] = this.cache.getUnchecked(new ChunkPos(cube.getX() + dx, cube.getZ() + dz)).join();
+                datas[i++] = this.getDemanded(cube.getX() + dx, cube.getZ() + dz).join();
             }
         }
 
@@ -459,15 +612,81 @@ public class EarthGenerator extends BasicCubeGenerator {
     public static class ChunkDataLoader extends CacheLoader<ChunkPos, CompletableFuture<CachedChunkData>> {
         protected final GeneratorDatasets datasets;
         protected final IEarthDataBaker<?>[] bakers;
+        protected final int[][] bakerDependencies;
+        protected final ChunkDataStore store;
 
         public ChunkDataLoader(@NonNull EarthGeneratorSettings settings) {
             this.datasets = settings.datasets();
             this.bakers = EarthGeneratorPipelines.dataBakers(settings);
+            this.bakerDependencies = IEarthAsyncPipelineStep.bakeDependencies(this.bakers);
+            this.store = ChunkDataStore.forSettings(settings);
         }
 
         @Override
         public CompletableFuture<CachedChunkData> load(@NonNull ChunkPos pos) {
-            return IEarthAsyncPipelineStep.getFuture(pos, this.datasets, this.bakers, CachedChunkData::builder);
+            if (this.store == null) { //persistent store is disabled
+                return this.generate(pos);
+            }
+
+            RequestPriority priority = Http.currentPriority();
+            return this.store.load(pos).thenCompose(stored -> {
+                if (stored != null) {
+                    return CompletableFuture.completedFuture(stored);
+                }
+
+                CompletableFuture<CachedChunkData> future = Http.withPriority(priority, () -> this.generate(pos));
+                future.thenAccept(data -> this.store.save(pos, data));
+                return future;
+            });
+        }
+
+        /**
+         * Loads the data for multiple columns in a square region at once.
+         *
+         * @see IEarthAsyncPipelineStep#getRegionFutures(ChunkPos, int, BitSet, GeneratorDatasets, IEarthAsyncPipelineStep[], int[][], Supplier)
+         */
+        public CompletableFuture<CachedChunkData>[] loadRegion(@NonNull ChunkPos min, int size, @NonNull BitSet columns) {
+            if (this.store == null) { //persistent store is disabled
+                return IEarthAsyncPipelineStep.getRegionFutures(min, size, columns, this.datasets, this.bakers, this.bakerDependencies, CachedChunkData::newBuilder);
+            }
+
+            //check the store for each column first, and then generate all of the columns which weren't stored in a single pass
+            CompletableFuture<CachedChunkData>[] stored = uncheckedCast(new CompletableFuture[size * size]);
+            for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+                stored[i] = this.store.load(new ChunkPos(min.x + i / size, min.z + i % size));
+            }
+
+            RequestPriority priority = Http.currentPriority();
+            CompletableFuture<CompletableFuture<CachedChunkData>[]> generated = CompletableFuture.allOf(Arrays.stream(stored).filter(Objects::nonNull).toArray(CompletableFuture[]::new))
+                    .thenApply(unused -> {
+                        BitSet missing = new BitSet(size * size);
+                        for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+                            if (stored[i].join() == null) {
+                                missing.set(i);
+                            }
+                        }
+
+                        CompletableFuture<CachedChunkData>[] futures = Http.withPriority(priority, () ->
+                                IEarthAsyncPipelineStep.getRegionFutures(min, size, missing, this.datasets, this.bakers, this.bakerDependencies, CachedChunkData::newBuilder));
+                        for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                            ChunkPos pos = new ChunkPos(min.x + i / size, min.z + i % size);
+                            futures[i].thenAccept(data -> this.store.save(pos, data));
+                        }
+                        return futures;
+                    });
+
+            CompletableFuture<CachedChunkData>[] out = uncheckedCast(new CompletableFuture[size * size]);
+            for (int index = columns.nextSetBit(0); index >= 0; index = columns.nextSetBit(index + 1)) {
+                int i = index;
+                out[i] = stored[i].thenCompose(data -> data != null
+                        ? CompletableFuture.completedFuture(data)
+                        : generated.thenCompose(futures -> futures[i]));
+            }
+            return out;
+        }
+
+        protected CompletableFuture<CachedChunkData> generate(@NonNull ChunkPos pos) {
+            return IEarthAsyncPipelineStep.getFuture(pos, this.datasets, this.bakers, this.bakerDependencies, CachedChunkData::newBuilder);
         }
     }
 }
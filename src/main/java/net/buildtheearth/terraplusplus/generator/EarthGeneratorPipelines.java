@@ -28,6 +28,7 @@ import net.buildtheearth.terraplusplus.generator.populate.CompatibilityEarthPopu
 import net.buildtheearth.terraplusplus.generator.populate.IEarthPopulator;
 import net.buildtheearth.terraplusplus.generator.populate.SnowPopulator;
 import net.buildtheearth.terraplusplus.generator.populate.TreePopulator;
+import net.buildtheearth.terraplusplus.util.CustomAttributeKey;
 import net.buildtheearth.terraplusplus.util.OrderedRegistry;
 import net.minecraftforge.common.MinecraftForge;
 
@@ -53,11 +54,19 @@ public class EarthGeneratorPipelines {
 
     public final String KEY_DATA_TREE_COVER = "tree_cover";
 
+    public final CustomAttributeKey<byte[]> ATTRIBUTE_TREE_COVER = CustomAttributeKey.of(KEY_DATA_TREE_COVER);
+
     private <T> T[] fire(@NonNull InitEarthRegistryEvent<T> event) {
         MinecraftForge.TERRAIN_GEN_BUS.post(event);
         return event.registry().entryStream().map(Map.Entry::getValue).toArray(i -> uncheckedCast(Array.newInstance(event.getGenericType(), i)));
     }
 
+    private <T> T[] fireAndRegisterStats(@NonNull String kind, @NonNull InitEarthRegistryEvent<T> event) {
+        T[] values = fire(event);
+        event.registry().entryStream().forEach(entry -> PipelineStats.register(kind, entry.getKey(), entry.getValue()));
+        return values;
+    }
+
     public Map<String, Object> datasets(@NonNull EarthGeneratorSettings settings) {
         InitDatasetsEvent event = new InitDatasetsEvent(settings);
 
@@ -77,14 +86,14 @@ public class EarthGeneratorPipelines {
     }
 
     public IEarthBiomeFilter<?>[] biomeFilters(@NonNull EarthGeneratorSettings settings) {
-        return fire(new InitEarthRegistryEvent<IEarthBiomeFilter>(settings,
+        return fireAndRegisterStats("biome_filter", new InitEarthRegistryEvent<IEarthBiomeFilter>(settings,
                 uncheckedCast(new OrderedRegistry<IEarthBiomeFilter<?>>()
                         .addLast("legacy_terra121", new Terra121BiomeFilter())
                         .addLast("biome_overrides", new UserOverrideBiomeFilter(settings.projection())))) {});
     }
 
     public IEarthDataBaker<?>[] dataBakers(@NonNull EarthGeneratorSettings settings) {
-        return fire(new InitEarthRegistryEvent<IEarthDataBaker>(settings,
+        return fireAndRegisterStats("data_baker", new InitEarthRegistryEvent<IEarthDataBaker>(settings,
                 uncheckedCast(new OrderedRegistry<IEarthDataBaker<?>>()
                         .addLast("initial_biomes", new InitialBiomesBaker(settings.biomeProvider()))
                         .addLast("tree_cover", new TreeCoverBaker())
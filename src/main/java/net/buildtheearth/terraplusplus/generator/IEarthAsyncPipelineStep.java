@@ -1,14 +1,22 @@
 package net.buildtheearth.terraplusplus.generator;
 
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import net.buildtheearth.terraplusplus.TerraMod;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraplusplus.util.CornerBoundingBox2d;
 import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
+import net.buildtheearth.terraplusplus.util.concurrent.TerraExecutors;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
 import net.minecraft.util.math.ChunkPos;
 
-import java.util.Arrays;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -19,9 +27,19 @@ import static net.daporkchop.lib.common.util.PorkUtil.*;
  * @author DaPorkchop_
  */
 public interface IEarthAsyncPipelineStep<D, V, B extends IEarthAsyncDataBuilder<V>> {
-    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> getFuture(ChunkPos pos, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, Supplier<B> builderFactory) {
+    /**
+     * Asynchronously builds the data for a single column.
+     *
+     * @param pos          the position of the column
+     * @param steps        the pipeline's steps
+     * @param dependencies the dependencies between the pipeline's steps, as returned by {@link #bakeDependencies(IEarthAsyncPipelineStep[])}
+     * @return a {@link CompletableFuture} which will be completed with the built value
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> getFuture(ChunkPos pos, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, int[][] dependencies, Supplier<B> builderFactory) {
         //i used the future to create the future
-        return CompletableFuture.supplyAsync(() -> {
+        RequestPriority priority = Http.currentPriority();
+        //if we're already on a bake thread, there's no need to hop to another one
+        return TerraExecutors.BAKE.supply(() -> Http.withPriority(priority, () -> {
             int baseX = Coords.cubeToMinBlock(pos.x);
             int baseZ = Coords.cubeToMinBlock(pos.z);
 
@@ -32,36 +50,211 @@ public interface IEarthAsyncPipelineStep<D, V, B extends IEarthAsyncDataBuilder<
 
                 for (int i = 0; i < steps.length; i++) {
                     try {
+                        long startTime = System.nanoTime();
                         futures[i] = steps[i].requestData(pos, datasets, chunkBounds, chunkBoundsGeo);
+                        PipelineStats.requested(steps[i], futures[i], startTime);
                     } catch (OutOfProjectionBoundsException ignored) {
                     }
                 }
             } catch (OutOfProjectionBoundsException ignored) {
             }
 
-            boolean areAnyFuturesNull = Arrays.stream(futures).anyMatch(Objects::isNull);
-            CompletableFuture<?>[] nonNullFutures = areAnyFuturesNull
-                    ? Arrays.stream(futures).filter(Objects::nonNull).toArray(CompletableFuture[]::new)
-                    : futures;
-
-            CompletableFuture<V> future = (nonNullFutures.length != 0 ? CompletableFuture.allOf(nonNullFutures) : CompletableFuture.completedFuture(null))
-                    .thenApply(unused -> {
-                        B builder = builderFactory.get();
-
-                        for (int i = 0; i < steps.length; i++) {
-                            CompletableFuture<?> stepFuture = futures[i];
-                            steps[i].bake(pos, builder, stepFuture != null ? uncheckedCast(stepFuture.join()) : null);
-                        }
-
-                        return builder.build();
-                    });
-            future.whenComplete((data, t) -> {
-                if (t != null) {
-                    TerraMod.LOGGER.error("async exception while loading data", t);
+            return bakeWhenReady(pos, futures, steps, dependencies, builderFactory);
+        })).thenCompose(Function.identity());
+    }
+
+    /**
+     * Asynchronously builds the data for multiple columns in a square region at once.
+     * <p>
+     * Steps which override {@link #requestRegionData(ChunkPos, int, BitSet, GeneratorDatasets, Bounds2d, CornerBoundingBox2d)} are able to fetch the data
+     * for the entire region in a single pass, rather than repeating mostly identical work for each individual column.
+     *
+     * @param min          the position of the column in the region with the lowest coordinates
+     * @param size         the number of columns along each horizontal axis of the region
+     * @param columns      the indices of the columns to build, where a column's index is {@code dx * size + dz}
+     * @param steps        the pipeline's steps
+     * @param dependencies the dependencies between the pipeline's steps, as returned by {@link #bakeDependencies(IEarthAsyncPipelineStep[])}
+     * @return an array of {@link CompletableFuture}s, indexed by column index. Elements for columns which were not requested will be {@code null}
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V>[] getRegionFutures(ChunkPos min, int size, BitSet columns, GeneratorDatasets datasets, IEarthAsyncPipelineStep<?, V, B>[] steps, int[][] dependencies, Supplier<B> builderFactory) {
+        RequestPriority priority = Http.currentPriority();
+        CompletableFuture<CompletableFuture<?>[][]> requests = TerraExecutors.BAKE.supply(() -> Http.withPriority(priority, () -> {
+            CompletableFuture<?>[][] stepFutures = new CompletableFuture[steps.length][];
+
+            Bounds2d regionBounds = null;
+            CornerBoundingBox2d regionBoundsGeo = null;
+            try {
+                int baseX = Coords.cubeToMinBlock(min.x);
+                int baseZ = Coords.cubeToMinBlock(min.z);
+                regionBounds = Bounds2d.of(baseX, baseX + 16 * size, baseZ, baseZ + 16 * size);
+                regionBoundsGeo = regionBounds.toCornerBB(datasets.projection(), false).toGeo();
+            } catch (OutOfProjectionBoundsException ignored) { //the region isn't entirely within the projection bounds, load each column individually
+            }
+
+            for (int i = 0; i < steps.length; i++) {
+                if (regionBoundsGeo != null) {
+                    try {
+                        long startTime = System.nanoTime();
+                        stepFutures[i] = steps[i].requestRegionData(min, size, columns, datasets, regionBounds, regionBoundsGeo);
+                        PipelineStats.requested(steps[i], stepFutures[i], startTime);
+                        continue;
+                    } catch (OutOfProjectionBoundsException ignored) {
+                    }
+                }
+                long startTime = System.nanoTime();
+                stepFutures[i] = requestDataForEachColumn(steps[i], min, size, columns, datasets);
+                PipelineStats.requested(steps[i], stepFutures[i], startTime);
+            }
+            return stepFutures;
+        }));
+
+        CompletableFuture<V>[] out = uncheckedCast(new CompletableFuture[size * size]);
+        for (int index = columns.nextSetBit(0); index >= 0; index = columns.nextSetBit(index + 1)) {
+            ChunkPos pos = new ChunkPos(min.x + index / size, min.z + index % size);
+            int i = index;
+            out[i] = requests.thenCompose(stepFutures -> {
+                CompletableFuture<?>[] futures = new CompletableFuture[steps.length];
+                for (int step = 0; step < steps.length; step++) {
+                    futures[step] = stepFutures[step][i];
                 }
+                return bakeWhenReady(pos, futures, steps, dependencies, builderFactory);
             });
-            return future;
-        }).thenCompose(Function.identity());
+        }
+        return out;
+    }
+
+    /**
+     * Fetches the data required to bake each of the given columns in a region by calling
+     * {@link #requestData(ChunkPos, GeneratorDatasets, Bounds2d, CornerBoundingBox2d)} for each column individually.
+     *
+     * @see #requestRegionData(ChunkPos, int, BitSet, GeneratorDatasets, Bounds2d, CornerBoundingBox2d)
+     */
+    static <D> CompletableFuture<D>[] requestDataForEachColumn(IEarthAsyncPipelineStep<D, ?, ?> step, ChunkPos min, int size, BitSet columns, GeneratorDatasets datasets) {
+        CompletableFuture<D>[] futures = uncheckedCast(new CompletableFuture[size * size]);
+        for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+            ChunkPos pos = new ChunkPos(min.x + i / size, min.z + i % size);
+            int baseX = Coords.cubeToMinBlock(pos.x);
+            int baseZ = Coords.cubeToMinBlock(pos.z);
+
+            try {
+                Bounds2d chunkBounds = Bounds2d.of(baseX, baseX + 16, baseZ, baseZ + 16);
+                futures[i] = step.requestData(pos, datasets, chunkBounds, chunkBounds.toCornerBB(datasets.projection(), false).toGeo());
+            } catch (OutOfProjectionBoundsException ignored) {
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Splits a grid of samples taken over an entire region into separate 16x16 grids for each column.
+     *
+     * @param regionFuture a {@link CompletableFuture} which will be completed with {@code (size * 16)²} samples, in XZ order
+     * @param size         the number of columns along each horizontal axis of the region
+     * @return an array of {@link CompletableFuture}s, indexed by column index, which will be completed with the samples for each column
+     */
+    static CompletableFuture<double[]>[] splitRegionSamples(CompletableFuture<double[]> regionFuture, int size) {
+        CompletableFuture<double[]>[] futures = uncheckedCast(new CompletableFuture[size * size]);
+        for (int dx = 0; dx < size; dx++) {
+            for (int dz = 0; dz < size; dz++) {
+                int offsetX = dx << 4;
+                int offsetZ = dz << 4;
+                futures[dx * size + dz] = regionFuture.thenApply(region -> {
+                    if (region == null) {
+                        return null;
+                    }
+
+                    double[] out = new double[16 * 16];
+                    for (int x = 0; x < 16; x++) {
+                        System.arraycopy(region, (offsetX + x) * (size << 4) + offsetZ, out, x * 16, 16);
+                    }
+                    return out;
+                });
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Bakes the data for the given column.
+     * <p>
+     * Each step is baked as soon as its own data is available and every previous step it depends on (as determined by
+     * {@link #bakeDependencies(IEarthAsyncPipelineStep[])}) has been baked, so steps which don't depend on each other may be baked in parallel.
+     * <p>
+     * Steps are baked on {@link TerraExecutors#BAKE}, unless they are {@link #bakeInline() cheap enough to be baked inline}, or everything they need is
+     * already available and the current thread already belongs to {@link TerraExecutors#BAKE}.
+     *
+     * @param pos            the position of the column
+     * @param futures        the {@link CompletableFuture}s which will be completed with the data for each step. Elements may be {@code null}, in which
+     *                       case the step will be given {@code null} data
+     * @param dependencies   the dependencies between the steps, as returned by {@link #bakeDependencies(IEarthAsyncPipelineStep[])}
+     * @param builderFactory a {@link Supplier} which returns a new builder. As the builder may be accessed by multiple threads, it must not be shared
+     *                       with anything else
+     * @return a {@link CompletableFuture} which will be completed with the built value
+     */
+    static <V, B extends IEarthAsyncDataBuilder<V>> CompletableFuture<V> bakeWhenReady(ChunkPos pos, CompletableFuture<?>[] futures, IEarthAsyncPipelineStep<?, V, B>[] steps, int[][] dependencies, Supplier<B> builderFactory) {
+        B builder = builderFactory.get();
+
+        CompletableFuture<?>[] bakes = new CompletableFuture[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            List<CompletableFuture<?>> inputs = new ArrayList<>(dependencies[i].length + 1);
+            if (futures[i] != null) {
+                inputs.add(futures[i]);
+            }
+            for (int dependency : dependencies[i]) {
+                inputs.add(bakes[dependency]);
+            }
+
+            IEarthAsyncPipelineStep<?, V, B> step = steps[i];
+            CompletableFuture<?> stepFuture = futures[i];
+            CompletableFuture<Void> ready = inputs.isEmpty() ? CompletableFuture.completedFuture(null) : CompletableFuture.allOf(inputs.toArray(new CompletableFuture[0]));
+            Function<Void, Void> bake = unused -> {
+                long startTime = System.nanoTime();
+                step.bake(pos, builder, stepFuture != null ? uncheckedCast(stepFuture.join()) : null);
+                PipelineStats.baked(step, System.nanoTime() - startTime);
+                return null;
+            };
+            bakes[i] = step.bakeInline() ? ready.thenApply(bake) : TerraExecutors.BAKE.thenApply(ready, bake);
+        }
+
+        CompletableFuture<Void> baked = bakes.length != 0 ? CompletableFuture.allOf(bakes) : CompletableFuture.completedFuture(null);
+        CompletableFuture<V> future = TerraExecutors.BAKE.thenApply(baked, unused -> builder.build());
+        future.whenComplete((data, t) -> {
+            if (t != null && !Http.isCancellation(t)) {
+                TerraMod.LOGGER.error("async exception while loading data", t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Determines which of the given steps must be baked before each step.
+     * <p>
+     * A step depends on every previous step which writes a field it reads or writes, or which reads a field it writes. Steps which don't declare their
+     * {@link #reads()} and {@link #writes()} depend on, and are depended on by, every other step, so they are always baked in registration order.
+     * <p>
+     * The result only depends on the steps themselves, so it should be computed once for each pipeline rather than for every column.
+     *
+     * @param steps the steps
+     * @return the indices of the previous steps which each step depends on
+     */
+    static int[][] bakeDependencies(IEarthAsyncPipelineStep<?, ?, ?>[] steps) {
+        int[][] dependencies = new int[steps.length][];
+        for (int i = 0; i < steps.length; i++) {
+            Set<String> reads = steps[i].reads();
+            Set<String> writes = steps[i].writes();
+
+            IntList stepDependencies = new IntArrayList();
+            for (int j = 0; j < i; j++) {
+                Set<String> previousReads = steps[j].reads();
+                Set<String> previousWrites = steps[j].writes();
+                if (reads == null || writes == null || previousReads == null || previousWrites == null //unknown dependencies
+                    || !Collections.disjoint(previousWrites, reads) || !Collections.disjoint(previousWrites, writes) || !Collections.disjoint(previousReads, writes)) {
+                    stepDependencies.add(j);
+                }
+            }
+            dependencies[i] = stepDependencies.toIntArray();
+        }
+        return dependencies;
     }
 
     /**
@@ -75,6 +268,24 @@ public interface IEarthAsyncPipelineStep<D, V, B extends IEarthAsyncDataBuilder<
      */
     CompletableFuture<D> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException;
 
+    /**
+     * Asynchronously fetches the data required to bake the data for the given columns in a square region.
+     * <p>
+     * The default implementation simply calls {@link #requestData(ChunkPos, GeneratorDatasets, Bounds2d, CornerBoundingBox2d)} for each column. Steps
+     * which are able to fetch the data for an entire region more efficiently should override this.
+     *
+     * @param min       the position of the column in the region with the lowest coordinates
+     * @param size      the number of columns along each horizontal axis of the region
+     * @param columns   the indices of the columns whose data is needed, where a column's index is {@code dx * size + dz}
+     * @param datasets  the datasets to be used
+     * @param bounds    the bounding box of the region (in blocks)
+     * @param boundsGeo the bounding box of the region (in world coordinates)
+     * @return an array of {@link CompletableFuture}s, indexed by column index, which will be completed with the required data. Elements may be {@code null}
+     */
+    default CompletableFuture<D>[] requestRegionData(ChunkPos min, int size, BitSet columns, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        return requestDataForEachColumn(this, min, size, columns, datasets);
+    }
+
     /**
      * Bakes the retrieved data into the chunk data for the given column.
      *
@@ -83,4 +294,39 @@ public interface IEarthAsyncPipelineStep<D, V, B extends IEarthAsyncDataBuilder<
      * @param data    the data to bake
      */
     void bake(ChunkPos pos, B builder, D data);
+
+    /**
+     * Checks whether or not this step's {@link #bake(ChunkPos, IEarthAsyncDataBuilder, Object)} is cheap enough that it may be run on whichever thread
+     * happens to make its data available, rather than being submitted to {@link TerraExecutors#BAKE}.
+     * <p>
+     * Steps which only do a small, fixed amount of work per column should return {@code true} to avoid paying for a thread handoff.
+     *
+     * @return whether or not this step may be baked inline
+     */
+    default boolean bakeInline() {
+        return false;
+    }
+
+    /**
+     * Gets the names of the builder's fields which this step reads while baking.
+     * <p>
+     * Along with {@link #writes()}, this is used to determine which steps may be baked in parallel. If either method returns {@code null}, this step is
+     * assumed to read and write everything.
+     *
+     * @return the names of the fields read by this step, or {@code null} if unknown
+     * @see #bakeDependencies(IEarthAsyncPipelineStep[])
+     */
+    default Set<String> reads() {
+        return null;
+    }
+
+    /**
+     * Gets the names of the builder's fields which this step writes while baking.
+     *
+     * @return the names of the fields written by this step, or {@code null} if unknown
+     * @see #reads()
+     */
+    default Set<String> writes() {
+        return null;
+    }
 }
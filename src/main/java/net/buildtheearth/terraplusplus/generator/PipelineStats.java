@@ -0,0 +1,167 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.buildtheearth.terraplusplus.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of how long each step of the data baking pipelines takes.
+ * <p>
+ * Steps are identified by the name they were registered with in their {@link net.buildtheearth.terraplusplus.util.OrderedRegistry}, so the timings for
+ * steps added by other mods are recorded as well.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+public class PipelineStats {
+    private final Map<String, Step> STEPS_BY_NAME = new ConcurrentHashMap<>();
+    private final Cache<Object, Step> STEPS_BY_INSTANCE = CacheBuilder.newBuilder().weakKeys().build(); //weak keys are compared by identity
+
+    private volatile long START_TIME = System.nanoTime();
+
+    /**
+     * Registers the given pipeline step so that its timings will be recorded.
+     *
+     * @param kind the kind of step (e.g. {@code "data_baker"})
+     * @param name the name that the step was registered with
+     * @param step the step
+     */
+    void register(@NonNull String kind, @NonNull String name, @NonNull Object step) {
+        STEPS_BY_INSTANCE.put(step, STEPS_BY_NAME.computeIfAbsent(kind + '/' + name, Step::new));
+    }
+
+    /**
+     * Records the time taken for the data requested by the given step to become available.
+     *
+     * @param step      the step
+     * @param future    the {@link CompletableFuture} returned by the step. May be {@code null}
+     * @param startTime the value of {@link System#nanoTime()} immediately before the data was requested
+     */
+    void requested(@NonNull Object step, CompletableFuture<?> future, long startTime) {
+        Step stats = STEPS_BY_INSTANCE.getIfPresent(step);
+        if (stats != null && future != null) {
+            future.whenComplete((v, t) -> stats.request.record(System.nanoTime() - startTime));
+        }
+    }
+
+    /**
+     * Records the time taken for the data requested by the given step for an entire region to become available.
+     *
+     * @see #requested(Object, CompletableFuture, long)
+     */
+    void requested(@NonNull Object step, CompletableFuture<?>[] futures, long startTime) {
+        Step stats = STEPS_BY_INSTANCE.getIfPresent(step);
+        if (stats != null && futures != null) {
+            for (CompletableFuture<?> future : futures) {
+                if (future != null) {
+                    future.whenComplete((v, t) -> stats.request.record(System.nanoTime() - startTime));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the time taken by the given step to bake a column's data.
+     *
+     * @param step  the step
+     * @param nanos the time taken, in nanoseconds
+     */
+    void baked(@NonNull Object step, long nanos) {
+        Step stats = STEPS_BY_INSTANCE.getIfPresent(step);
+        if (stats != null) {
+            stats.bake.record(nanos);
+        }
+    }
+
+    /**
+     * @return the statistics for every registered step, in no particular order
+     */
+    public List<Step> steps() {
+        return new ArrayList<>(STEPS_BY_NAME.values());
+    }
+
+    /**
+     * Discards all recorded timings, and restarts the time period over which they are collected.
+     */
+    public void reset() {
+        START_TIME = System.nanoTime();
+        STEPS_BY_NAME.values().forEach(step -> {
+            step.request.reset();
+            step.bake.reset();
+        });
+    }
+
+    /**
+     * @return the number of seconds since statistics collection began, or since the statistics were last {@link #reset()}
+     */
+    public double uptimeSeconds() {
+        return (System.nanoTime() - START_TIME) / (double) TimeUnit.SECONDS.toNanos(1L);
+    }
+
+    /**
+     * @return a snapshot of the statistics for every registered step, in a form suitable for being serialized as JSON
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> steps = new LinkedHashMap<>();
+        STEPS_BY_NAME.values().stream().sorted((a, b) -> a.name.compareTo(b.name)).forEach(step -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("request", snapshot(step.request));
+            map.put("bake", snapshot(step.bake));
+            steps.put(step.name, map);
+        });
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("uptimeSeconds", uptimeSeconds());
+        out.put("steps", steps);
+        return out;
+    }
+
+    private Map<String, Object> snapshot(LatencyHistogram histogram) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", histogram.count());
+        map.put("totalNanos", histogram.totalNanos());
+        map.put("meanNanos", histogram.meanNanos());
+        map.put("p50Nanos", histogram.percentileNanos(0.5d));
+        map.put("p90Nanos", histogram.percentileNanos(0.9d));
+        map.put("p99Nanos", histogram.percentileNanos(0.99d));
+        return map;
+    }
+
+    /**
+     * The timings for a single pipeline step.
+     *
+     * @author DaPorkchop_
+     */
+    @Getter
+    public static final class Step {
+        /**
+         * The step's kind and name, separated by a {@code '/'}.
+         */
+        protected final String name;
+
+        /**
+         * The time between the step's data being requested and becoming available.
+         */
+        protected final LatencyHistogram request = new LatencyHistogram();
+
+        /**
+         * The time taken by the step to bake its data into a column.
+         */
+        protected final LatencyHistogram bake = new LatencyHistogram();
+
+        Step(@NonNull String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorldServer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.TerraConfig;
+import net.buildtheearth.terraplusplus.TerraConstants;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static net.daporkchop.lib.common.math.PMath.*;
+
+/**
+ * Prefetches the data for columns which players are moving towards, so that it is already available by the time Cubic Chunks starts loading them.
+ * <p>
+ * Each player's velocity is estimated from their movement since the last update, and the columns along a narrow band in front of them are loaded into
+ * {@link EarthGenerator#cache} (with a lower priority than columns which the server is actually waiting on).
+ *
+ * @author DaPorkchop_
+ */
+@Mod.EventBusSubscriber(modid = TerraConstants.MODID)
+public final class Prefetcher {
+    /**
+     * The number of ticks between each update.
+     */
+    private static final int UPDATE_INTERVAL = 5;
+
+    /**
+     * The minimum speed (in blocks per tick) at which a player must be moving for prefetching to take place. This is a bit faster than sprinting.
+     */
+    private static final double MIN_SPEED = 0.4d;
+
+    /**
+     * The number of columns on either side of a player's trajectory which will be prefetched.
+     */
+    private static final int HALF_WIDTH = 1;
+
+    @SubscribeEvent
+    public static void onWorldTick(TickEvent.WorldTickEvent event) {
+        World world = event.world;
+        if (event.phase != TickEvent.Phase.END || world.isRemote || world.getTotalWorldTime() % UPDATE_INTERVAL != 0L
+            || TerraConfig.data.prefetchDistance <= 0 || !(world instanceof ICubicWorld) || !((ICubicWorld) world).isCubicWorld()) {
+            return;
+        }
+
+        ICubeGenerator generator = ((ICubicWorldServer) world).getCubeGenerator();
+        if (generator instanceof EarthGenerator) {
+            ((EarthGenerator) generator).prefetcher.update(world);
+        }
+    }
+
+    private final EarthGenerator generator;
+
+    private Map<UUID, double[]> lastPositions = new HashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongLinkedOpenHashSet prefetchedColumns = new LongLinkedOpenHashSet();
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder used = new LongAdder();
+
+    Prefetcher(@NonNull EarthGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * Predicts the movement of all players in the world and prefetches the columns they are approaching. Must be called from the server thread.
+     */
+    void update(@NonNull World world) {
+        int distance = TerraConfig.data.prefetchDistance;
+        int budget = TerraConfig.data.prefetchBudget;
+
+        Map<UUID, double[]> lastPositions = this.lastPositions;
+        Map<UUID, double[]> positions = new HashMap<>();
+        for (EntityPlayer player : world.playerEntities) {
+            double[] last = lastPositions.get(player.getUniqueID());
+            positions.put(player.getUniqueID(), new double[]{ player.posX, player.posZ });
+            if (last == null) { //we don't know how fast this player is moving yet
+                continue;
+            }
+
+            double vx = (player.posX - last[0]) / UPDATE_INTERVAL;
+            double vz = (player.posZ - last[1]) / UPDATE_INTERVAL;
+            double speed = Math.sqrt(vx * vx + vz * vz);
+            if (speed < MIN_SPEED) {
+                continue;
+            }
+
+            //walk along the player's trajectory one column at a time, prefetching the nearest columns first
+            double dx = vx / speed;
+            double dz = vz / speed;
+            for (int step = 1; step <= distance; step++) {
+                int cx = floorI(player.posX + dx * (step << 4)) >> 4;
+                int cz = floorI(player.posZ + dz * (step << 4)) >> 4;
+                for (int ox = -HALF_WIDTH; ox <= HALF_WIDTH; ox++) {
+                    for (int oz = -HALF_WIDTH; oz <= HALF_WIDTH; oz++) {
+                        if (this.inFlight.get() >= budget) { //we've already got as many prefetches in progress as we're allowed to
+                            this.lastPositions = positions;
+                            return;
+                        }
+                        this.prefetch(cx + ox, cz + oz);
+                    }
+                }
+            }
+        }
+        this.lastPositions = positions;
+    }
+
+    private void prefetch(int x, int z) {
+        long key = ChunkPos.asLong(x, z);
+        if (this.generator.cache.getIfPresent(key) != null) { //column is already cached or being loaded
+            return;
+        }
+
+        CompletableFuture<CachedChunkData> future = this.generator.prefetch(key);
+        this.issued.increment();
+        this.inFlight.incrementAndGet();
+        future.whenComplete((data, t) -> this.inFlight.decrementAndGet());
+
+        synchronized (this.prefetchedColumns) {
+            this.prefetchedColumns.add(key);
+            if (this.prefetchedColumns.size() > this.generator.cache.maximumSize()) { //the oldest column has probably been evicted from the cache by now
+                this.prefetchedColumns.removeFirstLong();
+            }
+        }
+    }
+
+    /**
+     * Notifies this prefetcher that the server is waiting on the given column.
+     *
+     * @param key the column's position, packed using {@link ChunkPos#asLong(int, int)}
+     */
+    void demanded(long key) {
+        synchronized (this.prefetchedColumns) {
+            if (this.prefetchedColumns.isEmpty() || !this.prefetchedColumns.remove(key)) {
+                return;
+            }
+        }
+        this.used.increment();
+    }
+
+    /**
+     * @return the number of columns which have been prefetched
+     */
+    public long issued() {
+        return this.issued.sum();
+    }
+
+    /**
+     * @return the number of prefetched columns which were later requested by the server
+     */
+    public long used() {
+        return this.used.sum();
+    }
+
+    /**
+     * @return the number of prefetches which are currently in progress
+     */
+    public int inFlight() {
+        return this.inFlight.get();
+    }
+}
@@ -0,0 +1,445 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import lombok.Getter;
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.TerraConfig;
+import net.buildtheearth.terraplusplus.TerraConstants;
+import net.buildtheearth.terraplusplus.TerraMod;
+import net.buildtheearth.terraplusplus.projection.GeographicProjection;
+import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraplusplus.util.http.Disk;
+import net.buildtheearth.terraplusplus.util.http.Http;
+import net.buildtheearth.terraplusplus.util.http.HttpStats;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
+import net.daporkchop.lib.common.misc.file.PFiles;
+import net.daporkchop.lib.common.misc.threadfactory.PThreadFactories;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.math.ChunkPos;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.lang.Math.*;
+import static net.daporkchop.lib.common.math.PMath.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Loads the terrain data for every column in a rectangular area ahead of time, so that it doesn't need to be loaded when players explore the area.
+ * <p>
+ * Columns are loaded in batches of {@link TerraConfig.DataOpts#regionSize}² columns. Batches are grouped into square groups, which are visited row by row,
+ * so that columns which are loaded at around the same time are close together and can share the same source data. The number of columns being loaded at
+ * once is limited, and loaded data is not retained in memory - it ends up in the persistent chunk data store (if enabled) and the HTTP cache.
+ * <p>
+ * Pregeneration is less urgent than loading any column for a player, so its requests are only sent once no player's requests are waiting. When running
+ * on a server, batches also go through the generator's {@link AdmissionController}, so that they share its memory budget with the players' columns.
+ * Batches shed by admission control are retried a little later.
+ * <p>
+ * Progress is periodically saved to disk, allowing a pregeneration task to be resumed after it has been stopped or interrupted.
+ *
+ * @author DaPorkchop_
+ */
+public class Pregenerator {
+    protected static final int GROUP_SIZE = 8; //the number of batches along each axis of a group
+    protected static final int EDGE_SAMPLES = 64; //the number of points to project along each edge of a geographic bounding box
+    protected static final long SHED_RETRY_DELAY = 1L; //the number of seconds to wait before retrying a batch which was shed by admission control
+
+    /**
+     * The {@link RequestPriority} of all requests made while pregenerating.
+     */
+    protected static final RequestPriority PRIORITY = () -> ColumnPriority.BACKGROUND_PRIORITY;
+
+    protected static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            PThreadFactories.builder().daemon().minPriority().name("terra++ pregeneration reporter").build());
+
+    public static void main(String... args) throws OutOfProjectionBoundsException {
+        if (args.length < 4) {
+            System.err.println("Usage: <minLon> <minLat> <maxLon> <maxLat> [max columns in flight] [generator settings]");
+            System.exit(1);
+        }
+
+        TerraConstants.IS_STANDALONE = true;
+
+        Bootstrap.register();
+        Http.configChanged();
+
+        //pregenerating without the persistent store would only fill the HTTP cache
+        TerraConfig.data.persistentCache = true;
+
+        double lon0 = Double.parseDouble(args[0]);
+        double lat0 = Double.parseDouble(args[1]);
+        double lon1 = Double.parseDouble(args[2]);
+        double lat1 = Double.parseDouble(args[3]);
+        int concurrency = args.length > 4 ? Integer.parseInt(args[4]) : 1024;
+        EarthGeneratorSettings settings = EarthGeneratorSettings.parseUncached(args.length > 5 ? args[5] : EarthGeneratorSettings.BTE_DEFAULT_SETTINGS);
+
+        Pregenerator pregenerator = fromGeo(settings, new EarthGenerator.ChunkDataLoader(settings), null, lon0, lat0, lon1, lat1, concurrency);
+        Runtime.getRuntime().addShutdownHook(new Thread(pregenerator::stop));
+
+        pregenerator.start(p -> TerraMod.LOGGER.info(p.status())).join();
+        TerraMod.LOGGER.info("pregeneration complete: {}", pregenerator.status());
+    }
+
+    /**
+     * Creates a new {@link Pregenerator} for the area covered by the given geographic bounding box.
+     *
+     * @param settings    the generator settings
+     * @param loader      the {@link EarthGenerator.ChunkDataLoader} to use
+     * @param admission   the {@link AdmissionController} which batches must be admitted by, or {@code null} if there is none
+     * @param lon0        the longitude of one corner of the bounding box
+     * @param lat0        the latitude of one corner of the bounding box
+     * @param lon1        the longitude of the opposite corner of the bounding box
+     * @param lat1        the latitude of the opposite corner of the bounding box
+     * @param concurrency the maximum number of columns to load at once
+     * @return the new {@link Pregenerator}
+     */
+    public static Pregenerator fromGeo(@NonNull EarthGeneratorSettings settings, @NonNull EarthGenerator.ChunkDataLoader loader, AdmissionController admission,
+                                       double lon0, double lat0, double lon1, double lat1, int concurrency) throws OutOfProjectionBoundsException {
+        GeographicProjection projection = settings.projection();
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        //the projected area's edges may be curved, so we need to sample points along the bounding box's edges rather than only its corners
+        for (int i = 0; i <= EDGE_SAMPLES; i++) {
+            double lon = lon0 + (lon1 - lon0) * i / EDGE_SAMPLES;
+            double lat = lat0 + (lat1 - lat0) * i / EDGE_SAMPLES;
+            for (double[] point : new double[][]{ { lon, lat0 }, { lon, lat1 }, { lon0, lat }, { lon1, lat } }) {
+                double[] proj = projection.fromGeo(point[0], point[1]);
+                minX = min(minX, proj[0]);
+                maxX = max(maxX, proj[0]);
+                minZ = min(minZ, proj[1]);
+                maxZ = max(maxZ, proj[1]);
+            }
+        }
+
+        return new Pregenerator(settings, loader, admission, floorI(minX) >> 4, floorI(minZ) >> 4, floorI(maxX) >> 4, floorI(maxZ) >> 4, concurrency);
+    }
+
+    protected final EarthGenerator.ChunkDataLoader loader;
+    protected final AdmissionController admission;
+    protected final Path progressFile;
+
+    protected final int minX;
+    protected final int minZ;
+    @Getter
+    protected final long totalColumns;
+
+    protected final int batchSize;
+    protected final int batchesX;
+    protected final int batchesZ;
+    protected final long totalBatches;
+
+    protected final int concurrency;
+
+    protected final CompletableFuture<Void> future = new CompletableFuture<>();
+    protected Consumer<Pregenerator> reporter;
+    protected ScheduledFuture<?> reportTask;
+
+    //all of these are protected by synchronizing on this instance
+    protected long nextBatch;
+    protected long watermark; //the index of the first batch which hasn't been completed yet
+    protected final LongSet completedAfterWatermark = new LongOpenHashSet();
+    protected int inFlight; //the number of batches being loaded
+    protected long inFlightColumns; //the number of columns being loaded
+    protected boolean stopped;
+
+    protected long startTime;
+    protected long completedColumns;
+    protected long failedColumns;
+    protected long startCacheHits;
+    protected long startCacheMisses;
+    protected long startBytesReceived;
+
+    /**
+     * @param settings    the generator settings
+     * @param loader      the {@link EarthGenerator.ChunkDataLoader} to use
+     * @param admission   the {@link AdmissionController} which batches must be admitted by, or {@code null} if there is none
+     * @param minX        the minimum column X coordinate (inclusive)
+     * @param minZ        the minimum column Z coordinate (inclusive)
+     * @param maxX        the maximum column X coordinate (inclusive)
+     * @param maxZ        the maximum column Z coordinate (inclusive)
+     * @param concurrency the maximum number of columns to load at once. At least one batch is always loaded, even if it contains more columns than this.
+     */
+    public Pregenerator(@NonNull EarthGeneratorSettings settings, @NonNull EarthGenerator.ChunkDataLoader loader, AdmissionController admission,
+                        int minX, int minZ, int maxX, int maxZ, int concurrency) {
+        checkArg(minX <= maxX && minZ <= maxZ, "invalid bounds: (%d, %d) -> (%d, %d)", minX, minZ, maxX, maxZ);
+
+        this.loader = loader;
+        this.admission = admission;
+        this.concurrency = positive(concurrency, "concurrency");
+        this.batchSize = max(TerraConfig.data.regionSize, 1);
+
+        //align the area to the batch size, so that batches line up with the regions used by EarthGenerator
+        int minBatchX = Math.floorDiv(minX, this.batchSize);
+        int minBatchZ = Math.floorDiv(minZ, this.batchSize);
+        this.minX = minBatchX * this.batchSize;
+        this.minZ = minBatchZ * this.batchSize;
+        this.batchesX = Math.floorDiv(maxX, this.batchSize) - minBatchX + 1;
+        this.batchesZ = Math.floorDiv(maxZ, this.batchSize) - minBatchZ + 1;
+        this.totalBatches = (long) this.batchesX * this.batchesZ;
+        this.totalColumns = this.totalBatches * this.batchSize * this.batchSize;
+
+        this.progressFile = Disk.dataFile("pregen").resolve(ChunkDataStore.hash(settings + ";" + this.minX + ',' + this.minZ + ';' + this.batchesX + ',' + this.batchesZ + ';' + this.batchSize) + ".progress");
+    }
+
+    /**
+     * Starts loading columns, resuming from the last saved progress if this area was previously being pregenerated.
+     *
+     * @param reporter a function which will be called periodically (and once the task completes) to report progress
+     * @return a {@link CompletableFuture} which will be completed once all columns have been loaded, or the task is stopped
+     */
+    public synchronized CompletableFuture<Void> start(@NonNull Consumer<Pregenerator> reporter) {
+        checkState(this.reporter == null, "already started!");
+        this.reporter = reporter;
+
+        this.nextBatch = this.watermark = this.readProgress();
+        this.startTime = System.nanoTime();
+        this.startCacheHits = HttpStats.cacheHits();
+        this.startCacheMisses = HttpStats.cacheMisses();
+        this.startBytesReceived = HttpStats.bytesReceived();
+
+        this.reportTask = SCHEDULER.scheduleAtFixedRate(this::report, 10L, 10L, TimeUnit.SECONDS);
+        this.fill();
+        return this.future;
+    }
+
+    /**
+     * Stops this task. Batches which are currently being loaded will be allowed to complete.
+     *
+     * @return a {@link CompletableFuture} which will be completed once all batches which are currently being loaded have completed
+     */
+    public synchronized CompletableFuture<Void> stop() {
+        this.stopped = true;
+        this.writeProgress();
+        this.checkComplete();
+        return this.future;
+    }
+
+    /**
+     * @return whether or not this task has completed
+     */
+    public boolean isDone() {
+        return this.future.isDone();
+    }
+
+    /**
+     * @return whether or not this task has been stopped
+     */
+    public synchronized boolean stopped() {
+        return this.stopped;
+    }
+
+    /**
+     * @return the number of columns which are guaranteed to have been loaded, i.e. which won't be loaded again if the task is resumed
+     */
+    public synchronized long doneColumns() {
+        return this.watermark * this.batchSize * this.batchSize;
+    }
+
+    /**
+     * @return the number of columns which failed to load
+     */
+    public synchronized long failedColumns() {
+        return this.failedColumns;
+    }
+
+    /**
+     * @return the average number of columns loaded per second since this task was started
+     */
+    public synchronized double columnsPerSecond() {
+        return this.completedColumns / max((System.nanoTime() - this.startTime) / 1.0e9d, 0.001d);
+    }
+
+    /**
+     * @return the number of bytes which have been downloaded since this task was started (including downloads for other purposes)
+     */
+    public long bytesDownloaded() {
+        return HttpStats.bytesReceived() - this.startBytesReceived;
+    }
+
+    /**
+     * @return the percentage of HTTP requests which have been served from the cache since this task was started
+     */
+    public double cacheHitPercent() {
+        long cacheHits = HttpStats.cacheHits() - this.startCacheHits;
+        long cacheMisses = HttpStats.cacheMisses() - this.startCacheMisses;
+        return cacheHits + cacheMisses == 0L ? 0.0d : cacheHits * 100.0d / (cacheHits + cacheMisses);
+    }
+
+    /**
+     * @return a human-readable summary of this task's progress, for logging
+     */
+    public synchronized String status() {
+        long doneColumns = this.doneColumns();
+        return String.format(Locale.ROOT, "%d/%d columns (%.2f%%), %.1f columns/s, %d failed, %.1f MiB downloaded, %.1f%% HTTP cache hit rate%s",
+                doneColumns, this.totalColumns, doneColumns * 100.0d / this.totalColumns,
+                this.columnsPerSecond(), this.failedColumns,
+                this.bytesDownloaded() / (1024.0d * 1024.0d),
+                this.cacheHitPercent(),
+                this.stopped ? " (stopped)" : "");
+    }
+
+    protected void fill() {
+        long columnsPerBatch = (long) this.batchSize * this.batchSize;
+        while (!this.stopped && this.nextBatch < this.totalBatches && (this.inFlight == 0 || this.inFlightColumns + columnsPerBatch <= this.concurrency)) {
+            long batch = this.nextBatch++;
+            this.inFlight++;
+            this.inFlightColumns += columnsPerBatch;
+            this.loadBatch(batch);
+        }
+        this.checkComplete();
+    }
+
+    protected void loadBatch(long batch) {
+        CompletableFuture<Integer> future = this.admission != null
+                ? this.admission.submit(this.batchSize * this.batchSize, PRIORITY, () -> this.loadBatch0(batch))
+                : Http.withPriority(PRIORITY, () -> this.loadBatch0(batch));
+
+        future.whenComplete((failed, cause) -> {
+            if (cause == null) {
+                this.batchComplete(batch, failed);
+            } else { //the batch was shed by admission control, as there are more urgent columns to load
+                this.batchShed(batch);
+            }
+        });
+    }
+
+    /**
+     * Loads all of the columns in the given batch.
+     *
+     * @return a {@link CompletableFuture} which will be completed with the number of columns which failed to load once all of them have been loaded
+     */
+    protected CompletableFuture<Integer> loadBatch0(long batch) {
+        ChunkPos min = this.batchPosition(batch);
+        int size = this.batchSize;
+
+        CompletableFuture<?>[] futures;
+        if (size == 1) {
+            futures = new CompletableFuture[]{ this.loader.load(min) };
+        } else {
+            BitSet columns = new BitSet(size * size);
+            columns.set(0, size * size);
+            futures = this.loader.loadRegion(min, size, columns);
+        }
+
+        return CompletableFuture.allOf(futures).handle((unused, cause) -> {
+            int failed = 0;
+            for (CompletableFuture<?> future : futures) {
+                if (future.isCompletedExceptionally()) {
+                    failed++;
+                }
+            }
+            return failed;
+        });
+    }
+
+    protected synchronized void batchShed(long batch) {
+        if (this.stopped) { //give up on the batch, it will be loaded again when the task is resumed since the watermark can't pass it
+            this.inFlight--;
+            this.inFlightColumns -= (long) this.batchSize * this.batchSize;
+            this.checkComplete();
+        } else { //try again later, the batch still counts as being in flight in the meantime
+            SCHEDULER.schedule(() -> this.loadBatch(batch), SHED_RETRY_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    protected synchronized void batchComplete(long batch, int failed) {
+        this.inFlight--;
+        this.inFlightColumns -= (long) this.batchSize * this.batchSize;
+        this.completedColumns += this.batchSize * this.batchSize;
+        this.failedColumns += failed;
+
+        if (batch == this.watermark) {
+            do {
+                this.watermark++;
+            } while (this.completedAfterWatermark.remove(this.watermark));
+        } else {
+            this.completedAfterWatermark.add(batch);
+        }
+
+        this.fill();
+    }
+
+    protected void checkComplete() {
+        if (this.inFlight == 0 && (this.stopped || this.nextBatch >= this.totalBatches) && !this.future.isDone()) {
+            if (this.reportTask != null) {
+                this.reportTask.cancel(false);
+            }
+            this.report();
+            this.future.complete(null);
+        }
+    }
+
+    protected synchronized void report() {
+        this.writeProgress();
+        if (this.reporter != null) {
+            try {
+                this.reporter.accept(this);
+            } catch (Exception e) {
+                TerraMod.LOGGER.error("exception while reporting pregeneration progress", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the position of the column with the lowest coordinates in the given batch.
+     * <p>
+     * Batches are grouped into groups of {@link #GROUP_SIZE}x{@link #GROUP_SIZE} batches. Groups are visited in row-major order, and the batches in each
+     * group are visited in row-major order.
+     */
+    protected ChunkPos batchPosition(long batch) {
+        long groupRowSize = (long) GROUP_SIZE * this.batchesX;
+        int groupRow = toInt(batch / groupRowSize);
+        int groupHeight = min(GROUP_SIZE, this.batchesZ - groupRow * GROUP_SIZE);
+
+        long indexInRow = batch - groupRow * groupRowSize;
+        int groupCol = toInt(indexInRow / ((long) GROUP_SIZE * groupHeight));
+        int groupWidth = min(GROUP_SIZE, this.batchesX - groupCol * GROUP_SIZE);
+
+        int indexInGroup = toInt(indexInRow - (long) groupCol * GROUP_SIZE * groupHeight);
+        int batchX = groupCol * GROUP_SIZE + indexInGroup % groupWidth;
+        int batchZ = groupRow * GROUP_SIZE + indexInGroup / groupWidth;
+        return new ChunkPos(this.minX + batchX * this.batchSize, this.minZ + batchZ * this.batchSize);
+    }
+
+    protected long readProgress() {
+        try {
+            if (Files.exists(this.progressFile)) {
+                long progress = Long.parseLong(new String(Files.readAllBytes(this.progressFile), StandardCharsets.UTF_8).trim());
+                if (progress > 0L && progress < this.totalBatches) {
+                    TerraMod.LOGGER.info("resuming pregeneration from batch {}/{}", progress, this.totalBatches);
+                    return progress;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            TerraMod.LOGGER.warn("unable to read pregeneration progress from " + this.progressFile, e);
+        }
+        return 0L;
+    }
+
+    protected void writeProgress() {
+        try {
+            if (this.watermark >= this.totalBatches) { //we're done, there's nothing to resume
+                Files.deleteIfExists(this.progressFile);
+            } else {
+                PFiles.ensureDirectoryExists(this.progressFile.getParent().toFile());
+                Files.write(this.progressFile, String.valueOf(this.watermark).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            TerraMod.LOGGER.warn("unable to save pregeneration progress to " + this.progressFile, e);
+        }
+    }
+}
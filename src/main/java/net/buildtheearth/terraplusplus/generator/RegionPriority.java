@@ -0,0 +1,39 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import lombok.NonNull;
+import net.buildtheearth.terraplusplus.util.http.RequestPriority;
+
+/**
+ * The {@link RequestPriority} of the requests made while loading the data for a region of columns.
+ * <p>
+ * The region is as urgent as its most urgent column, and its requests are only cancelled once every column in the region has been cancelled. This allows a
+ * column which is only being loaded because a neighboring column was prefetched to become more urgent once the server starts waiting on it.
+ *
+ * @author DaPorkchop_
+ */
+final class RegionPriority implements RequestPriority {
+    private final RequestPriority[] columns;
+
+    public RegionPriority(@NonNull RequestPriority... columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public double priority() {
+        double min = Double.POSITIVE_INFINITY;
+        for (RequestPriority column : this.columns) {
+            min = Math.min(min, column.priority());
+        }
+        return min;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        for (RequestPriority column : this.columns) {
+            if (!column.isCancelled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
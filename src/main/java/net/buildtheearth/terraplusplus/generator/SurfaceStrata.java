@@ -0,0 +1,142 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.replacer.IBiomeBlockReplacer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import lombok.NonNull;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.biome.Biome;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.*;
+
+/**
+ * The blocks produced by running the biome block replacers over the surface band of a single column, stored as a list of runs of identical block states
+ * for each of the column's 16x16 block columns.
+ * <p>
+ * The output of the replacers for a given block depends only on the column's data and the block's position, so it can be computed once per
+ * {@link CachedChunkData} and then copied into each cube in the column, rather than re-running every replacer for every block of every cube.
+ *
+ * @author DaPorkchop_
+ */
+final class SurfaceStrata {
+    /**
+     * Computes the surface strata for the given column.
+     *
+     * @param generator the {@link EarthGenerator} whose replacers should be used
+     * @param data      the column's {@link CachedChunkData}
+     * @param chunkX    the column's X coordinate
+     * @param chunkZ    the column's Z coordinate
+     * @return the column's {@link SurfaceStrata}
+     */
+    public static SurfaceStrata build(@NonNull EarthGenerator generator, @NonNull CachedChunkData data, int chunkX, int chunkZ) {
+        IBlockState stone = Blocks.STONE.getDefaultState();
+        IBlockState grass = Blocks.GRASS.getDefaultState();
+        IBlockState dirt = Blocks.DIRT.getDefaultState();
+
+        //cubes any further down than this are filled with stone without running the replacers
+        int minY = Coords.cubeToMinBlock(data.surfaceMinCube() - 2);
+
+        int[] offsets = new int[16 * 16 + 1];
+        IntArrayList tops = new IntArrayList();
+        List<IBlockState> states = new ArrayList<>();
+
+        for (int i = 0, x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++, i++) {
+                int groundHeight = data.groundHeight(x, z);
+                int waterHeight = data.waterHeight(x, z);
+
+                //horizontal density change is calculated using the top height rather than the ground height
+                int topHeight = data.surfaceHeight(x, z);
+                double dx = x == 15 ? topHeight - data.surfaceHeight(x - 1, z) : data.surfaceHeight(x + 1, z) - topHeight;
+                double dz = z == 15 ? topHeight - data.surfaceHeight(x, z - 1) : data.surfaceHeight(x, z + 1) - topHeight;
+
+                int blockX = Coords.cubeToMinBlock(chunkX) + x;
+                int blockZ = Coords.cubeToMinBlock(chunkZ) + z;
+
+                Biome biome = Biome.getBiomeForId(data.biome(x, z));
+                IBiomeBlockReplacer[] replacers = generator.biomeBlockReplacers.get(biome);
+
+                IBlockState run = null;
+                for (int blockY = minY; blockY <= groundHeight; blockY++) {
+                    double density = groundHeight - blockY;
+                    IBlockState state = stone;
+                    for (IBiomeBlockReplacer replacer : replacers) {
+                        state = replacer.getReplacedBlock(state, biome, blockX, blockY, blockZ, dx, -1.0d, dz, density);
+                    }
+
+                    //calling this explicitly increases the likelihood of JIT inlining it
+                    //(for reference: previously, CliffReplacer was manually added to each biome as the last replacer)
+                    state = CliffReplacer.INSTANCE.getReplacedBlock(state, biome, blockX, blockY, blockZ, dx, -1.0d, dz, density);
+
+                    if (groundHeight < waterHeight && state == grass) { //hacky workaround for underwater grass
+                        state = dirt;
+                    }
+
+                    if (state != run) { //end the previous run and start a new one
+                        if (run != null) {
+                            tops.add(blockY - 1);
+                            states.add(run);
+                        }
+                        run = state;
+                    }
+                }
+                if (run != null) {
+                    tops.add(groundHeight);
+                    states.add(run);
+                }
+
+                offsets[i + 1] = tops.size();
+            }
+        }
+
+        return new SurfaceStrata(generator, minY, offsets, tops.toIntArray(), states.toArray(new IBlockState[0]));
+    }
+
+    final EarthGenerator generator;
+
+    private final int minY;
+    private final int[] offsets;
+    private final int[] tops;
+    private final IBlockState[] states;
+
+    private SurfaceStrata(EarthGenerator generator, int minY, int[] offsets, int[] tops, IBlockState[] states) {
+        this.generator = generator;
+        this.minY = minY;
+        this.offsets = offsets;
+        this.tops = tops;
+        this.states = states;
+    }
+
+    /**
+     * Copies the part of these strata which intersects the given cube into a {@link CubePrimer}.
+     * <p>
+     * The cube must not be below the lowest cube covered by these strata, i.e. {@code !data.belowSurface(cubeY + 2)}.
+     *
+     * @param primer the {@link CubePrimer} to fill
+     * @param cubeY  the Y coordinate of the cube
+     */
+    public void fill(@NonNull CubePrimer primer, int cubeY) {
+        int cubeMinY = Coords.cubeToMinBlock(cubeY);
+        int cubeMaxY = cubeMinY + 15;
+
+        for (int i = 0, x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++, i++) {
+                for (int run = this.offsets[i], end = this.offsets[i + 1], runMinY = this.minY; run < end; runMinY = this.tops[run++] + 1) {
+                    if (runMinY > cubeMaxY) { //all remaining runs are above this cube
+                        break;
+                    }
+
+                    int runMaxY = this.tops[run];
+                    if (runMaxY >= cubeMinY) {
+                        CubePrimers.fillColumn(primer, x, z, max(runMinY, cubeMinY) - cubeMinY, min(runMaxY, cubeMaxY) - cubeMinY, this.states[run]);
+                    }
+                }
+            }
+        }
+    }
+}
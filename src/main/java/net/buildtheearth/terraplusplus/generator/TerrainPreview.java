@@ -5,11 +5,15 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import lombok.NonNull;
 import net.buildtheearth.terraplusplus.TerraConstants;
+import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
 import net.buildtheearth.terraplusplus.generator.data.TreeCoverBaker;
 import net.buildtheearth.terraplusplus.projection.GeographicProjection;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
+import net.buildtheearth.terraplusplus.util.CornerBoundingBox2d;
 import net.buildtheearth.terraplusplus.util.EmptyWorld;
 import net.buildtheearth.terraplusplus.util.TilePos;
+import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
+import net.buildtheearth.terraplusplus.util.concurrent.TerraExecutors;
 import net.buildtheearth.terraplusplus.util.http.Http;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Bootstrap;
@@ -46,6 +50,12 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
     protected static final int CHUNKS_PER_TILE_SHIFT = SIZE_SHIFT - 4;
     protected static final int CHUNKS_PER_TILE = 1 << CHUNKS_PER_TILE_SHIFT; //number of chunks per tile at zoom 0
 
+    /**
+     * Tiles at this zoom level and above are rendered directly from elevation data sampled at the tile's resolution, rather than by combining
+     * {@code 4^zoom} fully generated tiles.
+     */
+    protected static final int MIN_SAMPLED_ZOOM = 4;
+
     public static BufferedImage createBlankTile() {
         return new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
     }
@@ -249,6 +259,7 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
 
     protected final LoadingCache<TilePos, CompletableFuture<BufferedImage>> cache;
     protected final EarthGenerator.ChunkDataLoader loader;
+    protected final GeneratorDatasets datasets;
 
     public TerrainPreview(@NonNull EarthGeneratorSettings settings) {
         this(settings, "softValues");
@@ -256,6 +267,7 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
 
     public TerrainPreview(@NonNull EarthGeneratorSettings settings, @NonNull String cacheSpec) {
         this.loader = new EarthGenerator.ChunkDataLoader(settings);
+        this.datasets = settings.datasets();
         this.cache = CacheBuilder.from(cacheSpec).build(this);
     }
 
@@ -275,6 +287,8 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
     public CompletableFuture<BufferedImage> load(@NonNull TilePos pos) {
         if (pos.zoom() == 0) {
             return this.baseZoomTile(pos.x(), pos.z());
+        } else if (pos.zoom() >= MIN_SAMPLED_ZOOM) {
+            return this.sampledTile(pos.x(), pos.z(), pos.zoom());
         } else if (pos.zoom() > 0) {
             return this.zoomedOutTile(pos.x(), pos.z(), pos.zoom());
         } else {
@@ -297,7 +311,7 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
                 for (int tz = 0; tz < CHUNKS_PER_TILE; tz++) {
                     CachedChunkData data = dataFutures[ti++].join();
 
-                    byte[] treeCoverArr = data.getCustom(EarthGeneratorPipelines.KEY_DATA_TREE_COVER, TreeCoverBaker.FALLBACK_TREE_DENSITY);
+                    byte[] treeCoverArr = data.getCustom(EarthGeneratorPipelines.ATTRIBUTE_TREE_COVER, TreeCoverBaker.FALLBACK_TREE_DENSITY);
 
                     int baseX = tx << 4;
                     int baseZ = tz << 4;
@@ -342,7 +356,54 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
             }
 
             return dst;
-        });
+        }, TerraExecutors.BAKE);
+    }
+
+    protected CompletableFuture<BufferedImage> sampledTile(int x, int z, int zoom) {
+        double tileSize = (double) (SIZE << zoom); //the size of the tile in blocks
+        Bounds2d bounds = Bounds2d.of(x * tileSize, (x + 1) * tileSize, z * tileSize, (z + 1) * tileSize);
+
+        CompletableFuture<double[]> heightsFuture;
+        try {
+            CornerBoundingBox2d boundsGeo = bounds.toCornerBB(this.datasets.projection(), false).toGeo();
+            heightsFuture = this.datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_HEIGHTS).getAsync(boundsGeo, SIZE, SIZE, zoom);
+        } catch (OutOfProjectionBoundsException e) { //the tile isn't entirely on the map
+            return CompletableFuture.completedFuture(createBlankTile());
+        }
+
+        return heightsFuture.thenApplyAsync(heights -> {
+            BufferedImage dst = createBlankTile();
+            if (heights == null) {
+                return dst;
+            }
+
+            float scale = 1.0f / (1 << zoom); //height differences are relative to the distance between samples
+            for (int cx = 0; cx < SIZE; cx++) {
+                for (int cz = 0; cz < SIZE; cz++) {
+                    double height = heights[cx * SIZE + cz];
+                    if (Double.isNaN(height)) { //no data, consider it to be ocean
+                        height = 0.0d;
+                    }
+
+                    double nextX = cx == SIZE - 1 ? heights[(cx - 1) * SIZE + cz] : heights[(cx + 1) * SIZE + cz];
+                    double nextZ = cz == SIZE - 1 ? heights[cx * SIZE + cz - 1] : heights[cx * SIZE + cz + 1];
+                    float dx = Double.isNaN(nextX) ? 0.0f : (float) (cx == SIZE - 1 ? height - nextX : nextX - height) * scale;
+                    float dz = Double.isNaN(nextZ) ? 0.0f : (float) (cz == SIZE - 1 ? height - nextZ : nextZ - height) * scale;
+
+                    int r;
+                    int g;
+                    int b;
+                    r = g = b = floorI(LightUtil.diffuseLight(clamp(dx, -1.0f, 1.0f), 0.0f, clamp(dz, -1.0f, 1.0f)) * 255.0f);
+                    if (height <= 0.0d) { //below sea level
+                        r >>= 1;
+                        g >>= 1;
+                    }
+
+                    dst.setRGB(cx, cz, 0xFF000000 | r << 16 | g << 8 | b);
+                }
+            }
+            return dst;
+        }, TerraExecutors.BAKE);
     }
 
     protected CompletableFuture<BufferedImage> zoomedOutTile(int x, int z, int zoom) {
@@ -384,7 +445,7 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
             }
 
             return dst;
-        });
+        }, TerraExecutors.BAKE);
     }
 
     protected CompletableFuture<BufferedImage> zoomedInTile(int x, int z, int zoom) {
@@ -403,6 +464,6 @@ public class TerrainPreview extends CacheLoader<TilePos, CompletableFuture<Buffe
                     }
 
                     return dst;
-                });
+                }, TerraExecutors.BAKE);
     }
 }
@@ -1,5 +1,6 @@
 package net.buildtheearth.terraplusplus.generator.biome;
 
+import com.google.common.collect.ImmutableSet;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
@@ -15,6 +16,7 @@ import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.biome.Biome;
 
 import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -23,6 +25,9 @@ import java.util.concurrent.CompletableFuture;
  * @author DaPorkchop_
  */
 public class Terra121BiomeFilter implements IEarthBiomeFilter<Terra121BiomeFilter.Data> {
+    private static final Set<String> READS = ImmutableSet.of();
+    private static final Set<String> WRITES = ImmutableSet.of(ChunkBiomesBuilder.FIELD_BIOMES);
+
     @Override
     public CompletableFuture<Terra121BiomeFilter.Data> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
         CompletableFuture<double[]> precipitationFuture = datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_TERRA121_PRECIPITATION).getAsync(boundsGeo, 16, 16);
@@ -33,6 +38,16 @@ public class Terra121BiomeFilter implements IEarthBiomeFilter<Terra121BiomeFilte
                 .thenApply(unused -> new Data(precipitationFuture.join(), soilFuture.join(), temperatureFuture.join()));
     }
 
+    @Override
+    public Set<String> reads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> writes() {
+        return WRITES;
+    }
+
     @Override
     public void bake(ChunkPos pos, ChunkBiomesBuilder builder, Terra121BiomeFilter.Data data) {
         Biome[] biomes = builder.state();
@@ -40,6 +40,9 @@ import java.util.stream.Stream;
  * @author DaPorkchop_
  */
 public class UserOverrideBiomeFilter implements IEarthBiomeFilter<UserOverrideBiomeFilter.BiomeBoundingBox> {
+    private static final Set<String> READS = ImmutableSet.of(ChunkBiomesBuilder.FIELD_BIOMES);
+    private static final Set<String> WRITES = ImmutableSet.of(ChunkBiomesBuilder.FIELD_BIOMES);
+
     protected final BVH<BiomeBoundingBox> bvh;
 
     @SneakyThrows(IOException.class)
@@ -62,11 +65,27 @@ public class UserOverrideBiomeFilter implements IEarthBiomeFilter<UserOverrideBi
 
     @Override
     public CompletableFuture<BiomeBoundingBox> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
-        return CompletableFuture.supplyAsync(() -> this.bvh.getAllIntersecting(boundsGeo).stream()
+        //querying the BVH is cheap enough that it isn't worth submitting to an executor
+        return CompletableFuture.completedFuture(this.bvh.getAllIntersecting(boundsGeo).stream()
                 .max(Comparator.naturalOrder())
                 .orElse(null));
     }
 
+    @Override
+    public boolean bakeInline() {
+        return true; //this only fills or replaces 256 biomes
+    }
+
+    @Override
+    public Set<String> reads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> writes() {
+        return WRITES;
+    }
+
     @Override
     public void bake(ChunkPos pos, ChunkBiomesBuilder builder, BiomeBoundingBox bbox) {
         if (bbox == null) { //out of bounds, or no override at this position
@@ -1,15 +1,19 @@
 package net.buildtheearth.terraplusplus.generator.data;
 
+import com.google.common.collect.ImmutableSet;
 import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
 import net.buildtheearth.terraplusplus.generator.CachedChunkData;
 import net.buildtheearth.terraplusplus.generator.EarthGeneratorPipelines;
 import net.buildtheearth.terraplusplus.generator.GeneratorDatasets;
+import net.buildtheearth.terraplusplus.generator.IEarthAsyncPipelineStep;
 import net.buildtheearth.terraplusplus.projection.OutOfProjectionBoundsException;
 import net.buildtheearth.terraplusplus.util.CornerBoundingBox2d;
 import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
 import net.minecraft.util.math.ChunkPos;
 
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import static net.daporkchop.lib.common.math.PMath.*;
@@ -18,11 +22,35 @@ import static net.daporkchop.lib.common.math.PMath.*;
  * @author DaPorkchop_
  */
 public class HeightsBaker implements IEarthDataBaker<double[]> {
+    private static final Set<String> READS = ImmutableSet.of();
+    private static final Set<String> WRITES = ImmutableSet.of(CachedChunkData.FIELD_SURFACE_HEIGHT, CachedChunkData.FIELD_WATER_DEPTH);
+
     @Override
     public CompletableFuture<double[]> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
         return datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_HEIGHTS).getAsync(boundsGeo, 16, 16);
     }
 
+    @Override
+    public CompletableFuture<double[]>[] requestRegionData(ChunkPos min, int size, BitSet columns, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        //sample the whole region at once, and then split the samples up into the individual columns
+        return IEarthAsyncPipelineStep.splitRegionSamples(datasets.<IScalarDataset>getCustom(EarthGeneratorPipelines.KEY_DATASET_HEIGHTS).getAsync(boundsGeo, size * 16, size * 16), size);
+    }
+
+    @Override
+    public boolean bakeInline() {
+        return true; //this only converts 256 samples
+    }
+
+    @Override
+    public Set<String> reads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> writes() {
+        return WRITES;
+    }
+
     @Override
     public void bake(ChunkPos pos, CachedChunkData.Builder builder, double[] heights) {
         if (heights == null) { //consider heights array to be filled with NaNs
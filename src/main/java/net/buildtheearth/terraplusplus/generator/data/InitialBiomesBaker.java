@@ -1,5 +1,6 @@
 package net.buildtheearth.terraplusplus.generator.data;
 
+import com.google.common.collect.ImmutableSet;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.buildtheearth.terraplusplus.generator.CachedChunkData;
@@ -13,6 +14,7 @@ import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.BiomeProvider;
 
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -20,6 +22,9 @@ import java.util.concurrent.CompletableFuture;
  */
 @RequiredArgsConstructor
 public class InitialBiomesBaker implements IEarthDataBaker<ImmutableCompactArray<Biome>> {
+    private static final Set<String> READS = ImmutableSet.of();
+    private static final Set<String> WRITES = ImmutableSet.of(CachedChunkData.FIELD_BIOMES);
+
     @NonNull
     protected final EarthBiomeProvider biomeProvider;
 
@@ -28,6 +33,21 @@ public class InitialBiomesBaker implements IEarthDataBaker<ImmutableCompactArray
         return this.biomeProvider.getBiomesForChunkAsync(pos);
     }
 
+    @Override
+    public boolean bakeInline() {
+        return true; //this only copies 256 biomes
+    }
+
+    @Override
+    public Set<String> reads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> writes() {
+        return WRITES;
+    }
+
     @Override
     public void bake(ChunkPos pos, CachedChunkData.Builder builder, ImmutableCompactArray<Biome> biomes) {
         if (biomes == null) { //can occur if chunk coordinates are outside projection bounds
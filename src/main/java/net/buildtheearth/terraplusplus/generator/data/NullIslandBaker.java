@@ -1,5 +1,6 @@
 package net.buildtheearth.terraplusplus.generator.data;
 
+import com.google.common.collect.ImmutableSet;
 import net.buildtheearth.terraplusplus.generator.CachedChunkData;
 import net.buildtheearth.terraplusplus.generator.EarthGenerator;
 import net.buildtheearth.terraplusplus.generator.EarthGeneratorPipelines;
@@ -11,6 +12,7 @@ import net.minecraft.init.Biomes;
 import net.minecraft.util.math.ChunkPos;
 
 import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -19,17 +21,35 @@ import java.util.concurrent.CompletableFuture;
  * @author DaPorkchop_
  */
 public class NullIslandBaker implements IEarthDataBaker<Void> {
+    private static final Set<String> READS = ImmutableSet.of(EarthGeneratorPipelines.KEY_DATA_TREE_COVER);
+    private static final Set<String> WRITES = ImmutableSet.of(CachedChunkData.FIELD_SURFACE_HEIGHT, CachedChunkData.FIELD_WATER_DEPTH, CachedChunkData.FIELD_BIOMES, EarthGeneratorPipelines.KEY_DATA_TREE_COVER);
+
     @Override
     public CompletableFuture<Void> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
         return null;
     }
 
+    @Override
+    public boolean bakeInline() {
+        return true; //this does nothing outside of null island
+    }
+
+    @Override
+    public Set<String> reads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> writes() {
+        return WRITES;
+    }
+
     @Override
     public void bake(ChunkPos pos, CachedChunkData.Builder builder, Void data) {
         if (EarthGenerator.isNullIsland(pos.x, pos.z)) {
             Arrays.fill(builder.surfaceHeight(), -1);
 
-            byte[] trees = builder.getCustom(EarthGeneratorPipelines.KEY_DATA_TREE_COVER, null);
+            byte[] trees = builder.getCustom(EarthGeneratorPipelines.ATTRIBUTE_TREE_COVER, null);
             if (trees != null) {
                 Arrays.fill(trees, (byte) 0);
             }
@@ -1,5 +1,6 @@
 package net.buildtheearth.terraplusplus.generator.data;
 
+import com.google.common.collect.ImmutableSet;
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
 import net.buildtheearth.terraplusplus.dataset.IElementDataset;
 import net.buildtheearth.terraplusplus.dataset.vector.geometry.VectorGeometry;
@@ -13,20 +14,45 @@ import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
 import net.minecraft.util.math.ChunkPos;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
 /**
  * @author DaPorkchop_
  */
 public class OSMBaker implements IEarthDataBaker<BVH<VectorGeometry>[]> {
+    private static final Set<String> READS = ImmutableSet.of(EarthGeneratorPipelines.KEY_DATA_TREE_COVER);
+    private static final Set<String> WRITES = ImmutableSet.of(CachedChunkData.FIELD_WATER_DEPTH, CachedChunkData.FIELD_SURFACE_BLOCKS, EarthGeneratorPipelines.KEY_DATA_TREE_COVER);
+
     @Override
     public CompletableFuture<BVH<VectorGeometry>[]> requestData(ChunkPos pos, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
         return datasets.<IElementDataset<BVH<VectorGeometry>>>getCustom(EarthGeneratorPipelines.KEY_DATASET_OSM_PARSED)
                 .getAsync(bounds.expand(16.0d).toCornerBB(datasets.projection(), false).toGeo());
     }
 
+    @Override
+    public CompletableFuture<BVH<VectorGeometry>[]>[] requestRegionData(ChunkPos min, int size, BitSet columns, GeneratorDatasets datasets, Bounds2d bounds, CornerBoundingBox2d boundsGeo) throws OutOfProjectionBoundsException {
+        //all columns can share the same elements, as each column only uses the elements which intersect it when baking
+        CompletableFuture<BVH<VectorGeometry>[]> future = this.requestData(min, datasets, bounds, boundsGeo);
+        CompletableFuture<BVH<VectorGeometry>[]>[] futures = uncheckedCast(new CompletableFuture[size * size]);
+        Arrays.fill(futures, future);
+        return futures;
+    }
+
+    @Override
+    public Set<String> reads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> writes() {
+        return WRITES;
+    }
+
     @Override
     public void bake(ChunkPos pos, CachedChunkData.Builder builder, BVH<VectorGeometry>[] regions) {
         if (regions == null) { //there's no data in this chunk... we're going to assume it's completely out of bounds
@@ -22,22 +22,26 @@ public class SnowPopulator implements IEarthPopulator {
 
     @Override
     public void populate(World world, Random random, CubePos pos, Biome biome, CachedChunkData[] datas) {
-        if (canSnow(pos.getMaxBlockPos(), world, true)) {
-            for (int i = 0, cx = 0; cx < 2; cx++) {
-                for (int cz = 0; cz < 2; cz++) {
-                    this.populateColumn(world, pos, datas[i++], (ICube.SIZE >> 1) * (cx + 1), (ICube.SIZE >> 1) * (cz + 1));
-                }
+        for (int i = 0, cx = 0; cx < 2; cx++) {
+            for (int cz = 0; cz < 2; cz++) {
+                this.populateColumn(world, pos, datas[i++], (ICube.SIZE >> 1) * (cx + 1), (ICube.SIZE >> 1) * (cz + 1));
             }
         }
     }
 
     protected void populateColumn(World world, CubePos pos, CachedChunkData data, int x, int z) {
-        if (!data.intersectsSurface(pos.getY(), 0, 1)) { //optimization: don't try to generate snow below the surface
+        if (!data.intersectsSurface(pos.getY(), 0, 1) //optimization: don't try to generate snow below the surface
+            || !data.canSnowAnywhere()) { //optimization: don't try to generate snow in columns which are too warm
             return;
         }
 
         for (int dx = 0; dx < ICube.SIZE >> 1; dx++) {
             for (int dz = 0; dz < ICube.SIZE >> 1; dz++) {
+                if (!data.canSnow((x + dx) & 0xF, (z + dz) & 0xF)) { //skip the world lookups if snow can't be placed here anyway
+                    continue;
+                }
+
+                //the surface still has to be found in the world, as it might have been changed by trees or structures
                 BlockPos bpos = ((ICubicWorld) world).getSurfaceForCube(pos, x + dx, z + dz, 0, ICubicWorld.SurfaceType.BLOCKING_MOVEMENT);
                 if (bpos != null && canSnow(bpos, world, false)) {
                     world.setBlockState(bpos, Blocks.SNOW_LAYER.getDefaultState());
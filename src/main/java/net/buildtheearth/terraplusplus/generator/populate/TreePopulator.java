@@ -3,12 +3,7 @@ package net.buildtheearth.terraplusplus.generator.populate;
 import com.google.common.collect.ImmutableSet;
 import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
 import io.github.opencubicchunks.cubicchunks.api.world.ICube;
-import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
 import net.buildtheearth.terraplusplus.generator.CachedChunkData;
-import net.buildtheearth.terraplusplus.generator.EarthGeneratorPipelines;
-import net.buildtheearth.terraplusplus.generator.data.TreeCoverBaker;
-import net.daporkchop.lib.common.reference.ReferenceStrength;
-import net.daporkchop.lib.common.reference.cache.Cached;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
@@ -31,40 +26,43 @@ public class TreePopulator implements IEarthPopulator {
             Blocks.SNOW,
             Blocks.MYCELIUM);
 
-    protected static final Cached<byte[]> RNG_CACHE = Cached.threadLocal(() -> new byte[(ICube.SIZE >> 1) * (ICube.SIZE >> 1)], ReferenceStrength.SOFT);
-
     @Override
     public void populate(World world, Random random, CubePos pos, Biome biome, CachedChunkData[] datas) {
-        byte[] rng = RNG_CACHE.get();
-
         for (int i = 0, cx = 0; cx < 2; cx++) {
             for (int cz = 0; cz < 2; cz++) {
-                this.populateColumn(world, random, pos, biome, datas[i++], (ICube.SIZE >> 1) * (cx + 1), (ICube.SIZE >> 1) * (cz + 1), rng);
+                this.populateColumn(world, random, pos, biome, datas[i++], (ICube.SIZE >> 1) * (cx + 1), (ICube.SIZE >> 1) * (cz + 1));
             }
         }
     }
 
-    protected void populateColumn(World world, Random random, CubePos pos, Biome biome, CachedChunkData data, int x, int z, byte[] rng) {
-        if (!data.intersectsSurface(pos.getY())) { //optimization: don't try to generate snow below the surface
+    protected void populateColumn(World world, Random random, CubePos pos, Biome biome, CachedChunkData data, int x, int z) {
+        if (!data.intersectsSurface(pos.getY())) { //optimization: don't try to generate trees below the surface
             return;
         }
 
-        byte[] treeCover = data.getCustom(EarthGeneratorPipelines.KEY_DATA_TREE_COVER, TreeCoverBaker.FALLBACK_TREE_DENSITY);
-        random.nextBytes(rng);
+        //the area populated by this cube is offset by half a cube on every axis
+        int minX = x & 0xF;
+        int minZ = z & 0xF;
+        int minY = pos.getMinBlockY() + (ICube.SIZE >> 1);
+        int maxY = pos.getMaxBlockY() + (ICube.SIZE >> 1);
+
+        for (long candidate : data.treeCandidates()) {
+            int candidateX = CachedChunkData.treeCandidateX(candidate);
+            int candidateZ = CachedChunkData.treeCandidateZ(candidate);
+            int candidateY = CachedChunkData.treeCandidateY(candidate);
+            if ((candidateX & 8) != minX || (candidateZ & 8) != minZ || candidateY < minY || candidateY > maxY) { //candidate isn't in this cube's area
+                continue;
+            }
 
-        for (int i = 0, dx = 0; dx < ICube.SIZE >> 1; dx++) {
-            for (int dz = 0; dz < ICube.SIZE >> 1; dz++, i++) {
-                if ((rng[i] & 0xFF) < (treeCover[(((x + dx) & 0xF) << 4) | ((z + dz) & 0xF)] & 0xFF)) {
-                    this.tryPlace(world, random, pos, biome, x + dx, z + dz);
-                }
+            if (random.nextInt(256) < CachedChunkData.treeCandidateChance(candidate)) {
+                this.tryPlace(world, random, new BlockPos(pos.getMinBlockX() + x + candidateX - minX, candidateY, pos.getMinBlockZ() + z + candidateZ - minZ), biome);
             }
         }
     }
 
-    protected void tryPlace(World world, Random random, CubePos pos, Biome biome, int x, int z) {
-        BlockPos blockPos = ((ICubicWorld) world).getSurfaceForCube(pos, x, z, 0, ICubicWorld.SurfaceType.OPAQUE);
-        if (blockPos != null && this.canPlaceAt(world, blockPos)) {
-            this.placeTree(world, random, blockPos, biome);
+    protected void tryPlace(World world, Random random, BlockPos pos, Biome biome) {
+        if (this.canPlaceAt(world, pos)) {
+            this.placeTree(world, random, pos, biome);
         }
     }
 
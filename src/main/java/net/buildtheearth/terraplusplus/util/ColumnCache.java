@@ -0,0 +1,355 @@
+package net.buildtheearth.terraplusplus.util;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import lombok.NonNull;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A bounded cache of asynchronously loaded values, keyed by column position.
+ * <p>
+ * Keys are column positions packed into a {@code long} using {@link ChunkPos#asLong(int, int)}. The cache is divided into a number of independently locked
+ * segments, each of which evicts its least recently used entries once it exceeds its share of the cache's maximum size.
+ * <p>
+ * Values are stored as {@link CompletableFuture}s, and the loader is only ever invoked once for a given key while it is present in the cache. Futures which
+ * are cancelled are removed from the cache immediately, so that the next access will try to load the value again. Futures which fail for any other reason
+ * are retained for {@link #FAILURE_RETENTION_NANOS}, to avoid retrying a failing load on every access.
+ * <p>
+ * An optional {@link Listener} may be notified whenever a value is successfully loaded into or removed from the cache.
+ *
+ * @author DaPorkchop_
+ */
+public final class ColumnCache<V> {
+    private static final int SEGMENT_SHIFT = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_COUNT - 1;
+
+    /**
+     * The amount of time for which failed values are retained before they may be loaded again.
+     */
+    public static final long FAILURE_RETENTION_NANOS = TimeUnit.MINUTES.toNanos(5L);
+
+    private static boolean isCancellation(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int segmentIndex(long key) {
+        //mix the bits of both coordinates so that neighboring columns are spread across all segments
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key >>> (64 - SEGMENT_SHIFT)) & SEGMENT_MASK;
+    }
+
+    private final Segment<V>[] segments;
+    private final LongFunction<CompletableFuture<V>> loader;
+    private final Listener listener;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maximumSize the maximum number of entries to retain
+     * @param loader      the function to use for loading values which are not present in the cache
+     */
+    public ColumnCache(int maximumSize, @NonNull LongFunction<CompletableFuture<V>> loader) {
+        this(maximumSize, loader, null);
+    }
+
+    /**
+     * @param maximumSize the maximum number of entries to retain
+     * @param loader      the function to use for loading values which are not present in the cache
+     * @param listener    the {@link Listener} to notify of changes to the cache. May be {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public ColumnCache(int maximumSize, @NonNull LongFunction<CompletableFuture<V>> loader, Listener listener) {
+        positive(maximumSize, "maximumSize");
+        this.loader = loader;
+        this.listener = listener;
+
+        int segmentSize = Math.max((maximumSize + SEGMENT_MASK) >> SEGMENT_SHIFT, 1);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            this.segments[i] = new Segment<>(segmentSize);
+        }
+    }
+
+    /**
+     * Gets the value for the given column, loading it if it isn't already present.
+     *
+     * @param x the column's X coordinate
+     * @param z the column's Z coordinate
+     * @return a {@link CompletableFuture} which will be completed with the value
+     */
+    public CompletableFuture<V> get(int x, int z) {
+        return this.get(ChunkPos.asLong(x, z));
+    }
+
+    /**
+     * Gets the value for the given column, loading it if it isn't already present.
+     *
+     * @param pos the column's position
+     * @return a {@link CompletableFuture} which will be completed with the value
+     */
+    public CompletableFuture<V> get(@NonNull ChunkPos pos) {
+        return this.get(ChunkPos.asLong(pos.x, pos.z));
+    }
+
+    /**
+     * Gets the value for the given column, loading it if it isn't already present.
+     *
+     * @param key the column's position, packed using {@link ChunkPos#asLong(int, int)}
+     * @return a {@link CompletableFuture} which will be completed with the value
+     */
+    public CompletableFuture<V> get(long key) {
+        Segment<V> segment = this.segments[segmentIndex(key)];
+        CompletableFuture<V> future;
+        synchronized (segment) {
+            future = segment.map.getAndMoveToLast(key);
+            if (future != null && this.expireFailure(segment, key)) { //the value failed to load a while ago, try again
+                future = null;
+            }
+            if (future != null) {
+                this.hits.increment();
+                return future;
+            }
+
+            this.misses.increment();
+            future = new CompletableFuture<>();
+            this.insert(segment, key, future);
+        }
+
+        //invoke the loader outside of the lock, using the placeholder future to prevent other threads from loading the same value again in the meantime
+        CompletableFuture<V> placeholder = future;
+        try {
+            this.loader.apply(key).whenComplete((value, cause) -> {
+                if (cause != null) {
+                    placeholder.completeExceptionally(cause);
+                } else {
+                    placeholder.complete(value);
+                }
+            });
+        } catch (Throwable t) {
+            placeholder.completeExceptionally(t);
+        }
+        return placeholder;
+    }
+
+    /**
+     * Gets the value for the given column, without loading it if it isn't already present.
+     *
+     * @param key the column's position, packed using {@link ChunkPos#asLong(int, int)}
+     * @return a {@link CompletableFuture} which will be completed with the value, or {@code null} if the value isn't present
+     */
+    public CompletableFuture<V> getIfPresent(long key) {
+        Segment<V> segment = this.segments[segmentIndex(key)];
+        synchronized (segment) {
+            return this.expireFailure(segment, key) ? null : segment.map.get(key);
+        }
+    }
+
+    /**
+     * Inserts the given value into the cache if no value for the given column is already present.
+     *
+     * @param key   the column's position, packed using {@link ChunkPos#asLong(int, int)}
+     * @param value a {@link CompletableFuture} which will be completed with the value
+     * @return the value which was already present, or {@code null} if the given value was inserted
+     */
+    public CompletableFuture<V> putIfAbsent(long key, @NonNull CompletableFuture<V> value) {
+        Segment<V> segment = this.segments[segmentIndex(key)];
+        synchronized (segment) {
+            CompletableFuture<V> existing = segment.map.get(key);
+            if (existing != null && !this.expireFailure(segment, key)) {
+                return existing;
+            }
+            this.insert(segment, key, value);
+            return null;
+        }
+    }
+
+    /**
+     * Removes the value for the given column from the cache.
+     *
+     * @param key the column's position, packed using {@link ChunkPos#asLong(int, int)}
+     */
+    public void invalidate(long key) {
+        Segment<V> segment = this.segments[segmentIndex(key)];
+        synchronized (segment) {
+            this.remove(segment, key);
+        }
+    }
+
+    /**
+     * Removes all values from the cache.
+     */
+    public void invalidateAll() {
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                if (this.listener != null) {
+                    segment.map.keySet().forEach(this.listener::removed);
+                }
+                segment.map.clear();
+                segment.failures.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries currently in the cache
+     */
+    public long size() {
+        long size = 0L;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the maximum number of entries which may be retained by the cache
+     */
+    public long maximumSize() {
+        return (long) this.segments[0].maximumSize * SEGMENT_COUNT;
+    }
+
+    /**
+     * @return the number of times a requested value was already present in the cache
+     */
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return the number of times a requested value had to be loaded
+     */
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the number of entries which were evicted due to the cache's size limit
+     */
+    public long evictions() {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hits = this.hits();
+        long misses = this.misses();
+        return "ColumnCache(size=" + this.size() + '/' + this.maximumSize()
+               + ", hits=" + hits + ", misses=" + misses
+               + ", hitRate=" + (hits + misses == 0L ? 0.0d : Math.round(hits * 1000.0d / (hits + misses)) / 10.0d) + '%'
+               + ", evictions=" + this.evictions() + ')';
+    }
+
+    /**
+     * Removes the value for the given column if it failed to load and has been retained for long enough.
+     *
+     * @return whether or not the value was removed
+     */
+    private boolean expireFailure(@NonNull Segment<V> segment, long key) {
+        long expiry = segment.failures.get(key);
+        if (expiry == Long.MIN_VALUE || expiry - System.nanoTime() > 0L) {
+            return false;
+        }
+        this.remove(segment, key);
+        return true;
+    }
+
+    private void remove(@NonNull Segment<V> segment, long key) {
+        segment.failures.remove(key);
+        if (segment.map.remove(key) != null && this.listener != null) {
+            this.listener.removed(key);
+        }
+    }
+
+    private void insert(@NonNull Segment<V> segment, long key, @NonNull CompletableFuture<V> future) {
+        segment.failures.remove(key);
+        segment.map.putAndMoveToLast(key, future);
+        while (segment.map.size() > segment.maximumSize) {
+            long evicted = segment.map.firstLongKey();
+            segment.map.removeFirst();
+            segment.failures.remove(evicted);
+            this.evictions.increment();
+            if (this.listener != null) {
+                this.listener.removed(evicted);
+            }
+        }
+
+        future.whenComplete((value, cause) -> {
+            synchronized (segment) {
+                if (segment.map.get(key) != future) { //the future has already been removed from the cache
+                    return;
+                }
+
+                if (cause != null && isCancellation(cause)) { //remove cancelled futures from the cache so that they can be retried immediately
+                    this.remove(segment, key);
+                } else if (cause != null) { //retain other failures for a while so that we don't keep retrying a failing load on every access
+                    segment.failures.put(key, System.nanoTime() + FAILURE_RETENTION_NANOS);
+                } else if (this.listener != null) {
+                    this.listener.loaded(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Receives notifications about changes to the contents of a {@link ColumnCache}.
+     * <p>
+     * Notifications are delivered while the affected part of the cache is locked, so implementations must be fast and must not access the cache.
+     *
+     * @author DaPorkchop_
+     */
+    public interface Listener {
+        /**
+         * Called when the value for the given column has been successfully loaded.
+         *
+         * @param key the column's position, packed using {@link ChunkPos#asLong(int, int)}
+         */
+        void loaded(long key);
+
+        /**
+         * Called when the value for the given column is removed from the cache.
+         * <p>
+         * This may be called for columns whose value had not been loaded yet.
+         *
+         * @param key the column's position, packed using {@link ChunkPos#asLong(int, int)}
+         */
+        void removed(long key);
+    }
+
+    /**
+     * A single segment of a {@link ColumnCache}.
+     *
+     * @author DaPorkchop_
+     */
+    private static final class Segment<V> {
+        private final Long2ObjectLinkedOpenHashMap<CompletableFuture<V>> map = new Long2ObjectLinkedOpenHashMap<>();
+
+        /**
+         * The times at which failed values in {@link #map} may be loaded again.
+         */
+        private final Long2LongOpenHashMap failures = new Long2LongOpenHashMap();
+        private final int maximumSize;
+
+        public Segment(int maximumSize) {
+            this.maximumSize = maximumSize;
+            this.failures.defaultReturnValue(Long.MIN_VALUE);
+        }
+    }
+}
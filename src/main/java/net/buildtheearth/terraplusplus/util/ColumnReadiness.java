@@ -0,0 +1,112 @@
+package net.buildtheearth.terraplusplus.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Keeps track of which columns in a {@link ColumnCache} have been successfully loaded.
+ * <p>
+ * Columns are grouped into square regions, each of which stores one bit per column. Checking whether a group of neighboring columns is ready therefore
+ * only requires a few bit tests, with no allocation and without looking anything up in the cache itself.
+ * <p>
+ * A column which isn't marked as ready may still be loading, may have failed, or may simply not be in the cache. Callers must fall back to checking the
+ * cache in that case.
+ *
+ * @author DaPorkchop_
+ */
+public final class ColumnReadiness implements ColumnCache.Listener {
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+
+    private static long regionKey(int x, int z) {
+        return ChunkPos.asLong(x >> REGION_SHIFT, z >> REGION_SHIFT);
+    }
+
+    private static int bitIndex(int x, int z) {
+        return ((x & REGION_MASK) << REGION_SHIFT) | (z & REGION_MASK);
+    }
+
+    private final Long2ObjectOpenHashMap<long[]> regions = new Long2ObjectOpenHashMap<>();
+
+    @Override
+    public void loaded(long key) {
+        int x = (int) key;
+        int z = (int) (key >>> 32);
+        int bit = bitIndex(x, z);
+
+        synchronized (this.regions) {
+            long[] region = this.regions.get(regionKey(x, z));
+            if (region == null) {
+                this.regions.put(regionKey(x, z), region = new long[(REGION_SIZE * REGION_SIZE) >>> 6]);
+            }
+            region[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    @Override
+    public void removed(long key) {
+        int x = (int) key;
+        int z = (int) (key >>> 32);
+        int bit = bitIndex(x, z);
+
+        synchronized (this.regions) {
+            long[] region = this.regions.get(regionKey(x, z));
+            if (region == null) {
+                return;
+            }
+
+            region[bit >>> 6] &= ~(1L << bit);
+            for (long word : region) {
+                if (word != 0L) {
+                    return;
+                }
+            }
+            this.regions.remove(regionKey(x, z)); //the region is now empty
+        }
+    }
+
+    /**
+     * Checks whether or not the given column is ready.
+     *
+     * @param x the column's X coordinate
+     * @param z the column's Z coordinate
+     * @return whether or not the column is ready
+     */
+    public boolean isReady(int x, int z) {
+        return this.allReady(x, z, x, z);
+    }
+
+    /**
+     * Checks whether or not every column in the given area is ready.
+     *
+     * @param minX the minimum X coordinate (inclusive)
+     * @param minZ the minimum Z coordinate (inclusive)
+     * @param maxX the maximum X coordinate (inclusive)
+     * @param maxZ the maximum Z coordinate (inclusive)
+     * @return whether or not every column in the area is ready
+     */
+    public boolean allReady(int minX, int minZ, int maxX, int maxZ) {
+        synchronized (this.regions) {
+            long lastRegionKey = 0L;
+            long[] region = null;
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    long regionKey = regionKey(x, z);
+                    if (region == null || regionKey != lastRegionKey) {
+                        if ((region = this.regions.get(regionKey)) == null) {
+                            return false;
+                        }
+                        lastRegionKey = regionKey;
+                    }
+
+                    int bit = bitIndex(x, z);
+                    if ((region[bit >>> 6] & (1L << bit)) == 0L) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package net.buildtheearth.terraplusplus.util;
+
+import lombok.NonNull;
+
+/**
+ * A compact, immutable array of {@code int}s.
+ * <p>
+ * Values are stored as unsigned offsets from the smallest value in the array, using the narrowest of {@code byte}, {@code char} or {@code int} which can
+ * hold the difference between the smallest and largest value. If every value is the same, no array is allocated at all, and small uniform arrays are
+ * shared.
+ *
+ * @author DaPorkchop_
+ */
+public final class CompactIntArray {
+    private static final int SHARED_MIN = -64;
+    private static final int SHARED_MAX = 255;
+    private static final int SHARED_LENGTH = 16 * 16;
+
+    private static final CompactIntArray[] SHARED_UNIFORM = new CompactIntArray[SHARED_MAX - SHARED_MIN + 1];
+
+    static {
+        for (int value = SHARED_MIN; value <= SHARED_MAX; value++) {
+            SHARED_UNIFORM[value - SHARED_MIN] = new CompactIntArray(SHARED_LENGTH, value, null, null, null);
+        }
+    }
+
+    /**
+     * Gets a {@link CompactIntArray} containing the given values.
+     *
+     * @param values the values. The array will not be retained.
+     * @return a {@link CompactIntArray} containing the given values
+     */
+    public static CompactIntArray of(@NonNull int[] values) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        if (values.length == 0 || min == max) {
+            return uniform(values.length, values.length == 0 ? 0 : min);
+        }
+
+        long range = (long) max - min;
+        if (range <= 0xFFL) {
+            byte[] bytes = new byte[values.length];
+            for (int i = 0; i < values.length; i++) {
+                bytes[i] = (byte) (values[i] - min);
+            }
+            return new CompactIntArray(values.length, min, bytes, null, null);
+        } else if (range <= 0xFFFFL) {
+            char[] chars = new char[values.length];
+            for (int i = 0; i < values.length; i++) {
+                chars[i] = (char) (values[i] - min);
+            }
+            return new CompactIntArray(values.length, min, null, chars, null);
+        } else {
+            return new CompactIntArray(values.length, 0, null, null, values.clone());
+        }
+    }
+
+    /**
+     * Gets a {@link CompactIntArray} in which every element has the same value.
+     *
+     * @param length the length of the array
+     * @param value  the value
+     * @return a {@link CompactIntArray} in which every element has the given value
+     */
+    public static CompactIntArray uniform(int length, int value) {
+        if (length == SHARED_LENGTH && value >= SHARED_MIN && value <= SHARED_MAX) {
+            return SHARED_UNIFORM[value - SHARED_MIN];
+        }
+        return new CompactIntArray(length, value, null, null, null);
+    }
+
+    private final int length;
+    private final int base;
+
+    private final byte[] bytes;
+    private final char[] chars;
+    private final int[] ints;
+
+    private CompactIntArray(int length, int base, byte[] bytes, char[] chars, int[] ints) {
+        this.length = length;
+        this.base = base;
+        this.bytes = bytes;
+        this.chars = chars;
+        this.ints = ints;
+    }
+
+    /**
+     * Gets the value at the given index.
+     * <p>
+     * For uniform arrays, the index is not checked.
+     *
+     * @param i the index
+     * @return the value
+     */
+    public int get(int i) {
+        if (this.bytes != null) {
+            return this.base + (this.bytes[i] & 0xFF);
+        } else if (this.chars != null) {
+            return this.base + this.chars[i];
+        } else if (this.ints != null) {
+            return this.ints[i];
+        } else {
+            return this.base;
+        }
+    }
+
+    /**
+     * @return the number of values in this array
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * @return whether or not every element of this array has the same value
+     */
+    public boolean isUniform() {
+        return this.bytes == null && this.chars == null && this.ints == null;
+    }
+}
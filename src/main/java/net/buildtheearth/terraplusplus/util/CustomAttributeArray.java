@@ -0,0 +1,110 @@
+package net.buildtheearth.terraplusplus.util;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * Equivalent to {@link CustomAttributeContainer}, but stores attributes in an array indexed by {@link CustomAttributeKey#slot()} rather than in a
+ * {@link Map}.
+ * <p>
+ * The string-keyed accessors are kept for compatibility, and simply resolve the corresponding {@link CustomAttributeKey}.
+ *
+ * @author DaPorkchop_
+ */
+@AllArgsConstructor
+public abstract class CustomAttributeArray {
+    protected static final Object[] EMPTY_ATTRIBUTES = new Object[0];
+
+    /**
+     * The attribute values, indexed by slot. {@code null} values indicate that the attribute is not set. May be shorter than {@link CustomAttributeKey#count()}.
+     */
+    @NonNull
+    protected Object[] custom;
+
+    /**
+     * Gets the custom attribute with the given key.
+     *
+     * @param key the key of the attribute to get
+     * @return the attribute
+     * @throws IllegalArgumentException if the attribute is not set
+     */
+    public <T> T getCustom(@NonNull CustomAttributeKey<T> key) {
+        T value = this.getCustom(key, null);
+        checkArg(value != null, "unknown property: \"%s\"", key);
+        return value;
+    }
+
+    /**
+     * Gets the custom attribute with the given key.
+     *
+     * @param key      the key of the attribute to get
+     * @param fallback the value to return if the attribute is not set
+     * @return the attribute
+     */
+    public <T> T getCustom(@NonNull CustomAttributeKey<T> key, T fallback) {
+        int slot = key.slot();
+        Object[] custom = this.custom;
+        if (slot < custom.length && custom[slot] != null) {
+            return uncheckedCast(custom[slot]);
+        }
+        return fallback;
+    }
+
+    /**
+     * Gets the custom attribute with the given name.
+     *
+     * @param key the name of the attribute to get
+     * @return the attribute
+     * @throws IllegalArgumentException if the attribute is not set
+     */
+    public <T> T getCustom(@NonNull String key) {
+        T value = this.getCustom(key, null);
+        checkArg(value != null, "unknown property: \"%s\"", key);
+        return value;
+    }
+
+    /**
+     * Gets the custom attribute with the given name.
+     *
+     * @param key      the name of the attribute to get
+     * @param fallback the value to return if the attribute is not set
+     * @return the attribute
+     */
+    public <T> T getCustom(@NonNull String key, T fallback) {
+        CustomAttributeKey<T> resolved = CustomAttributeKey.find(key);
+        return resolved != null ? this.getCustom(resolved, fallback) : fallback;
+    }
+
+    /**
+     * @return the number of custom attributes which are set
+     */
+    public int customCount() {
+        int count = 0;
+        for (Object value : this.custom) {
+            if (value != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Runs the given function on every custom attribute which is set.
+     *
+     * @param action the function to run
+     */
+    public void forEachCustom(@NonNull BiConsumer<CustomAttributeKey<?>, Object> action) {
+        Object[] custom = this.custom;
+        for (int slot = 0; slot < custom.length; slot++) {
+            if (custom[slot] != null) {
+                action.accept(CustomAttributeKey.bySlot(slot), custom[slot]);
+            }
+        }
+    }
+}
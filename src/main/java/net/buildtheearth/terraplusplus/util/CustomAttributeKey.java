@@ -0,0 +1,88 @@
+package net.buildtheearth.terraplusplus.util;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * A typed key which identifies a custom attribute stored in a {@link CustomAttributeArray}.
+ * <p>
+ * Keys are interned by name, and each key is assigned a small integer slot when it is first created. This allows attributes to be stored in a plain
+ * array rather than a string-keyed map, so keys used on hot paths should be resolved once (e.g. in a {@code static final} field) and then reused.
+ *
+ * @author DaPorkchop_
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+public final class CustomAttributeKey<T> {
+    private static final Map<String, CustomAttributeKey<?>> BY_NAME = new ConcurrentHashMap<>();
+    private static final List<CustomAttributeKey<?>> BY_SLOT = new ArrayList<>();
+
+    /**
+     * Gets the key with the given name, creating it if it doesn't exist yet.
+     *
+     * @param name the name of the key
+     * @return the key
+     */
+    public static <T> CustomAttributeKey<T> of(@NonNull String name) {
+        CustomAttributeKey<?> key = BY_NAME.get(name);
+        if (key == null) {
+            synchronized (BY_SLOT) {
+                key = BY_NAME.computeIfAbsent(name, n -> {
+                    CustomAttributeKey<?> k = new CustomAttributeKey<>(n, BY_SLOT.size());
+                    BY_SLOT.add(k);
+                    return k;
+                });
+            }
+        }
+        return uncheckedCast(key);
+    }
+
+    /**
+     * Gets the key with the given name, without creating it if it doesn't exist.
+     *
+     * @param name the name of the key
+     * @return the key, or {@code null} if no key with the given name exists
+     */
+    public static <T> CustomAttributeKey<T> find(@NonNull String name) {
+        return uncheckedCast(BY_NAME.get(name));
+    }
+
+    /**
+     * Gets the key which was assigned the given slot.
+     *
+     * @param slot the slot
+     * @return the key
+     */
+    public static CustomAttributeKey<?> bySlot(int slot) {
+        synchronized (BY_SLOT) {
+            return BY_SLOT.get(slot);
+        }
+    }
+
+    /**
+     * @return the number of keys which currently exist. All slots are less than this value.
+     */
+    public static int count() {
+        synchronized (BY_SLOT) {
+            return BY_SLOT.size();
+        }
+    }
+
+    @NonNull
+    private final String name;
+    private final int slot;
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,92 @@
+package net.buildtheearth.terraplusplus.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, with one bucket for each power of two nanoseconds.
+ * <p>
+ * Recording a sample is a handful of atomic increments, so this is cheap enough to be used on hot paths. Percentiles are only accurate to within a
+ * factor of two.
+ *
+ * @author DaPorkchop_
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Records a single sample.
+     *
+     * @param nanos the duration, in nanoseconds
+     */
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 0L);
+        this.buckets.incrementAndGet(nanos == 0L ? 0 : 63 - Long.numberOfLeadingZeros(nanos)); //index of the highest set bit
+        this.count.increment();
+        this.totalNanos.add(nanos);
+    }
+
+    /**
+     * @return the number of recorded samples
+     */
+    public long count() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return the sum of all recorded samples, in nanoseconds
+     */
+    public long totalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    /**
+     * @return the mean of all recorded samples, in nanoseconds
+     */
+    public double meanNanos() {
+        long count = this.count.sum();
+        return count != 0L ? this.totalNanos.sum() / (double) count : 0.0d;
+    }
+
+    /**
+     * Estimates the given percentile of all recorded samples.
+     *
+     * @param percentile the percentile, between {@code 0.0} and {@code 1.0}
+     * @return the upper bound of the bucket containing the percentile, in nanoseconds. If the percentile is in the highest bucket, which has no upper
+     * bound, {@link Long#MAX_VALUE} is returned.
+     */
+    public long percentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += snapshot[i] = this.buckets.get(i);
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            if ((seen += snapshot[i]) >= target && snapshot[i] != 0L) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1L;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Discards all recorded samples.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0L);
+        }
+        this.count.reset();
+        this.totalNanos.reset();
+    }
+}
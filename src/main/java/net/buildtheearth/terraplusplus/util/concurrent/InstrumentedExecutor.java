@@ -0,0 +1,174 @@
+package net.buildtheearth.terraplusplus.util.concurrent;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A named, fixed-size thread pool which keeps track of how long tasks spend waiting in its queue and running.
+ *
+ * @author DaPorkchop_
+ */
+public final class InstrumentedExecutor implements Executor {
+    /**
+     * The {@link InstrumentedExecutor} which owns the task currently being run by the current thread.
+     */
+    private static final ThreadLocal<InstrumentedExecutor> CURRENT = new ThreadLocal<>();
+
+    @Getter
+    private final String name;
+    private final ThreadPoolExecutor delegate;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final LongAdder inlined = new LongAdder();
+
+    /**
+     * @param name    the name of the pool, used for naming its threads
+     * @param threads the number of threads in the pool
+     */
+    public InstrumentedExecutor(@NonNull String name, int threads) {
+        positive(threads, "threads");
+        this.name = name;
+
+        this.delegate = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new DefaultThreadFactory("terra++ " + name, true, Thread.MIN_PRIORITY));
+        this.delegate.allowCoreThreadTimeOut(true); //don't keep idle threads around forever
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        long submitted = System.nanoTime();
+        this.delegate.execute(() -> {
+            long started = System.nanoTime();
+            CURRENT.set(this);
+            try {
+                task.run();
+            } finally {
+                CURRENT.remove();
+                long finished = System.nanoTime();
+                this.queueNanos.add(started - submitted);
+                this.runNanos.add(finished - started);
+                this.completed.increment();
+            }
+        });
+    }
+
+    /**
+     * @return whether or not the current thread is one of this pool's threads, and is currently running a task
+     */
+    public boolean inExecutor() {
+        return CURRENT.get() == this;
+    }
+
+    /**
+     * Gets a value using the given {@link Supplier} on one of this pool's threads.
+     * <p>
+     * If the current thread already belongs to this pool, the {@link Supplier} is run immediately instead of being submitted to the queue.
+     *
+     * @param supplier the {@link Supplier}
+     * @return a {@link CompletableFuture} which will be completed with the value
+     */
+    public <T> CompletableFuture<T> supply(@NonNull Supplier<T> supplier) {
+        if (!this.inExecutor()) {
+            return CompletableFuture.supplyAsync(supplier, this);
+        }
+
+        this.inlined.increment();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(supplier.get());
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+        return future;
+    }
+
+    /**
+     * Applies the given function to the result of the given {@link CompletableFuture} on one of this pool's threads.
+     * <p>
+     * If the future has already been completed and the current thread already belongs to this pool, the function is run immediately instead of being
+     * submitted to the queue.
+     *
+     * @param future   the {@link CompletableFuture}
+     * @param function the function
+     * @return a {@link CompletableFuture} which will be completed with the function's result
+     */
+    public <T, R> CompletableFuture<R> thenApply(@NonNull CompletableFuture<T> future, @NonNull Function<? super T, ? extends R> function) {
+        if (!future.isDone() || !this.inExecutor()) {
+            return future.thenApplyAsync(function, this);
+        }
+
+        this.inlined.increment();
+        return future.thenApply(function);
+    }
+
+    /**
+     * @return the number of threads in this pool
+     */
+    public int threads() {
+        return this.delegate.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the number of tasks which are waiting to be executed
+     */
+    public int queueDepth() {
+        return this.delegate.getQueue().size();
+    }
+
+    /**
+     * @return the approximate number of tasks which are currently being executed
+     */
+    public int activeTasks() {
+        return this.delegate.getActiveCount();
+    }
+
+    /**
+     * @return the number of tasks which have finished executing
+     */
+    public long completedTasks() {
+        return this.completed.sum();
+    }
+
+    /**
+     * @return the number of tasks which were run immediately on one of this pool's threads instead of being submitted to the queue
+     */
+    public long inlinedTasks() {
+        return this.inlined.sum();
+    }
+
+    /**
+     * @return the average time (in milliseconds) which finished tasks spent waiting in the queue
+     */
+    public double averageQueueMillis() {
+        long completed = this.completed.sum();
+        return completed != 0L ? this.queueNanos.sum() / (completed * 1_000_000.0d) : 0.0d;
+    }
+
+    /**
+     * @return the average time (in milliseconds) which finished tasks spent executing
+     */
+    public double averageRunMillis() {
+        long completed = this.completed.sum();
+        return completed != 0L ? this.runNanos.sum() / (completed * 1_000_000.0d) : 0.0d;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d threads, %d active, %d queued, %d completed, %d inlined (avg. %.2fms queued, %.2fms running)",
+                this.name, this.threads(), this.activeTasks(), this.queueDepth(), this.completedTasks(), this.inlinedTasks(), this.averageQueueMillis(), this.averageRunMillis());
+    }
+}
@@ -0,0 +1,41 @@
+package net.buildtheearth.terraplusplus.util.concurrent;
+
+import lombok.experimental.UtilityClass;
+import net.buildtheearth.terraplusplus.TerraConfig;
+
+/**
+ * The thread pools used for asynchronous terrain generation work.
+ * <p>
+ * Terra++ uses these instead of {@link java.util.concurrent.ForkJoinPool#commonPool()}, so that terrain generation doesn't compete with other mods for
+ * the common pool's threads, and so that each stage can be sized and monitored separately.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+public class TerraExecutors {
+    /**
+     * Used for requesting and baking the data for columns.
+     */
+    public final InstrumentedExecutor BAKE = new InstrumentedExecutor("bake", threads(TerraConfig.data.bakeThreads));
+
+    /**
+     * Used for parsing downloaded data.
+     */
+    public final InstrumentedExecutor DECODE = new InstrumentedExecutor("decode", threads(TerraConfig.data.decodeThreads));
+
+    /**
+     * Used for sampling and combining data from datasets.
+     */
+    public final InstrumentedExecutor SAMPLE = new InstrumentedExecutor("sample", threads(TerraConfig.data.sampleThreads));
+
+    private int threads(int configured) {
+        return configured > 0 ? configured : Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+    }
+
+    /**
+     * @return all of the executors
+     */
+    public InstrumentedExecutor[] all() {
+        return new InstrumentedExecutor[]{ BAKE, DECODE, SAMPLE };
+    }
+}
@@ -148,6 +148,16 @@ public class Disk {
         return CACHE_ROOT.resolveSibling("config").resolve(name);
     }
 
+    /**
+     * Gets the path to a file with the given name in the persistent data directory.
+     *
+     * @param name the file's name
+     * @return the path to the data file
+     */
+    public Path dataFile(@NonNull String name) {
+        return CACHE_ROOT.resolveSibling("data").resolve(name);
+    }
+
     private void pruneCache() throws IOException {
         if (!TerraConfig.reducedConsoleMessages) {
             TerraMod.LOGGER.info("running cache cleanup...");
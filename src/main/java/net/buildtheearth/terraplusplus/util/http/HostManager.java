@@ -18,6 +18,8 @@ import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpStatusClass;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
@@ -28,16 +30,20 @@ import io.netty.util.ReferenceCountUtil;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
+import net.buildtheearth.terraplusplus.TerraConfig;
 import net.buildtheearth.terraplusplus.TerraConstants;
 import net.daporkchop.lib.common.misc.string.PStrings;
 import net.daporkchop.lib.common.util.PorkUtil;
 
-import java.util.ArrayDeque;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static net.buildtheearth.terraplusplus.util.http.Http.*;
 import static net.daporkchop.lib.common.util.PValidation.*;
@@ -50,13 +56,16 @@ import static net.daporkchop.lib.common.util.PValidation.*;
 final class HostManager extends Host {
     private static final AttributeKey<Request> ATTR_REQUEST = AttributeKey.valueOf(Request.class, "terra++");
 
-    private final Deque<Request> pendingRequests = new ArrayDeque<>();
+    private final List<Request> pendingRequests = new ArrayList<>();
 
     private final EventLoop eventLoop;
     private final Bootstrap bootstrap;
 
     private int maxConcurrentRequests = 1;
     private int activeRequests;
+    private int activeSpeculativeRequests;
+
+    private final AtomicBoolean rescanScheduled = new AtomicBoolean();
 
     private final Set<Channel> channels = Collections.newSetFromMap(new IdentityHashMap<>());
     private ChannelFuture channelFuture;
@@ -80,12 +89,32 @@ final class HostManager extends Host {
      */
     public void submit(@NonNull String path, @NonNull Callback callback, @NonNull HttpHeaders headers) {
         this.eventLoop.submit(() -> { //force execution on network thread
+            if (this.maxSpeculativeRequests() == 0 && callback.priority().isSpeculative()) { //this host can't send speculative requests at all
+                callback.handle(null, new CancellationException());
+                return;
+            }
+
             this.pendingRequests.add(new Request(path, callback, headers)); //add to request queue
 
             this.tryWorkOffQueue();
         });
     }
 
+    /**
+     * Schedules the queued requests to be re-evaluated, in case a request which previously couldn't be sent now can be (e.g. because it is no longer
+     * speculative).
+     * <p>
+     * Multiple calls are coalesced until the re-evaluation has actually run.
+     */
+    public void priorityChanged() {
+        if (this.rescanScheduled.compareAndSet(false, true)) {
+            this.eventLoop.execute(() -> {
+                this.rescanScheduled.set(false);
+                this.tryWorkOffQueue();
+            });
+        }
+    }
+
     /**
      * Updates the maximum number of concurrent requests to this host.
      *
@@ -95,22 +124,71 @@ final class HostManager extends Host {
         this.maxConcurrentRequests = positive(maxConcurrentRequests, "maxConcurrentRequests");
     }
 
+    /**
+     * @return the maximum number of speculative requests which may be active at once
+     * @see RequestPriority#isSpeculative()
+     */
+    private int maxSpeculativeRequests() {
+        return this.maxConcurrentRequests * TerraConfig.http.maxSpeculativeRequestPercent / 100;
+    }
+
     private void tryWorkOffQueue() {
-        for (Request request; this.activeRequests < this.maxConcurrentRequests && (request = this.pendingRequests.peek()) != null && this.trySendRequest0(request); ) {
-            checkState(this.pendingRequests.poll() == request, "unable to remove request from queue!");
+        for (int index; this.activeRequests < this.maxConcurrentRequests && (index = this.nextRequestIndex()) >= 0 && this.trySendRequest0(this.pendingRequests.get(index)); ) {
+            this.pendingRequests.remove(index);
         }
     }
 
-    private boolean trySendRequest0(@NonNull Request request) {
-        if (request.callback.isCancelled()) { //future is already completed (probably due to cancellation), pretend that we handled it
-            return true;
+    /**
+     * Finds the index of the pending request with the lowest priority value, removing any cancelled requests along the way.
+     * <p>
+     * Priorities may change at any time, so we can't use a priority queue. Linearly scanning the queue is fast enough, as it is only done once per request.
+     * <p>
+     * Speculative requests are skipped if too many speculative requests are already active. Hosts which may not have any speculative requests active at
+     * all reject them as soon as they are submitted.
+     *
+     * @return the index of the next request to send, or {@code -1} if there are no pending requests which may be sent
+     */
+    private int nextRequestIndex() {
+        int bestIndex = -1;
+        double bestPriority = Double.POSITIVE_INFINITY;
+        boolean allowSpeculative = this.activeSpeculativeRequests < this.maxSpeculativeRequests();
+
+        for (int i = 0; i < this.pendingRequests.size(); ) {
+            Request request = this.pendingRequests.get(i);
+            if (request.callback.isCancelled()) { //the request's result is no longer needed, drop it
+                this.pendingRequests.remove(i);
+                request.callback.handle(null, new CancellationException());
+                if (bestIndex > i) {
+                    bestIndex--;
+                }
+                continue;
+            }
+
+            RequestPriority requestPriority = request.callback.priority();
+            if (!allowSpeculative && requestPriority.isSpeculative()) { //leave it in the queue until a speculative slot is freed up
+                i++;
+                continue;
+            }
+
+            double priority = requestPriority.priority();
+            if (bestIndex < 0 || priority < bestPriority) { //strict comparison ensures that requests with the same priority are sent in FIFO order
+                bestIndex = i;
+                bestPriority = priority;
+            }
+            i++;
         }
+        return bestIndex;
+    }
 
+    private boolean trySendRequest0(@NonNull Request request) {
         for (Channel channel : this.channels) {
             if (channel.attr(ATTR_REQUEST).compareAndSet(null, request)) { //the channel is currently inactive
                 channel.pipeline().addFirst("read_timeout", new ReadTimeoutHandler(TIMEOUT, TimeUnit.SECONDS));
                 channel.writeAndFlush(request.toNetty()); //send request
                 this.activeRequests++;
+                if (request.speculative = request.callback.priority().isSpeculative()) {
+                    this.activeSpeculativeRequests++;
+                }
                 return true;
             }
         }
@@ -154,7 +232,7 @@ final class HostManager extends Host {
                 // and the server closed it at the same time as we sent the request. let's re-submit the request
                 // so that it can be issued again on a new channel
 
-                this.pendingRequests.addFirst(request); //add to front of queue so that it doesn't have to wait through the entire queue again
+                this.pendingRequests.add(0, request); //add to front of queue so that it doesn't have to wait through the entire queue again
             }
 
             //working off the queue may open a new channel to replace this one if there are more pending requests
@@ -177,6 +255,9 @@ final class HostManager extends Host {
             checkState(request != null, "received response on inactive channel?!?");
 
             this.activeRequests--; //decrement active requests counter to enable another request to be made
+            if (request.speculative) {
+                this.activeSpeculativeRequests--;
+            }
 
             if (!HttpUtil.isKeepAlive(response)) { //response isn't keep-alive, close connection
                 //remove connection from active connections now to prevent it from
@@ -208,6 +289,13 @@ final class HostManager extends Host {
          */
         boolean isCancelled();
 
+        /**
+         * @return the request's priority
+         */
+        default RequestPriority priority() {
+            return RequestPriority.DEFAULT;
+        }
+
         /**
          * Handles the response body.
          *
@@ -232,6 +320,8 @@ final class HostManager extends Host {
         @NonNull
         protected final HttpHeaders headers;
 
+        protected boolean speculative; //whether or not the request was speculative when it was sent
+
         public HttpRequest toNetty() {
             DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, this.path);
             request.headers()
@@ -263,12 +353,34 @@ final class HostManager extends Host {
 
             ch.pipeline().addLast(
                     new HttpClientCodec(),
+                    new RangeChecker(),
                     new HttpContentDecompressor(),
                     new HttpObjectAggregator(Http.MAX_CONTENT_LENGTH),
                     this.httpHandler);
         }
     }
 
+    /**
+     * Fails requests for a byte range whose response contains the entire resource as soon as the response headers are received, rather than downloading
+     * the whole resource only to throw most of it away.
+     *
+     * @author DaPorkchop_
+     */
+    private static final class RangeChecker extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof HttpResponse && ((HttpResponse) msg).status().code() == HttpResponseStatus.OK.code()) {
+                Request request = ctx.channel().attr(ATTR_REQUEST).get();
+                if (request != null && request.headers.contains(HttpHeaderNames.RANGE)) {
+                    ReferenceCountUtil.release(msg);
+                    //the exception will reach the Handler, which fails the request and closes the channel
+                    throw new IOException("server ignored byte range for request: " + request.path);
+                }
+            }
+            super.channelRead(ctx, msg);
+        }
+    }
+
     /**
      * Relays messages that reach the tail of the Netty pipeline to the host manager.
      *
@@ -288,6 +400,9 @@ final class HostManager extends Host {
             if (request != null) { //inform request that it failed
                 request.callback.handle(null, cause);
                 HostManager.this.activeRequests--;
+                if (request.speculative) {
+                    HostManager.this.activeSpeculativeRequests--;
+                }
             }
 
             ctx.close();
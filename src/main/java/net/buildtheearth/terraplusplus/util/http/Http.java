@@ -16,7 +16,9 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.EmptyHttpHeaders;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http2.Http2SecurityUtil;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
@@ -32,6 +34,7 @@ import lombok.experimental.UtilityClass;
 import net.buildtheearth.terraplusplus.TerraConfig;
 import net.buildtheearth.terraplusplus.TerraConstants;
 import net.buildtheearth.terraplusplus.TerraMod;
+import net.buildtheearth.terraplusplus.util.concurrent.TerraExecutors;
 import net.daporkchop.lib.common.function.throwing.EFunction;
 import net.daporkchop.lib.common.reference.cache.Cached;
 import net.minecraft.network.NetworkManager;
@@ -41,6 +44,7 @@ import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.relauncher.Side;
 
 import javax.net.ssl.SSLException;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
@@ -48,11 +52,13 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -70,7 +76,7 @@ public class Http {
     protected final EventLoopGroup NETWORK_EVENT_LOOP_GROUP;
 
     static {
-        if (!TerraConstants.IS_TEST_ENVIRONMENT && TerraConfig.http.useVanillaNetworkThread) {
+        if (!TerraConstants.IS_TEST_ENVIRONMENT && !TerraConstants.IS_STANDALONE && TerraConfig.http.useVanillaNetworkThread) {
             //use the vanilla eventloop for the current side
             LazyLoadBase<? extends EventLoopGroup> eventLoopGroupLoader;
             if (FMLCommonHandler.instance().getSide() == Side.CLIENT) {
@@ -105,6 +111,8 @@ public class Http {
 
     protected static final Cached<Matcher> URL_FORMATTING_MATCHER_CACHE = Cached.regex(Pattern.compile("\\$\\{([a-z0-9.]+)}"));
 
+    protected static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("^bytes (\\d+)-(\\d+)/(?:\\d+|\\*)$", Pattern.CASE_INSENSITIVE);
+
     static {
         try {
             SSL_CONTEXT = SslContextBuilder.forClient()
@@ -118,6 +126,78 @@ public class Http {
 
     public static final RequestOptions DEFAULT_REQUEST_OPTIONS = RequestOptions.builder().build();
 
+    protected final ThreadLocal<RequestPriority> CURRENT_PRIORITY = ThreadLocal.withInitial(() -> RequestPriority.DEFAULT);
+
+    /**
+     * @return the {@link RequestPriority} which will be used for requests made by the current thread
+     */
+    public RequestPriority currentPriority() {
+        return CURRENT_PRIORITY.get();
+    }
+
+    /**
+     * Runs the given action, using the given {@link RequestPriority} for all requests made by the current thread while it is running.
+     * <p>
+     * Code which makes requests asynchronously (i.e. from another thread) should capture {@link #currentPriority()} beforehand and restore it using this
+     * method.
+     *
+     * @param priority the {@link RequestPriority} to use
+     * @param action   the action to run
+     * @return the action's result
+     */
+    public <T> T withPriority(@NonNull RequestPriority priority, @NonNull Supplier<T> action) {
+        RequestPriority old = CURRENT_PRIORITY.get();
+        if (old == priority) {
+            return action.get();
+        }
+
+        CURRENT_PRIORITY.set(priority);
+        try {
+            return action.get();
+        } finally {
+            CURRENT_PRIORITY.set(old);
+        }
+    }
+
+    /**
+     * Runs the given action, using the given {@link RequestPriority} for all requests made by the current thread while it is running.
+     *
+     * @param priority the {@link RequestPriority} to use
+     * @param action   the action to run
+     * @see #withPriority(RequestPriority, Supplier)
+     */
+    public void runWithPriority(@NonNull RequestPriority priority, @NonNull Runnable action) {
+        withPriority(priority, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Notifies every host that the {@link RequestPriority} of some of its queued requests may have changed in a way that allows them to be sent sooner.
+     * <p>
+     * Queued requests are normally only re-evaluated when a request is submitted or completed, so this must be called when e.g. a request stops being
+     * {@link RequestPriority#isSpeculative() speculative}, as otherwise it could wait forever on an idle host.
+     */
+    public void priorityChanged() {
+        MANAGERS.values().forEach(HostManager::priorityChanged);
+    }
+
+    /**
+     * Checks whether or not the given {@link Throwable} indicates that a request was cancelled.
+     *
+     * @param t the {@link Throwable}
+     * @return whether or not the {@link Throwable} is, or was caused by, a {@link CancellationException}
+     */
+    public boolean isCancellation(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private HostManager managerFor(@NonNull URL url) {
         return MANAGERS.computeIfAbsent(new Host(url), HostManager::new);
     }
@@ -131,6 +211,7 @@ public class Http {
      */
     public CompletableFuture<ByteBuf> get(@NonNull String url, @NonNull RequestOptions options) {
         CompletableFuture<ByteBuf> future = new CompletableFuture<>();
+        RequestPriority priority = currentPriority();
 
         class State implements BiConsumer<ByteBuf, Throwable>, HostManager.Callback {
             URL parsed;
@@ -138,11 +219,16 @@ public class Http {
 
             CacheEntry cacheEntry;
             ByteBuf cachedData;
-            HttpHeaders nextHeaders = EmptyHttpHeaders.INSTANCE;
+            HttpHeaders nextHeaders = rangeHeaders(options);
 
             @Override
             public synchronized boolean isCancelled() {
-                return future.isDone();
+                return future.isDone() || priority.isCancelled();
+            }
+
+            @Override
+            public RequestPriority priority() {
+                return priority;
             }
 
             @Override
@@ -160,18 +246,21 @@ public class Http {
 
                         long now = System.currentTimeMillis();
                         if (cacheEntry.isStale(now)) { //attempt to revalidate response data
+                            HttpStats.CACHE_MISSES.increment();
                             if (!TerraConfig.reducedConsoleMessages) {
                                 TerraMod.LOGGER.info("Cache stale: {}", this.parsed);
                             }
 
                             this.cacheEntry = cacheEntry;
                             this.cachedData = cachedData.retain();
-                            cacheEntry.touch(this.nextHeaders = new DefaultHttpHeaders());
+                            cacheEntry.touch(this.nextHeaders = new DefaultHttpHeaders().add(rangeHeaders(options)));
                         } else if (cacheEntry.isExpired(now)) { //discard data and pretend it doesn't exist
+                            HttpStats.CACHE_MISSES.increment();
                             if (!TerraConfig.reducedConsoleMessages) {
                                 TerraMod.LOGGER.info("Cache expired: {}", this.parsed);
                             }
                         } else { //return cached response value
+                            HttpStats.CACHE_HITS.increment();
                             if (!TerraConfig.reducedConsoleMessages) {
                                 TerraMod.LOGGER.info("Cache hit: {}", this.parsed);
                             }
@@ -179,6 +268,7 @@ public class Http {
                             return;
                         }
                     } else {
+                        HttpStats.CACHE_MISSES.increment();
                         if (!TerraConfig.reducedConsoleMessages) {
                             TerraMod.LOGGER.info("Cache miss: {}", this.parsed);
                         }
@@ -191,7 +281,7 @@ public class Http {
 
                 //cache miss, send the actual request
                 managerFor(this.parsed).submit(this.parsed.getFile(), this, this.nextHeaders);
-                this.nextHeaders = EmptyHttpHeaders.INSTANCE;
+                this.nextHeaders = rangeHeaders(options);
             }
 
             void handleCacheEntry(@NonNull CacheEntry cacheEntry, @NonNull ByteBuf cachedData) {
@@ -225,19 +315,25 @@ public class Http {
                     //if cacheEntry is non-null, it means we're currently attempting to refresh a stale entry
 
                     if (throwable != null) {
+                        if (!(throwable instanceof CancellationException)) {
+                            HttpStats.FAILED_REQUESTS.increment();
+                        }
                         if (this.cacheEntry != null) { //fall back to stale cache data
                             if (!TerraConfig.reducedConsoleMessages) {
                                 TerraMod.LOGGER.warn("Refresh failed, falling back to stale data in cache: {}", this.parsed);
                             }
                             this.handleCacheEntry(this.cacheEntry, this.cachedData);
                         } else {
-                            if (!TerraConfig.reducedConsoleMessages) {
+                            if (!TerraConfig.reducedConsoleMessages && !(throwable instanceof CancellationException)) {
                                 TerraMod.LOGGER.warn("Request failed: {}", this.parsed);
                             }
                             future.completeExceptionally(throwable);
                         }
                         return;
                     }
+                    HttpStats.REQUESTS.increment();
+                    HttpStats.BYTES_RECEIVED.add(response.content().readableBytes());
+
                     //attempt to parse cache entry
                     CacheEntry cacheEntry = new CacheEntry(response, this.parsed);
 
@@ -255,6 +351,9 @@ public class Http {
                         cacheEntry = cacheEntry.withStatus(this.cacheEntry.status);
                         copiedBuffer = this.cachedData.retain();
                     } else {
+                        if (options.rangeLength > 0L && cacheEntry.status == CacheEntry.STATUS_SUCCESS) {
+                            checkContentRange(response, options, this.parsed);
+                        }
                         copiedBuffer = response.content().copy();
                     }
                     try {
@@ -290,6 +389,7 @@ public class Http {
                 }
 
                 if ("file".equalsIgnoreCase(this.parsed.getProtocol())) { //it's a file, read from disk (also async)
+                    checkArg(options.rangeLength <= 0L, "byte ranges aren't supported for local files: %s", url);
                     Path path = Paths.get(url.substring("file://".length()));
                     if (!TerraConfig.reducedConsoleMessages) {
                         future.whenComplete((data, t) -> {
@@ -307,7 +407,9 @@ public class Http {
                 }
 
                 if (options.readFromCache) { //attempt to read from cache
-                    this.cacheFile = Disk.cacheFileFor(this.parsed.toString());
+                    this.cacheFile = Disk.cacheFileFor(options.rangeLength > 0L
+                            ? this.parsed.toString() + "#bytes=" + options.rangeOffset + '-' + (options.rangeOffset + options.rangeLength - 1L)
+                            : this.parsed.toString());
                     Disk.read(this.cacheFile).whenComplete(this);
                 } else { //send the actual request
                     managerFor(this.parsed).submit(this.parsed.getFile(), this, this.nextHeaders);
@@ -358,6 +460,8 @@ public class Http {
             return getSingle(urls[0], options, parseFunction);
         }
 
+        RequestPriority priority = currentPriority();
+
         class State implements BiConsumer<T, Throwable> {
             final CompletableFuture<T> future = new CompletableFuture<>();
             List<Throwable> suppressed;
@@ -375,6 +479,11 @@ public class Http {
             @Override
             public void accept(T value, Throwable cause) {
                 if (cause != null) {
+                    if (isCancellation(cause)) { //the request was cancelled, there's no point in trying any other URLs
+                        this.future.completeExceptionally(cause);
+                        return;
+                    }
+
                     if (this.suppressed == null) {
                         this.suppressed = new ArrayList<>();
                     }
@@ -391,7 +500,7 @@ public class Http {
 
             protected void advance() {
                 if (++this.i < urls.length) {
-                    getSingle(urls[this.i], options, parseFunction).whenComplete(this);
+                    withPriority(priority, () -> getSingle(urls[this.i], options, parseFunction)).whenComplete(this);
                 } else if (this.foundMissing) { //the best result from any of the URLs was a 404
                     if (this.suppressed != null) {
                         RuntimeException e = new RuntimeException();
@@ -429,7 +538,7 @@ public class Http {
                     } finally {
                         buf.release();
                     }
-                }));
+                }, TerraExecutors.DECODE));
     }
 
     public static String formatUrl(@NonNull Map<String, String> properties, @NonNull String url) {
@@ -464,6 +573,44 @@ public class Http {
         }
     }
 
+    /**
+     * @return the headers needed to request the byte range configured in the given {@link RequestOptions}
+     */
+    protected HttpHeaders rangeHeaders(@NonNull RequestOptions options) {
+        if (options.rangeLength <= 0L) {
+            return EmptyHttpHeaders.INSTANCE;
+        }
+        return new DefaultHttpHeaders().set(HttpHeaderNames.RANGE, "bytes=" + options.rangeOffset + '-' + (options.rangeOffset + options.rangeLength - 1L));
+    }
+
+    /**
+     * Ensures that a successful response to a request for a byte range contains exactly the requested bytes.
+     *
+     * @param response the HTTP response
+     * @param options  the {@link RequestOptions} which the request was made with
+     * @param url      the URL of the request
+     * @throws IOException if the response doesn't contain the requested byte range
+     */
+    protected void checkContentRange(@NonNull FullHttpResponse response, @NonNull RequestOptions options, @NonNull URL url) throws IOException {
+        if (response.status().code() != HttpResponseStatus.PARTIAL_CONTENT.code()) {
+            throw new IOException("server ignored byte range for URL \"" + url + "\": " + response.status());
+        }
+
+        //Content-Range: bytes <first>-<last>/<total or *>
+        String contentRange = response.headers().get(HttpHeaderNames.CONTENT_RANGE);
+        Matcher matcher = contentRange != null ? CONTENT_RANGE_PATTERN.matcher(contentRange.trim()) : null;
+        if (matcher == null || !matcher.matches()) {
+            throw new IOException("invalid Content-Range for URL \"" + url + "\": " + contentRange);
+        }
+
+        long first = Long.parseLong(matcher.group(1));
+        long last = Long.parseLong(matcher.group(2));
+        //the range may be cut short at the end of the resource, but must otherwise be exactly the requested one
+        if (first != options.rangeOffset || last < first || last - first + 1L > options.rangeLength || last - first + 1L != response.content().readableBytes()) {
+            throw new IOException("server sent the wrong byte range for URL \"" + url + "\": " + contentRange);
+        }
+    }
+
     protected <T> void copyResultTo(@NonNull CompletableFuture<T> src, @NonNull CompletableFuture<T> dst) {
         src.whenComplete((v, t) -> {
             if (t != null) {
@@ -498,5 +645,18 @@ public class Http {
          */
         @Builder.Default
         public final boolean followRedirects = true;
+
+        /**
+         * The offset of the first byte to request, if {@link #rangeLength} is positive.
+         */
+        @Builder.Default
+        public final long rangeOffset = 0L;
+
+        /**
+         * If positive, only this many bytes starting at {@link #rangeOffset} will be requested using an HTTP {@code Range} header. Each range is cached
+         * separately. The request fails if the server doesn't respond with exactly the requested range (e.g. because it doesn't support ranges).
+         */
+        @Builder.Default
+        public final long rangeLength = 0L;
     }
 }
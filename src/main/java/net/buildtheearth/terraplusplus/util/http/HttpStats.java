@@ -0,0 +1,54 @@
+package net.buildtheearth.terraplusplus.util.http;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global statistics about the requests made by {@link Http}, intended for diagnostics.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+public class HttpStats {
+    final LongAdder CACHE_HITS = new LongAdder();
+    final LongAdder CACHE_MISSES = new LongAdder();
+    final LongAdder REQUESTS = new LongAdder();
+    final LongAdder FAILED_REQUESTS = new LongAdder();
+    final LongAdder BYTES_RECEIVED = new LongAdder();
+
+    /**
+     * @return the number of requests which were served from the persistent cache without contacting the remote server
+     */
+    public long cacheHits() {
+        return CACHE_HITS.sum();
+    }
+
+    /**
+     * @return the number of requests which could not be served from the persistent cache
+     */
+    public long cacheMisses() {
+        return CACHE_MISSES.sum();
+    }
+
+    /**
+     * @return the number of HTTP requests which were completed successfully
+     */
+    public long requests() {
+        return REQUESTS.sum();
+    }
+
+    /**
+     * @return the number of HTTP requests which failed
+     */
+    public long failedRequests() {
+        return FAILED_REQUESTS.sum();
+    }
+
+    /**
+     * @return the total number of bytes received in HTTP response bodies
+     */
+    public long bytesReceived() {
+        return BYTES_RECEIVED.sum();
+    }
+}
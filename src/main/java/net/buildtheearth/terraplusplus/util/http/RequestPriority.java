@@ -0,0 +1,43 @@
+package net.buildtheearth.terraplusplus.util.http;
+
+/**
+ * The priority of a request made by {@link Http}.
+ * <p>
+ * Queued requests with a lower priority value are sent before those with a higher priority value, and requests with the same priority are sent in the order
+ * they were made. A priority may change over time: it is re-evaluated whenever the next request to send to a host is chosen.
+ * <p>
+ * The priority of a request is determined by {@link Http#currentPriority()} at the time the request is made.
+ *
+ * @author DaPorkchop_
+ */
+@FunctionalInterface
+public interface RequestPriority {
+    /**
+     * The priority used for requests which weren't made with any specific priority.
+     */
+    RequestPriority DEFAULT = () -> 0.0d;
+
+    /**
+     * @return the current priority value. Lower values are more urgent
+     */
+    double priority();
+
+    /**
+     * @return whether or not the request's result is no longer needed. Cancelled requests which haven't been sent yet are completed with a
+     * {@link java.util.concurrent.CancellationException}
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * @return whether or not the request's result may turn out not to be needed at all. Only a limited share of the concurrent requests to each host may
+     * be speculative, so that they can't delay requests whose results are definitely needed. Speculative requests to hosts which don't allow any are
+     * completed with a {@link java.util.concurrent.CancellationException}.
+     * <p>
+     * If a request stops being speculative while it is queued, {@link Http#priorityChanged()} must be called.
+     */
+    default boolean isSpeculative() {
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package net.buildtheearth.terraplusplus.dataset.scalar;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import net.buildtheearth.terraplusplus.TerraConstants;
+import net.buildtheearth.terraplusplus.dataset.IScalarDataset;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class ScalarTileStorageTest {
+    private static ScalarTileStorage parse(String json) throws Exception {
+        return TerraConstants.JSON_MAPPER.readValue(json, ScalarTileStorage.class);
+    }
+
+    @Test
+    public void testModeOnly() throws Exception {
+        ScalarTileStorage storage = parse("\"SHORT\"");
+        assertEquals(ScalarTileStorage.Mode.SHORT, storage.mode());
+        assertEquals(0.0d, storage.offset(), 0.0d);
+        assertEquals(1.0d, storage.scale(), 0.0d);
+    }
+
+    @Test
+    public void testObject() throws Exception {
+        ScalarTileStorage storage = parse("{ \"mode\": \"SHORT\", \"offset\": -5.0, \"scale\": 0.25 }");
+        assertEquals(ScalarTileStorage.Mode.SHORT, storage.mode());
+        assertEquals(-5.0d, storage.offset(), 0.0d);
+        assertEquals(0.25d, storage.scale(), 0.0d);
+
+        storage = parse("{ \"mode\": \"DOUBLE\" }");
+        assertEquals(ScalarTileStorage.Mode.DOUBLE, storage.mode());
+        assertEquals(0.0d, storage.offset(), 0.0d);
+        assertEquals(1.0d, storage.scale(), 0.0d);
+
+        //serialized storage can be read again
+        storage = parse(TerraConstants.JSON_MAPPER.writeValueAsString(new ScalarTileStorage(ScalarTileStorage.Mode.SHORT, 1.5d, 0.5d)));
+        assertEquals(ScalarTileStorage.Mode.SHORT, storage.mode());
+        assertEquals(1.5d, storage.offset(), 0.0d);
+        assertEquals(0.5d, storage.scale(), 0.0d);
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String json : new String[]{ "\"NOT_A_MODE\"", "{ \"offset\": 1.0 }", "{ \"mode\": \"SHORT\", \"scale\": 0.0 }", "{ \"mode\": \"SHORT\", \"foo\": 1 }", "1.0" }) {
+            try {
+                parse(json);
+                fail(json);
+            } catch (Exception expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testTreeCoverDataset() throws Exception {
+        JsonNode datasets = TerraConstants.JSON_MAPPER.readTree(MultiScalarDataset.class.getResource("tree_cover.json5"));
+        assertTrue(datasets.size() > 0);
+
+        for (JsonNode dataset : datasets) {
+            IScalarDataset parsed = TerraConstants.JSON_MAPPER.treeToValue(dataset.get("dataset"), IScalarDataset.class);
+            assertTrue(parsed instanceof DoubleTiledDataset);
+
+            ScalarTileStorage storage = ((DoubleTiledDataset) parsed).storage();
+            assertEquals(ScalarTileStorage.Mode.SHORT, storage.mode());
+
+            //every possible tree cover value must survive being stored
+            double[] values = new double[101];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i / 100.0d;
+            }
+            ScalarTile tile = storage.store(values.clone());
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], tile.get(i), 1.0e-9d);
+            }
+        }
+    }
+}
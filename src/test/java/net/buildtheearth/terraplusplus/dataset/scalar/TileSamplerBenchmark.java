@@ -0,0 +1,166 @@
+package net.buildtheearth.terraplusplus.dataset.scalar;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.buildtheearth.terraplusplus.dataset.BlendMode;
+import net.buildtheearth.terraplusplus.util.IntToDoubleBiFunction;
+import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
+import net.daporkchop.lib.common.math.BinMath;
+
+import static net.daporkchop.lib.common.math.PMath.*;
+
+/**
+ * Standalone timing harness which compares sampling a column's worth of values through {@link TileSampler} and {@link BlendMode#getRow} against the
+ * previous implementation, which looked up every raw sample's tile in a {@link Long2ObjectOpenHashMap} and computed every point's coordinates
+ * individually.
+ * <p>
+ * This isn't a unit test, run it manually using {@link #main(String...)}. Each iteration simulates one {@link DoubleTiledDataset} sampling state: the
+ * tiles covering the padded query area are collected into the lookup structure, and then a 16x16 grid of values is sampled from them.
+ *
+ * @author DaPorkchop_
+ */
+public class TileSamplerBenchmark {
+    private static final int SHIFT = 8;
+    private static final int RESOLUTION = 1 << SHIFT;
+    private static final int TILES = 4;
+
+    private static final int SIZE = 16;
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 200_000;
+
+    private static final ScalarTile[] SOURCE_TILES = new ScalarTile[TILES * TILES];
+
+    private static volatile double sink;
+
+    public static void main(String... args) {
+        for (int tileX = 0; tileX < TILES; tileX++) {
+            for (int tileZ = 0; tileZ < TILES; tileZ++) {
+                double[] values = new double[RESOLUTION * RESOLUTION];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Math.sin(i * 0.37d) * 100.0d + tileX * 7.0d - tileZ * 3.0d;
+                }
+                SOURCE_TILES[tileX * TILES + tileZ] = ScalarTileStorage.of(ScalarTileStorage.Mode.FLOAT).store(values);
+            }
+        }
+
+        //a query area which lies entirely within a single tile, and one which straddles the corner between 4 tiles
+        double[][] areas = {
+                { 300.25d, 300.25d + SIZE * 0.6d, 400.75d, 400.75d + SIZE * 0.6d },
+                { 507.5d, 507.5d + SIZE * 0.6d, 505.0d, 505.0d + SIZE * 0.6d },
+        };
+
+        for (BlendMode blend : BlendMode.values()) {
+            for (double[] area : areas) {
+                for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                    runOld(blend, area);
+                    runNew(blend, area);
+                }
+
+                long oldTime = 0L;
+                long newTime = 0L;
+                for (int round = 0; round < ROUNDS; round++) {
+                    oldTime += runOld(blend, area);
+                    newTime += runNew(blend, area);
+                }
+
+                System.out.printf("%-6s %s: old %.1f ns/query, new %.1f ns/query (%.2fx)%n",
+                        blend, tileCount(blend, area) == 1 ? "single tile" : "multi tile ",
+                        (double) oldTime / (ROUNDS * ITERATIONS), (double) newTime / (ROUNDS * ITERATIONS), (double) oldTime / newTime);
+            }
+        }
+    }
+
+    private static Bounds2d paddedBounds(BlendMode blend, double[] area) {
+        return Bounds2d.of(area[0] - blend.size, area[1] + blend.size, area[2] - blend.size, area[3] + blend.size);
+    }
+
+    private static int tileCount(BlendMode blend, double[] area) {
+        return new TileSampler(SHIFT, paddedBounds(blend, area)).tileCount();
+    }
+
+    private static long runOld(BlendMode blend, double[] area) {
+        Bounds2d paddedBounds = paddedBounds(blend, area);
+        double stepX = 1.0d / SIZE;
+        double stepZ = 1.0d / SIZE;
+        double[] out = new double[SIZE * SIZE];
+        double sum = 0.0d;
+
+        long start = System.nanoTime();
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            HashMapSampler sampler = new HashMapSampler();
+            //same tile range as Bounds2d#toTiles, which was used to determine which tiles to fetch
+            int minTileX = floorI(paddedBounds.minX() / RESOLUTION);
+            int maxTileX = ceilI(paddedBounds.maxX() / RESOLUTION);
+            int minTileZ = floorI(paddedBounds.minZ() / RESOLUTION);
+            int maxTileZ = ceilI(paddedBounds.maxZ() / RESOLUTION);
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                for (int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++) {
+                    synchronized (sampler.loadedTiles) {
+                        sampler.loadedTiles.put(BinMath.packXY(tileX, tileZ), SOURCE_TILES[tileX * TILES + tileZ]);
+                    }
+                }
+            }
+
+            double fx = 0.0d;
+            for (int i = 0, x = 0; x < SIZE; x++, fx += stepX) {
+                double fz = 0.0d;
+                for (int z = 0; z < SIZE; z++, fz += stepZ) {
+                    //the query area is axis-aligned here, but the old implementation still interpolated between all 4 corners for every point
+                    double pointX = lerp(lerp(area[0], area[0], fz), lerp(area[1], area[1], fz), fx);
+                    double pointZ = lerp(lerp(area[2], area[3], fz), lerp(area[2], area[3], fz), fx);
+                    out[i++] = blend.get(pointX, pointZ, sampler);
+                }
+            }
+            sum += out[iteration & (out.length - 1)];
+        }
+        long time = System.nanoTime() - start;
+
+        sink = sum;
+        return time;
+    }
+
+    private static long runNew(BlendMode blend, double[] area) {
+        Bounds2d paddedBounds = paddedBounds(blend, area);
+        double stepX = 1.0d / SIZE;
+        double stepZ = 1.0d / SIZE;
+        double[] out = new double[SIZE * SIZE];
+        double sum = 0.0d;
+
+        long start = System.nanoTime();
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            TileSampler sampler = new TileSampler(SHIFT, paddedBounds);
+            for (int i = 0; i < sampler.tileCount(); i++) {
+                sampler.put(i, SOURCE_TILES[sampler.tileX(i) * TILES + sampler.tileZ(i)]);
+            }
+
+            double fx = 0.0d;
+            for (int x = 0; x < SIZE; x++, fx += stepX) {
+                double rowX = lerp(area[0], area[1], fx);
+                blend.getRow(rowX, area[2], 0.0d, (area[3] - area[2]) * stepZ, SIZE, sampler, out, x * SIZE);
+            }
+            sum += out[iteration & (out.length - 1)];
+        }
+        long time = System.nanoTime() - start;
+
+        sink = sum;
+        return time;
+    }
+
+    /**
+     * The raw sample lookup used by {@link DoubleTiledDataset} before {@link TileSampler} was introduced.
+     */
+    private static final class HashMapSampler implements IntToDoubleBiFunction {
+        final Long2ObjectMap<ScalarTile> loadedTiles = new Long2ObjectOpenHashMap<>();
+
+        @Override
+        public double apply(int x, int z) {
+            ScalarTile tile = this.loadedTiles.get(BinMath.packXY(x >> SHIFT, z >> SHIFT));
+            if (tile == null) {
+                return Double.NaN;
+            }
+            return tile.get((z & (RESOLUTION - 1)) << SHIFT | (x & (RESOLUTION - 1)));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.buildtheearth.terraplusplus.dataset.scalar;
+
+import net.buildtheearth.terraplusplus.dataset.BlendMode;
+import net.buildtheearth.terraplusplus.util.IntToDoubleBiFunction;
+import net.buildtheearth.terraplusplus.util.bvh.Bounds2d;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TileSamplerTest {
+    private static final int SHIFT = 4;
+    private static final int RESOLUTION = 1 << SHIFT;
+
+    private static final double PRECISION = 1e-9;
+
+    private static double value(int x, int z) {
+        return Math.sin(x * 0.37d) * 100.0d + Math.cos(z * 0.21d) * 50.0d + x - z;
+    }
+
+    private static ScalarTile tile(int tileX, int tileZ) {
+        double[] values = new double[RESOLUTION * RESOLUTION];
+        for (int x = 0; x < RESOLUTION; x++) {
+            for (int z = 0; z < RESOLUTION; z++) {
+                values[z * RESOLUTION + x] = value((tileX << SHIFT) + x, (tileZ << SHIFT) + z);
+            }
+        }
+        return ScalarTileStorage.of(ScalarTileStorage.Mode.DOUBLE).store(values);
+    }
+
+    private static TileSampler sampler(Bounds2d bounds) {
+        TileSampler sampler = new TileSampler(SHIFT, bounds);
+        for (int i = 0; i < sampler.tileCount(); i++) {
+            sampler.put(i, tile(sampler.tileX(i), sampler.tileZ(i)));
+        }
+        return sampler;
+    }
+
+    @Test
+    public void testMultipleTiles() {
+        Bounds2d bounds = Bounds2d.of(-20.5d, 27.25d, -3.0d, 9.75d);
+        TileSampler sampler = sampler(bounds);
+        assertEquals(4 * 2, sampler.tileCount());
+
+        for (int x = -21; x <= 27; x++) {
+            for (int z = -3; z <= 9; z++) {
+                assertEquals(value(x, z), sampler.apply(x, z), 0.0d);
+            }
+        }
+    }
+
+    @Test
+    public void testSingleTile() {
+        Bounds2d bounds = Bounds2d.of(33.0d, 46.5d, -31.5d, -17.0d);
+        TileSampler sampler = sampler(bounds);
+        assertEquals(1, sampler.tileCount());
+
+        for (int x = 33; x <= 46; x++) {
+            for (int z = -32; z <= -17; z++) {
+                assertEquals(value(x, z), sampler.apply(x, z), 0.0d);
+            }
+        }
+    }
+
+    @Test
+    public void testMissingTile() {
+        TileSampler sampler = new TileSampler(SHIFT, Bounds2d.of(0.0d, 31.0d, 0.0d, 15.0d));
+        sampler.put(0, tile(0, 0));
+        sampler.put(1, null);
+
+        assertEquals(value(3, 4), sampler.apply(3, 4), 0.0d);
+        assertTrue(Double.isNaN(sampler.apply(20, 4)));
+        assertTrue(Double.isNaN(sampler.apply(-1, 4))); //outside of the sampled area
+    }
+
+    @Test
+    public void testRowMatchesIndividualPoints() {
+        IntToDoubleBiFunction sampler = TileSamplerTest::value;
+        Random random = new Random(1337L);
+
+        for (BlendMode blend : BlendMode.values()) {
+            for (int attempt = 0; attempt < 64; attempt++) {
+                double startX = random.nextDouble() * 1000.0d - 500.0d;
+                double startZ = random.nextDouble() * 1000.0d - 500.0d;
+                double stepX = random.nextDouble() * 2.0d - 1.0d;
+                double stepZ = random.nextDouble() * 2.0d - 1.0d;
+                int count = 16;
+
+                double[] row = new double[count + 1];
+                blend.getRow(startX, startZ, stepX, stepZ, count, sampler, row, 1);
+
+                for (int i = 0; i < count; i++) {
+                    double expected = blend.get(startX + i * stepX, startZ + i * stepZ, sampler);
+                    assertEquals(blend.name(), expected, row[i + 1], PRECISION * Math.max(Math.abs(expected), 1.0d));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package net.buildtheearth.terraplusplus.dataset.scalar.cog;
+
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+import static net.buildtheearth.terraplusplus.dataset.scalar.cog.TiffImage.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TiffImageTest {
+    private static final int TILE_SIZE = 16;
+    private static final double NODATA = -9999.0d;
+
+    private static double value(int x, int z) {
+        if (x == 5 && z == 7) {
+            return NODATA;
+        }
+        return (x * 37 + z * 11) % 500 - 250;
+    }
+
+    private static double floatValue(int x, int z) {
+        return (float) (Math.sin(x * 0.37d) * 100.0d + Math.cos(z * 0.21d) * 50.0d);
+    }
+
+    @Test
+    public void testIntegerDeflate() throws Exception {
+        byte[] file = write(ByteOrder.LITTLE_ENDIAN,
+                new Image(20, 12, 16, SAMPLE_FORMAT_SIGNED, COMPRESSION_DEFLATE, PREDICTOR_HORIZONTAL, false, TiffImageTest::value),
+                new Image(40, 24, 16, SAMPLE_FORMAT_SIGNED, COMPRESSION_DEFLATE, PREDICTOR_HORIZONTAL, true, TiffImageTest::value));
+
+        List<TiffImage> images = TiffImage.parse(Unpooled.wrappedBuffer(file));
+        assertEquals(2, images.size());
+
+        TiffImage full = images.get(0);
+        assertEquals(40, full.width());
+        assertEquals(24, full.height());
+        assertEquals(3, full.tilesAcross());
+        assertEquals(2, full.tilesDown());
+        assertEquals(NODATA, full.noData(), 0.0d);
+        assertArrayEquals(new double[]{ 0.5d, 0.25d, 0.0d }, full.pixelScale(), 0.0d);
+        assertArrayEquals(new double[]{ 0.0d, 0.0d, 0.0d, -10.0d, 20.0d, 0.0d }, full.tiepoint(), 0.0d);
+        assertFalse(full.pixelIsPoint());
+
+        TiffImage overview = images.get(1);
+        assertEquals(20, overview.width());
+        assertNull(overview.tiepoint());
+
+        checkTiles(full, file, TiffImageTest::value);
+        checkTiles(overview, file, TiffImageTest::value);
+    }
+
+    @Test
+    public void testFloatLzw() throws Exception {
+        byte[] file = write(ByteOrder.BIG_ENDIAN,
+                new Image(30, 17, 16, SAMPLE_FORMAT_FLOATING_POINT, COMPRESSION_LZW, PREDICTOR_FLOATING_POINT, true, TiffImageTest::floatValue));
+
+        List<TiffImage> images = TiffImage.parse(Unpooled.wrappedBuffer(file));
+        assertEquals(1, images.size());
+        assertFalse(images.get(0).littleEndian());
+        assertTrue(Double.isNaN(images.get(0).noData()));
+
+        checkTiles(images.get(0), file, TiffImageTest::floatValue);
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        byte[] file = write(ByteOrder.LITTLE_ENDIAN,
+                new Image(40, 24, 16, SAMPLE_FORMAT_SIGNED, COMPRESSION_NONE, PREDICTOR_NONE, true, TiffImageTest::value));
+
+        int ifdOffset = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN).getInt(4);
+        try {
+            TiffImage.parse(Unpooled.wrappedBuffer(file, 0, ifdOffset + 8));
+            fail();
+        } catch (TiffImage.TruncatedException e) {
+            assertTrue(e.requiredLength() > ifdOffset + 8);
+            assertTrue(e.requiredLength() <= file.length);
+        }
+
+        checkTiles(TiffImage.parse(Unpooled.wrappedBuffer(file)).get(0), file, TiffImageTest::value);
+    }
+
+    @Test
+    public void testNoData() {
+        assertEquals(-9999.0d, TiffImage.parseNoData(" -9999 "), 0.0d);
+        assertEquals(3.5e38d, TiffImage.parseNoData("3.5e+38"), 0.0d);
+        assertTrue(Double.isNaN(TiffImage.parseNoData("nan")));
+        assertTrue(Double.isNaN(TiffImage.parseNoData("-NaN")));
+        assertTrue(Double.isNaN(TiffImage.parseNoData("")));
+        assertEquals(Double.POSITIVE_INFINITY, TiffImage.parseNoData("inf"), 0.0d);
+        assertEquals(Double.POSITIVE_INFINITY, TiffImage.parseNoData("+Infinity"), 0.0d);
+        assertEquals(Double.NEGATIVE_INFINITY, TiffImage.parseNoData("-INF"), 0.0d);
+    }
+
+    private static void checkTiles(TiffImage image, byte[] file, ValueFunction function) throws Exception {
+        for (int tileX = 0; tileX < image.tilesAcross(); tileX++) {
+            for (int tileZ = 0; tileZ < image.tilesDown(); tileZ++) {
+                assertTrue(image.hasTile(tileX, tileZ));
+                double[] values = TiffTileDecoder.decode(image, tileX, tileZ,
+                        Unpooled.wrappedBuffer(file, (int) image.tileOffset(tileX, tileZ), (int) image.tileByteCount(tileX, tileZ)));
+
+                for (int z = 0; z < TILE_SIZE; z++) {
+                    for (int x = 0; x < TILE_SIZE; x++) {
+                        int px = tileX * TILE_SIZE + x;
+                        int pz = tileZ * TILE_SIZE + z;
+                        double value = values[z * TILE_SIZE + x];
+
+                        if (px >= image.width() || pz >= image.height() || function.value(px, pz) == image.noData()) {
+                            assertTrue(Double.isNaN(value));
+                        } else {
+                            assertEquals(function.value(px, pz), value, 0.0d);
+                        }
+                    }
+                }
+            }
+        }
+
+        assertFalse(image.hasTile(image.tilesAcross(), 0));
+        assertFalse(image.hasTile(-1, 0));
+    }
+
+    @FunctionalInterface
+    private interface ValueFunction {
+        double value(int x, int z);
+    }
+
+    private static final class Image {
+        final int width;
+        final int height;
+        final int bits;
+        final int sampleFormat;
+        final int compression;
+        final int predictor;
+        final boolean georeferenced;
+        final ValueFunction function;
+
+        Image(int width, int height, int bits, int sampleFormat, int compression, int predictor, boolean georeferenced, ValueFunction function) {
+            this.width = width;
+            this.height = height;
+            this.bits = sampleFormat == SAMPLE_FORMAT_FLOATING_POINT ? 32 : bits;
+            this.sampleFormat = sampleFormat;
+            this.compression = compression;
+            this.predictor = predictor;
+            this.georeferenced = georeferenced;
+            this.function = function;
+        }
+
+        byte[] encodeTile(int tileX, int tileZ, ByteOrder order) {
+            int bytes = this.bits >>> 3;
+            long mask = (1L << this.bits) - 1L;
+            ByteBuffer raw = ByteBuffer.allocate(TILE_SIZE * TILE_SIZE * bytes).order(order);
+
+            for (int z = 0; z < TILE_SIZE; z++) {
+                long[] samples = new long[TILE_SIZE];
+                for (int x = 0; x < TILE_SIZE; x++) {
+                    int px = tileX * TILE_SIZE + x;
+                    int pz = tileZ * TILE_SIZE + z;
+                    double value = px < this.width && pz < this.height ? this.function.value(px, pz) : 0.0d;
+                    samples[x] = this.sampleFormat == SAMPLE_FORMAT_FLOATING_POINT ? Float.floatToIntBits((float) value) & mask : (long) value & mask;
+                }
+
+                if (this.predictor == PREDICTOR_HORIZONTAL) {
+                    for (int x = TILE_SIZE - 1; x > 0; x--) {
+                        samples[x] = (samples[x] - samples[x - 1]) & mask;
+                    }
+                } else if (this.predictor == PREDICTOR_FLOATING_POINT) {
+                    byte[] row = new byte[TILE_SIZE * bytes];
+                    for (int x = 0; x < TILE_SIZE; x++) {
+                        for (int b = 0; b < bytes; b++) { //most significant byte first
+                            row[b * TILE_SIZE + x] = (byte) (samples[x] >>> ((bytes - 1 - b) << 3));
+                        }
+                    }
+                    for (int i = row.length - 1; i > 0; i--) {
+                        row[i] -= row[i - 1];
+                    }
+                    raw.put(row);
+                    continue;
+                }
+
+                for (long sample : samples) {
+                    if (bytes == 2) {
+                        raw.putShort((short) sample);
+                    } else {
+                        raw.putInt((int) sample);
+                    }
+                }
+            }
+
+            switch (this.compression) {
+                case COMPRESSION_DEFLATE:
+                    return deflate(raw.array());
+                case COMPRESSION_LZW:
+                    return lzw(raw.array());
+                default:
+                    return raw.array();
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] lzw(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long[] bits = new long[2]; //buffer, count
+
+        Map<Integer, Integer> table = new HashMap<>();
+        int next = 258;
+        int width = 9;
+
+        writeCode(out, bits, 256, width);
+        int prefix = data[0] & 0xFF;
+        for (int i = 1; i < data.length; i++) {
+            int b = data[i] & 0xFF;
+            Integer code = table.get(prefix << 8 | b);
+            if (code != null) {
+                prefix = code;
+                continue;
+            }
+
+            writeCode(out, bits, prefix, width);
+            table.put(prefix << 8 | b, next++);
+            if (next == 4094) { //the table is full, start over
+                writeCode(out, bits, 256, width);
+                table.clear();
+                next = 258;
+                width = 9;
+            } else if (next > (1 << width) - 1) {
+                width++;
+            }
+            prefix = b;
+        }
+
+        writeCode(out, bits, prefix, width);
+        if (++next > (1 << width) - 1) {
+            width++;
+        }
+        writeCode(out, bits, 257, width);
+
+        if (bits[1] > 0L) {
+            out.write((int) (bits[0] << (8L - bits[1])));
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeCode(ByteArrayOutputStream out, long[] bits, int code, int width) {
+        bits[0] = (bits[0] << width) | code;
+        bits[1] += width;
+        while (bits[1] >= 8L) {
+            bits[1] -= 8L;
+            out.write((int) (bits[0] >>> bits[1]));
+        }
+    }
+
+    private static byte[] write(ByteOrder order, Image... images) {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 20).order(order);
+        buf.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M').put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        buf.putShort((short) 42).putInt(0);
+
+        int nextIfdPointer = 4;
+        for (Image image : images) {
+            int tilesAcross = (image.width + TILE_SIZE - 1) / TILE_SIZE;
+            int tilesDown = (image.height + TILE_SIZE - 1) / TILE_SIZE;
+            long[] offsets = new long[tilesAcross * tilesDown];
+            long[] byteCounts = new long[tilesAcross * tilesDown];
+            for (int tileZ = 0, i = 0; tileZ < tilesDown; tileZ++) {
+                for (int tileX = 0; tileX < tilesAcross; tileX++, i++) {
+                    byte[] tile = image.encodeTile(tileX, tileZ, order);
+                    offsets[i] = buf.position();
+                    byteCounts[i] = tile.length;
+                    buf.put(tile);
+                }
+            }
+
+            Map<Integer, byte[]> entries = new TreeMap<>();
+            entries.put(TAG_IMAGE_WIDTH, values(order, 4, image.width));
+            entries.put(TAG_IMAGE_LENGTH, values(order, 4, image.height));
+            entries.put(TAG_BITS_PER_SAMPLE, values(order, 3, image.bits));
+            entries.put(TAG_COMPRESSION, values(order, 3, image.compression));
+            entries.put(TAG_SAMPLES_PER_PIXEL, values(order, 3, 1));
+            entries.put(TAG_PREDICTOR, values(order, 3, image.predictor));
+            entries.put(TAG_TILE_WIDTH, values(order, 3, TILE_SIZE));
+            entries.put(TAG_TILE_LENGTH, values(order, 3, TILE_SIZE));
+            entries.put(TAG_TILE_OFFSETS, values(order, 4, offsets));
+            entries.put(TAG_TILE_BYTE_COUNTS, values(order, 4, byteCounts));
+            entries.put(TAG_SAMPLE_FORMAT, values(order, 3, image.sampleFormat));
+            if (image.georeferenced) {
+                entries.put(TAG_MODEL_PIXEL_SCALE, doubles(order, 0.5d, 0.25d, 0.0d));
+                entries.put(TAG_MODEL_TIEPOINT, doubles(order, 0.0d, 0.0d, 0.0d, -10.0d, 20.0d, 0.0d));
+                if (image.sampleFormat != SAMPLE_FORMAT_FLOATING_POINT) {
+                    entries.put(TAG_GDAL_NODATA, (String.valueOf((int) NODATA) + '\0').getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+
+            if ((buf.position() & 1) != 0) { //directories must start on a word boundary
+                buf.put((byte) 0);
+            }
+            int ifd = buf.position();
+            buf.putInt(nextIfdPointer, ifd);
+
+            int extra = ifd + 2 + entries.size() * 12 + 4;
+            buf.putShort((short) entries.size());
+            for (Map.Entry<Integer, byte[]> entry : entries.entrySet()) {
+                int tag = entry.getKey();
+                byte[] value = entry.getValue();
+                int type = tag == TAG_GDAL_NODATA ? 2 : tag == TAG_MODEL_PIXEL_SCALE || tag == TAG_MODEL_TIEPOINT ? 12 : isShort(tag) ? 3 : 4;
+                int typeSize = type == 2 ? 1 : type == 3 ? 2 : type == 4 ? 4 : 8;
+
+                buf.putShort((short) tag).putShort((short) type).putInt(value.length / typeSize);
+                if (value.length <= 4) {
+                    buf.put(value);
+                    for (int i = value.length; i < 4; i++) {
+                        buf.put((byte) 0);
+                    }
+                } else {
+                    buf.putInt(extra);
+                    int position = buf.position();
+                    buf.position(extra);
+                    buf.put(value);
+                    extra = buf.position();
+                    buf.position(position);
+                }
+            }
+            nextIfdPointer = buf.position();
+            buf.putInt(0);
+            buf.position(extra);
+        }
+
+        byte[] file = new byte[buf.position()];
+        buf.flip();
+        buf.get(file);
+        return file;
+    }
+
+    private static boolean isShort(int tag) {
+        return tag == TAG_BITS_PER_SAMPLE || tag == TAG_COMPRESSION || tag == TAG_SAMPLES_PER_PIXEL || tag == TAG_PREDICTOR
+               || tag == TAG_TILE_WIDTH || tag == TAG_TILE_LENGTH || tag == TAG_SAMPLE_FORMAT;
+    }
+
+    private static byte[] values(ByteOrder order, int type, long... values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * (type == 3 ? 2 : 4)).order(order);
+        for (long value : values) {
+            if (type == 3) {
+                buf.putShort((short) value);
+            } else {
+                buf.putInt((int) value);
+            }
+        }
+        return buf.array();
+    }
+
+    private static byte[] doubles(ByteOrder order, double... values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length << 3).order(order);
+        for (double value : values) {
+            buf.putDouble(value);
+        }
+        return buf.array();
+    }
+}
@@ -0,0 +1,134 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.block.BlockSand;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.biome.Biome;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class CachedChunkDataTest {
+    @BeforeClass
+    public static void bootstrap() {
+        Bootstrap.register();
+    }
+
+    private static CachedChunkData.Builder randomBuilder(Random random) {
+        CachedChunkData.Builder builder = CachedChunkData.newBuilder();
+        Biome[] biomes = { Biomes.PLAINS, Biomes.DESERT, Biomes.ICE_PLAINS, Biomes.FOREST };
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                builder.surfaceHeight(x, z, random.nextInt(2000) - 1000);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        builder.updateWaterDepth(x, z, random.nextInt(8));
+                        break;
+                    case 1:
+                        builder.updateOceanDepth(x, z, random.nextInt(16) - 12);
+                        break;
+                }
+                builder.biomes()[z * 16 + x] = biomes[random.nextInt(biomes.length)];
+            }
+        }
+        return builder;
+    }
+
+    private static CachedChunkData roundTrip(CachedChunkData data) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            assertTrue(data.write(buf));
+            CachedChunkData read = CachedChunkData.read(buf);
+            assertFalse("trailing data", buf.isReadable());
+            return read;
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void assertDataEquals(CachedChunkData expected, CachedChunkData actual) {
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                String at = "at " + x + ',' + z;
+                assertEquals(at, expected.surfaceHeight(x, z), actual.surfaceHeight(x, z));
+                assertEquals(at, expected.groundHeight(x, z), actual.groundHeight(x, z));
+                assertEquals(at, expected.biome(x, z), actual.biome(x, z));
+                assertSame(at, expected.surfaceBlock(x, z), actual.surfaceBlock(x, z));
+                assertEquals(at, expected.canSnow(x, z), actual.canSnow(x, z));
+            }
+        }
+        assertArrayEquals(expected.treeCandidates(), actual.treeCandidates());
+
+        assertEquals(expected.customCount(), actual.customCount());
+        expected.forEachCustom((key, value) -> assertArrayEquals(key.name(), (byte[]) value, (byte[]) actual.getCustom(key)));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(1337L);
+        IBlockState[] states = {
+                Blocks.GRASS.getDefaultState(),
+                Blocks.CONCRETE.getDefaultState(),
+                Blocks.SAND.getDefaultState().withProperty(BlockSand.VARIANT, BlockSand.EnumType.RED_SAND), //non-zero metadata
+        };
+
+        for (int attempt = 0; attempt < 16; attempt++) {
+            CachedChunkData.Builder builder = randomBuilder(random);
+            for (int i = 0; i < 16 * 16; i++) {
+                int state = random.nextInt(states.length + 1);
+                builder.surfaceBlocks()[i] = state < states.length ? states[state] : null;
+            }
+
+            byte[] treeCover = new byte[16 * 16];
+            random.nextBytes(treeCover);
+            builder.putCustom(EarthGeneratorPipelines.ATTRIBUTE_TREE_COVER, treeCover);
+            byte[] custom = new byte[random.nextInt(100)];
+            random.nextBytes(custom);
+            builder.putCustom("test_round_trip", custom);
+
+            CachedChunkData data = builder.build();
+            assertEquals(2, data.customCount());
+            assertDataEquals(data, roundTrip(data));
+        }
+    }
+
+    @Test
+    public void testRoundTripEmpty() {
+        //no surface blocks and no custom attributes
+        CachedChunkData data = randomBuilder(new Random(42L)).build();
+        assertEquals(0, data.customCount());
+
+        CachedChunkData read = roundTrip(data);
+        assertDataEquals(data, read);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                assertNull(read.surfaceBlock(x, z));
+            }
+        }
+    }
+
+    @Test
+    public void testUnserializableAttribute() {
+        CachedChunkData.Builder builder = randomBuilder(new Random(42L));
+        builder.putCustom("test_unserializable", new Object());
+
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            assertFalse(builder.build().write(buf));
+            assertFalse(buf.isReadable());
+        } finally {
+            buf.release();
+        }
+    }
+}
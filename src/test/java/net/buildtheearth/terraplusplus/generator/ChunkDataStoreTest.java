@@ -0,0 +1,218 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the region files used by {@link ChunkDataStore}.
+ *
+ * @author DaPorkchop_
+ */
+public class ChunkDataStoreTest {
+    private static final int SECTOR_SIZE = 512;
+    private static final int HEADER_SIZE = 32 * 32 * 8;
+    private static final int HEADER_SECTORS = HEADER_SIZE / SECTOR_SIZE;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(1337L);
+
+    private byte[] randomBytes(int length) {
+        byte[] arr = new byte[length];
+        this.random.nextBytes(arr);
+        return arr;
+    }
+
+    private static void write(ChunkDataStore.Region region, int index, byte[] data) throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer(data);
+        try {
+            region.write(index, buf);
+            assertEquals("write must not consume the buffer", data.length, buf.readableBytes());
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void assertStored(ChunkDataStore.Region region, int index, byte[] expected) throws IOException {
+        ByteBuf buf = region.read(index);
+        if (expected == null) {
+            assertNull(buf);
+            return;
+        }
+
+        assertNotNull(buf);
+        try {
+            assertArrayEquals(expected, ByteBufUtil.getBytes(buf));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("empty.t3d");
+
+        ChunkDataStore.Region region = new ChunkDataStore.Region(file);
+        try {
+            assertEquals(HEADER_SIZE, Files.size(file));
+            for (int i = 0; i < 32 * 32; i++) {
+                assertStored(region, i, null);
+            }
+        } finally {
+            region.close();
+        }
+    }
+
+    @Test
+    public void testSectorReuse() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("reuse.t3d");
+
+        byte[] a = this.randomBytes(1000); //2 sectors
+        byte[] b = this.randomBytes(600); //2 sectors
+        byte[] c = this.randomBytes(300); //1 sector
+        byte[] d = this.randomBytes(1024); //exactly 2 sectors
+        byte[] e = this.randomBytes(100); //1 sector
+
+        ChunkDataStore.Region region = new ChunkDataStore.Region(file);
+        try {
+            write(region, 0, a);
+            assertEquals((HEADER_SECTORS << 9) + a.length, Files.size(file));
+            write(region, 1, b);
+            assertEquals((HEADER_SECTORS + 2 << 9) + b.length, Files.size(file));
+
+            //the old data must remain intact until the header has been updated, so the new data can't overwrite it in place
+            write(region, 0, c);
+            assertEquals((HEADER_SECTORS + 4 << 9) + c.length, Files.size(file));
+            assertStored(region, 0, c);
+            assertStored(region, 1, b);
+
+            //the sectors previously used by a are now free, and d fits into them exactly
+            write(region, 2, d);
+            assertEquals("sectors were not reused", (HEADER_SECTORS + 4 << 9) + c.length, Files.size(file));
+
+            //there are no more free sectors, so e has to be appended
+            write(region, 1023, e);
+            assertEquals((HEADER_SECTORS + 5 << 9) + e.length, Files.size(file));
+
+            assertStored(region, 0, c);
+            assertStored(region, 1, b);
+            assertStored(region, 2, d);
+            assertStored(region, 3, null);
+            assertStored(region, 1023, e);
+        } finally {
+            region.close();
+        }
+
+        //everything should still be there after reopening the file
+        region = new ChunkDataStore.Region(file);
+        try {
+            assertStored(region, 0, c);
+            assertStored(region, 1, b);
+            assertStored(region, 2, d);
+            assertStored(region, 3, null);
+            assertStored(region, 1023, e);
+
+            //the used sectors must have been restored from the header as well, so this should go at the end of the file
+            write(region, 3, a);
+            assertEquals((HEADER_SECTORS + 6 << 9) + a.length, Files.size(file));
+            assertStored(region, 2, d);
+            assertStored(region, 3, a);
+        } finally {
+            region.close();
+        }
+    }
+
+    @Test
+    public void testOverwriteGrowing() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("grow.t3d");
+
+        ChunkDataStore.Region region = new ChunkDataStore.Region(file);
+        try {
+            byte[] last = null;
+            for (int length = 1; length < 8 * SECTOR_SIZE; length = length * 3 + 7) {
+                write(region, 7, last = this.randomBytes(length));
+                assertStored(region, 7, last);
+            }
+            region.close();
+
+            region = new ChunkDataStore.Region(file);
+            assertStored(region, 7, last);
+        } finally {
+            region.close();
+        }
+    }
+
+    @Test
+    public void testPartialHeader() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("partial.t3d");
+
+        //simulate a crash while the header of a new region file was being written
+        Files.write(file, this.randomBytes(HEADER_SIZE / 3));
+
+        ChunkDataStore.Region region = new ChunkDataStore.Region(file);
+        try {
+            assertEquals(HEADER_SIZE, Files.size(file));
+            for (int i = 0; i < 32 * 32; i++) {
+                assertStored(region, i, null);
+            }
+
+            byte[] data = this.randomBytes(777);
+            write(region, 5, data);
+            assertStored(region, 5, data);
+            region.close();
+
+            region = new ChunkDataStore.Region(file);
+            assertStored(region, 5, data);
+        } finally {
+            region.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedData() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("truncated.t3d");
+
+        byte[] a = this.randomBytes(700);
+        byte[] b = this.randomBytes(900);
+
+        ChunkDataStore.Region region = new ChunkDataStore.Region(file);
+        try {
+            write(region, 0, a);
+            write(region, 1, b);
+        } finally {
+            region.close();
+        }
+
+        //cut off the end of b's data, as if the file had been truncated
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate((HEADER_SECTORS + 2 << 9) + b.length / 2);
+        }
+
+        region = new ChunkDataStore.Region(file);
+        try {
+            assertStored(region, 0, a);
+            assertStored(region, 1, null); //the header entry points past the end of the file, so it must be ignored
+
+            //b's sectors must be considered free again
+            write(region, 2, b);
+            assertStored(region, 2, b);
+            assertEquals((HEADER_SECTORS + 2 << 9) + b.length, Files.size(file));
+        } finally {
+            region.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package net.buildtheearth.terraplusplus.generator;
+
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import net.minecraft.block.BlockSand;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CubePrimers} produces exactly the same primer contents as setting every block individually, using both the bulk filling
+ * implementation and the fallback.
+ *
+ * @author DaPorkchop_
+ */
+public class CubePrimersTest {
+    private static IBlockState[] states;
+
+    @BeforeClass
+    public static void bootstrap() {
+        Bootstrap.register();
+
+        states = new IBlockState[]{
+                Blocks.STONE.getDefaultState(),
+                Blocks.DIRT.getDefaultState(),
+                Blocks.WATER.getDefaultState(),
+                Blocks.SAND.getDefaultState().withProperty(BlockSand.VARIANT, BlockSand.EnumType.RED_SAND), //non-zero metadata
+                Blocks.AIR.getDefaultState(),
+        };
+    }
+
+    private static void assertPrimersEqual(CubePrimer expected, CubePrimer actual) {
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    assertSame("at " + x + ',' + y + ',' + z, expected.getBlockState(x, y, z), actual.getBlockState(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIsFast() {
+        //if this fails, the installed version of Cubic Chunks has changed CubePrimer's internals and terrain generation will be a lot slower
+        assertTrue(CubePrimers.isFast());
+    }
+
+    @Test
+    public void testFillCube() {
+        for (IBlockState state : states) {
+            CubePrimer expected = new CubePrimer();
+            expected.setBlockState(3, 4, 5, Blocks.GLASS.getDefaultState()); //make sure that existing blocks are overwritten
+            for (int x = 0; x < 16; x++) {
+                for (int y = 0; y < 16; y++) {
+                    for (int z = 0; z < 16; z++) {
+                        expected.setBlockState(x, y, z, state);
+                    }
+                }
+            }
+
+            CubePrimer fast = new CubePrimer();
+            fast.setBlockState(3, 4, 5, Blocks.GLASS.getDefaultState());
+            CubePrimers.fillCube(fast, state);
+            assertPrimersEqual(expected, fast);
+
+            CubePrimer slow = new CubePrimer();
+            slow.setBlockState(3, 4, 5, Blocks.GLASS.getDefaultState());
+            CubePrimers.fillCubeSlow(slow, state);
+            assertPrimersEqual(expected, slow);
+        }
+    }
+
+    @Test
+    public void testFillColumn() {
+        Random random = new Random(1337L);
+
+        CubePrimer expected = new CubePrimer();
+        CubePrimer fast = new CubePrimer();
+        CubePrimer slow = new CubePrimer();
+
+        for (int i = 0; i < 2048; i++) {
+            int x = random.nextInt(16);
+            int z = random.nextInt(16);
+            int minY = random.nextInt(16);
+            int maxY = random.nextInt(16); //may be less than minY, in which case nothing should happen
+            IBlockState state = states[random.nextInt(states.length)];
+
+            for (int y = minY; y <= maxY; y++) {
+                expected.setBlockState(x, y, z, state);
+            }
+            CubePrimers.fillColumn(fast, x, z, minY, maxY, state);
+            CubePrimers.fillColumnSlow(slow, x, z, minY, maxY, state);
+        }
+
+        assertPrimersEqual(expected, fast);
+        assertPrimersEqual(expected, slow);
+    }
+
+    @Test
+    public void testFillColumnAfterFillCube() {
+        //EarthGenerator fills cubes with stone and then fills individual columns with water, make sure that the two don't interfere with each other
+        CubePrimer expected = new CubePrimer();
+        CubePrimer actual = new CubePrimer();
+
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    expected.setBlockState(x, y, z, Blocks.STONE.getDefaultState());
+                }
+            }
+        }
+        CubePrimers.fillCube(actual, Blocks.STONE.getDefaultState());
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int minY = (x + z) & 15;
+                for (int y = minY; y < 16; y++) {
+                    expected.setBlockState(x, y, z, Blocks.WATER.getDefaultState());
+                }
+                CubePrimers.fillColumn(actual, x, z, minY, 15, Blocks.WATER.getDefaultState());
+            }
+        }
+
+        assertPrimersEqual(expected, actual);
+    }
+}